@@ -1,4 +1,5 @@
-CREATE DATABASE if not exists mascota_microchip;
+-- utf8mb4_0900_ai_ci compara sin distinguir mayúsculas ni acentos (lo usa la búsqueda por dueño)
+CREATE DATABASE if not exists mascota_microchip CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci;
 USE mascota_microchip;
 
 CREATE TABLE if not exists microchip (
@@ -7,7 +8,11 @@ CREATE TABLE if not exists microchip (
     fecha_implantacion DATE,
     veterinaria VARCHAR(120),
     observaciones VARCHAR(255),
-    eliminado BOOLEAN DEFAULT FALSE    
+    eliminado BOOLEAN DEFAULT FALSE,
+    -- Control de concurrencia optimista: cada UPDATE la incrementa y solo se aplica si coincide con la leída
+    version INT NOT NULL DEFAULT 0,
+    -- Momento de la última escritura; el modelo de lectura en memoria lo consulta para traer solo los cambios
+    actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
 );
 CREATE TABLE if not exists mascota (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
@@ -17,6 +22,8 @@ CREATE TABLE if not exists mascota (
     fecha_nacimiento DATE,
     duenio VARCHAR(120) NOT NULL,
     eliminado BOOLEAN DEFAULT FALSE,
+    version INT NOT NULL DEFAULT 0,
+    actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     CONSTRAINT chk_especie CHECK (especie IN ('PERRO', 'GATO', 'AVE', 'PEZ', 'REPTIL', 'OTRO')),
     microchip_id BIGINT UNIQUE,
     FOREIGN KEY (microchip_id) REFERENCES microchip(id) ON DELETE SET NULL
@@ -24,5 +31,53 @@ CREATE TABLE if not exists mascota (
 CREATE INDEX idx_mascota_especie ON mascota(especie);
 CREATE INDEX idx_mascota_duenio ON mascota(duenio);
 CREATE INDEX idx_microchip_fecha ON microchip(fecha_implantacion);
+CREATE INDEX idx_mascota_actualizado ON mascota(actualizado_en);
+CREATE INDEX idx_microchip_actualizado ON microchip(actualizado_en);
+
+-- Índice de texto por n-gramas para buscar subcadenas del dueño sin recorrer la tabla.
+-- Se desactivan las stopwords porque con el parser ngram excluirían bigramas como "an", "de" o "la".
+SET SESSION innodb_ft_enable_stopword = OFF;
+CREATE FULLTEXT INDEX ft_mascota_duenio ON mascota(duenio) WITH PARSER ngram;
+
+-- Outbox transaccional: cada escritura de los servicios agrega acá un evento en la misma transacción.
+-- RelayOutbox los publica en orden de id y los borra; datos lleva la entidad serializada (o null).
+CREATE TABLE if not exists outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    entidad VARCHAR(20) NOT NULL,
+    entidad_id BIGINT NOT NULL,
+    operacion VARCHAR(20) NOT NULL,
+    version INT,
+    datos JSON,
+    creado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+
+-- Archivo de las filas eliminadas lógicamente hace más que la retención (ver ArchivadorEliminados).
+-- Mismas columnas que las tablas principales, sin UNIQUE ni FK: un código archivado se puede volver a usar.
+CREATE TABLE if not exists microchip_archivo (
+    id BIGINT PRIMARY KEY,
+    codigo VARCHAR(25) NOT NULL,
+    fecha_implantacion DATE,
+    veterinaria VARCHAR(120),
+    observaciones VARCHAR(255),
+    eliminado BOOLEAN,
+    version INT NOT NULL,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+CREATE TABLE if not exists mascota_archivo (
+    id BIGINT PRIMARY KEY,
+    nombre VARCHAR(60) NOT NULL,
+    especie VARCHAR(30) NOT NULL,
+    raza VARCHAR(60),
+    fecha_nacimiento DATE,
+    duenio VARCHAR(120) NOT NULL,
+    eliminado BOOLEAN,
+    version INT NOT NULL,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    microchip_id BIGINT,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+CREATE INDEX idx_microchip_archivo_codigo ON microchip_archivo(codigo);
+CREATE INDEX idx_mascota_archivo_duenio ON mascota_archivo(duenio);
 
 /*drop database mascota_microchip;*/
\ No newline at end of file
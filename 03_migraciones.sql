@@ -0,0 +1,58 @@
+USE mascota_microchip;
+
+-- Cambios de esquema para bases creadas con una versión anterior de 01_esquema.sql.
+-- Ejecutar solo las secciones que todavía no se hayan aplicado, en orden.
+
+-- 1. Búsqueda por dueño: collation sin acentos ni mayúsculas e índice FULLTEXT ngram
+ALTER TABLE mascota MODIFY duenio VARCHAR(120) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL;
+SET SESSION innodb_ft_enable_stopword = OFF;
+CREATE FULLTEXT INDEX ft_mascota_duenio ON mascota(duenio) WITH PARSER ngram;
+
+-- 2. Control de concurrencia optimista: columna version en mascota y microchip
+ALTER TABLE microchip ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE mascota ADD COLUMN version INT NOT NULL DEFAULT 0 AFTER eliminado;
+
+-- 3. Modelo de lectura en memoria: momento de la última escritura de cada fila
+ALTER TABLE microchip ADD COLUMN actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+ALTER TABLE mascota ADD COLUMN actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) AFTER version;
+CREATE INDEX idx_mascota_actualizado ON mascota(actualizado_en);
+CREATE INDEX idx_microchip_actualizado ON microchip(actualizado_en);
+
+-- 4. Outbox transaccional de cambios para consumidores externos (ver RelayOutbox)
+CREATE TABLE if not exists outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    entidad VARCHAR(20) NOT NULL,
+    entidad_id BIGINT NOT NULL,
+    operacion VARCHAR(20) NOT NULL,
+    version INT,
+    datos JSON,
+    creado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+
+-- 5. Archivo de filas eliminadas lógicamente (ver ArchivadorEliminados)
+CREATE TABLE if not exists microchip_archivo (
+    id BIGINT PRIMARY KEY,
+    codigo VARCHAR(25) NOT NULL,
+    fecha_implantacion DATE,
+    veterinaria VARCHAR(120),
+    observaciones VARCHAR(255),
+    eliminado BOOLEAN,
+    version INT NOT NULL,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+CREATE TABLE if not exists mascota_archivo (
+    id BIGINT PRIMARY KEY,
+    nombre VARCHAR(60) NOT NULL,
+    especie VARCHAR(30) NOT NULL,
+    raza VARCHAR(60),
+    fecha_nacimiento DATE,
+    duenio VARCHAR(120) NOT NULL,
+    eliminado BOOLEAN,
+    version INT NOT NULL,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    microchip_id BIGINT,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+CREATE INDEX idx_microchip_archivo_codigo ON microchip_archivo(codigo);
+CREATE INDEX idx_mascota_archivo_duenio ON mascota_archivo(duenio);
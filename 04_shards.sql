@@ -0,0 +1,31 @@
+-- Preparación de shards para MascotaDaoShards / MicrochipDaoShards (ver config.Shards).
+-- Ejemplo con 3 shards en el mismo servidor, en esquemas propios: mascota_microchip_0, _1 y _2. Se usan con
+--   -Ddb.shards=jdbc:mysql://localhost:3308/mascota_microchip_0,jdbc:mysql://localhost:3308/mascota_microchip_1,jdbc:mysql://localhost:3308/mascota_microchip_2
+-- La base principal (mascota_microchip) no se modifica ni puede ser un shard: el resto de la aplicación depende
+-- de la FK de mascota.microchip_id (ArchivoDao archiva microchips contando con su ON DELETE SET NULL).
+-- La cantidad de shards no puede cambiar una vez que hay datos repartidos.
+
+-- 1. Cada shard copia las tablas de la base principal. CREATE TABLE ... LIKE copia columnas, índices y CHECK,
+--    pero no las FK, que es lo que se necesita: el microchip de una mascota puede quedar en otro shard.
+CREATE DATABASE if not exists mascota_microchip_0 CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci;
+CREATE TABLE if not exists mascota_microchip_0.microchip LIKE mascota_microchip.microchip;
+CREATE TABLE if not exists mascota_microchip_0.mascota LIKE mascota_microchip.mascota;
+
+CREATE DATABASE if not exists mascota_microchip_1 CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci;
+CREATE TABLE if not exists mascota_microchip_1.microchip LIKE mascota_microchip.microchip;
+CREATE TABLE if not exists mascota_microchip_1.mascota LIKE mascota_microchip.mascota;
+
+CREATE DATABASE if not exists mascota_microchip_2 CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci;
+CREATE TABLE if not exists mascota_microchip_2.microchip LIKE mascota_microchip.microchip;
+CREATE TABLE if not exists mascota_microchip_2.mascota LIKE mascota_microchip.mascota;
+
+-- 2. IDs globales: el shard N genera IDs desde (N << 40) + 1, así el shard de una fila se deduce de su ID.
+--    El shard 0 ya empieza en 1. 1099511627777 = (1 << 40) + 1; 2199023255553 = (2 << 40) + 1
+ALTER TABLE mascota_microchip_1.microchip AUTO_INCREMENT = 1099511627777;
+ALTER TABLE mascota_microchip_1.mascota AUTO_INCREMENT = 1099511627777;
+ALTER TABLE mascota_microchip_2.microchip AUTO_INCREMENT = 2199023255553;
+ALTER TABLE mascota_microchip_2.mascota AUTO_INCREMENT = 2199023255553;
+
+-- 3. Solo si una versión anterior de este script usó la base principal como shard 0 y le quitó la FK:
+--    restaurarla (falla si quedaron mascotas con un microchip_id que no existe; corregirlas antes).
+-- ALTER TABLE mascota_microchip.mascota ADD FOREIGN KEY (microchip_id) REFERENCES mascota_microchip.microchip(id) ON DELETE SET NULL;
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import service.AsignacionMicrochip;
+import service.MascotaService;
+import service.ResultadoAsignacion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Compara asignar 'pares' microchips con asignarMicrochipsLote contra llamar a asignarMicrochip en un bucle.
+Usa mascotas sembradas sin microchip (posiciones impares) y microchips libres, y deshace las
+asignaciones fuera de la medición.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class AsignacionLoteBenchmark {
+
+    @Param({"10000"})
+    public int filas;
+
+    @Param({"1000"})
+    public int pares;
+
+    private final MascotaService mascotaService = new MascotaService();
+    private final List<AsignacionMicrochip> asignaciones = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        SembradorDatos.Datos datos = SembradorDatos.asegurar(filas);
+        int cantidad = Math.min(pares, Math.min(datos.idsMascota.length / 2, datos.idsMicrochipLibres.length));
+        for (int i = 0; i < cantidad; i++) {
+            asignaciones.add(AsignacionMicrochip.porId(datos.idsMascota[2 * i + 1], datos.idsMicrochipLibres[i]));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deshacer() throws Exception {
+        for (AsignacionMicrochip asignacion : asignaciones) {
+            mascotaService.quitarMicrochip(asignacion.getMascotaId());
+        }
+    }
+
+    @Benchmark
+    public List<ResultadoAsignacion> lote() throws Exception {
+        return mascotaService.asignarMicrochipsLote(asignaciones);
+    }
+
+    @Benchmark
+    public int bucle() throws Exception {
+        for (AsignacionMicrochip asignacion : asignaciones) {
+            mascotaService.asignarMicrochip(asignacion.getMascotaId(), asignacion.getMicrochipId());
+        }
+        return asignaciones.size();
+    }
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import dao.MapeadorMascota;
+import models.Mascota;
+import models.Microchip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+Mide solo el costo de convertir una fila en Mascota, sin base de datos.
+La fila es un ResultSet en memoria (proxy) que responde tanto por posición como por etiqueta,
+para comparar MapeadorMascota con el mapeo anterior por nombre de columna.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MapeoBenchmark {
+
+    private static final String[] ETIQUETAS = {"m.id", "m.nombre", "m.especie", "m.raza", "m.fecha_nacimiento", "m.duenio", "m.version",
+            "mc.id", "mc.codigo", "mc.fecha_implantacion", "mc.veterinaria", "mc.observaciones", "mc.version"};
+
+    private final ResultSet fila = filaEnMemoria(new Object[]{
+            42L, "Huesos", "PERRO", "Galgo", LocalDate.of(2020, 5, 15), "Homero Simpson", 3,
+            7L, "CHIP-123456789", LocalDate.of(2023, 1, 10), "Veterinaria Canina", null, 1});
+
+    @Benchmark
+    public Mascota mapeoPorPosicion() throws SQLException {
+        return MapeadorMascota.DESDE_PRIMERA.mapear(fila);
+    }
+
+    // Réplica del mapeo anterior: resuelve etiquetas en cada fila y lee dos veces las fechas
+    @Benchmark
+    public Mascota mapeoPorEtiqueta() throws SQLException {
+        Mascota mascota = new Mascota();
+        mascota.setId(fila.getLong("m.id"));
+        mascota.setNombre(fila.getString("m.nombre"));
+        mascota.setEspecie(fila.getString("m.especie"));
+        mascota.setRaza(fila.getString("m.raza"));
+        mascota.setFechaNacimiento(fila.getDate("m.fecha_nacimiento") != null ?
+                fila.getDate("m.fecha_nacimiento").toLocalDate() : null);
+        mascota.setDuenio(fila.getString("m.duenio"));
+        mascota.setVersion(fila.getInt("m.version"));
+        if (fila.getObject("mc.id") != null) {
+            Microchip microchip = new Microchip();
+            microchip.setId(fila.getLong("mc.id"));
+            microchip.setCodigo(fila.getString("mc.codigo"));
+            microchip.setFechaImplantacion(fila.getDate("mc.fecha_implantacion") != null ?
+                    fila.getDate("mc.fecha_implantacion").toLocalDate() : null);
+            microchip.setVeterinaria(fila.getString("mc.veterinaria"));
+            microchip.setObservaciones(fila.getString("mc.observaciones"));
+            microchip.setVersion(fila.getInt("mc.version"));
+            mascota.setMicrochip(microchip);
+        }
+        return mascota;
+    }
+
+    // ResultSet de una sola fila; la búsqueda por etiqueta recorre un mapa como lo hace el driver
+    private static ResultSet filaEnMemoria(Object[] valores) {
+        Map<String, Integer> posiciones = new HashMap<>();
+        for (int i = 0; i < ETIQUETAS.length; i++) {
+            posiciones.put(ETIQUETAS[i].toLowerCase(), i);
+        }
+        boolean[] ultimoNulo = new boolean[1];
+
+        return (ResultSet) Proxy.newProxyInstance(MapeoBenchmark.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("wasNull")) {
+                        return ultimoNulo[0];
+                    }
+                    int i = args[0] instanceof Integer pos ? pos - 1 : posiciones.get(((String) args[0]).toLowerCase());
+                    Object valor = valores[i];
+                    ultimoNulo[0] = valor == null;
+                    return switch (method.getName()) {
+                        case "getLong" -> valor == null ? 0L : valor;
+                        case "getDate" -> valor == null ? null : Date.valueOf((LocalDate) valor);
+                        default -> valor;
+                    };
+                });
+    }
+}
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import config.DatabaseConnection;
+import dao.MascotaDao;
+import dao.Pagina;
+import dao.RankingDuenio;
+import models.Mascota;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+Benchmarks de MascotaDao contra la base sembrada por SembradorDatos.
+Usa una única conexión sin autocommit durante toda la corrida, así se mide el DAO y no el pool;
+las escrituras se deshacen con rollback para que la tabla no crezca entre iteraciones.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MascotaDaoBenchmark {
+
+    @Param({"10000", "100000"})
+    public int filas;
+
+    private final MascotaDao mascotaDao = new MascotaDao();
+    private SembradorDatos.Datos datos;
+    private Connection conn;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        datos = SembradorDatos.asegurar(filas);
+        conn = DatabaseConnection.getConnection();
+        conn.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        conn.rollback();
+        conn.close();
+    }
+
+    @Benchmark
+    public Mascota crear() throws SQLException {
+        Mascota mascota = new Mascota();
+        mascota.setNombre("Nueva");
+        mascota.setEspecie("PERRO");
+        mascota.setFechaNacimiento(LocalDate.of(2020, 1, 1));
+        mascota.setDuenio("Bench Alta");
+        Mascota creada = mascotaDao.crear(mascota, conn);
+        conn.rollback();
+        return creada;
+    }
+
+    @Benchmark
+    public Mascota leer() throws SQLException {
+        return mascotaDao.leer(idAlAzar(), conn);
+    }
+
+    @Benchmark
+    public List<Mascota> leerTodos() throws SQLException {
+        return mascotaDao.leerTodos(conn);
+    }
+
+    @Benchmark
+    public long leerTodosStream() throws SQLException {
+        try (Stream<Mascota> mascotas = mascotaDao.leerTodosStream(conn)) {
+            return mascotas.count();
+        }
+    }
+
+    @Benchmark
+    public List<Mascota> buscarPorDuenio() throws SQLException {
+        return mascotaDao.buscarPorDuenio(duenioAlAzar(), conn);
+    }
+
+    @Benchmark
+    public RankingDuenio leerRankingPorDuenio() throws SQLException {
+        return mascotaDao.leerRankingPorDuenio(duenioAlAzar(), 10_000, conn);
+    }
+
+    @Benchmark
+    public List<Mascota> buscarPorEspecie() throws SQLException {
+        return mascotaDao.buscarPorEspecie(especieAlAzar(), conn);
+    }
+
+    @Benchmark
+    public Pagina<Mascota> buscarPorEspeciePagina() throws SQLException {
+        // Página intermedia: el costo no debería depender de dónde empieza
+        long desde = datos.idsMascota[datos.idsMascota.length / 2];
+        return mascotaDao.buscarPorEspeciePagina(especieAlAzar(), desde, 20, conn);
+    }
+
+    private long idAlAzar() {
+        return datos.idsMascota[ThreadLocalRandom.current().nextInt(datos.idsMascota.length)];
+    }
+
+    private String duenioAlAzar() {
+        return "Dueño " + ThreadLocalRandom.current().nextInt(SembradorDatos.DUENIOS);
+    }
+
+    private String especieAlAzar() {
+        return SembradorDatos.ESPECIES[ThreadLocalRandom.current().nextInt(SembradorDatos.ESPECIES.length)];
+    }
+}
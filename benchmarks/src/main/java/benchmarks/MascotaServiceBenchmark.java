@@ -0,0 +1,67 @@
+package benchmarks;
+
+import models.Mascota;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import service.MascotaService;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Benchmarks de la lógica transaccional de MascotaService (incluye tomar la conexión del pool).
+asignarMicrochip usa en cada invocación una mascota sembrada sin microchip y un microchip libre,
+y deshace la asignación fuera de la medición.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MascotaServiceBenchmark {
+
+    @Param({"10000"})
+    public int filas;
+
+    private final MascotaService mascotaService = new MascotaService();
+    private SembradorDatos.Datos datos;
+    private int siguiente = 0;
+    private long mascotaId;
+    private long microchipId;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        datos = SembradorDatos.asegurar(filas);
+    }
+
+    // El sembrador asigna microchip a las mascotas de posición par, así que se usan las impares
+    @Setup(Level.Invocation)
+    public void elegirPar() {
+        int mitad = datos.idsMascota.length / 2;
+        int i = siguiente++;
+        mascotaId = datos.idsMascota[2 * (i % mitad) + 1];
+        microchipId = datos.idsMicrochipLibres[i % datos.idsMicrochipLibres.length];
+    }
+
+    @TearDown(Level.Invocation)
+    public void deshacer() throws Exception {
+        mascotaService.quitarMicrochip(mascotaId);
+    }
+
+    @Benchmark
+    public Mascota asignarMicrochip() throws Exception {
+        return mascotaService.asignarMicrochip(mascotaId, microchipId);
+    }
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import config.DatabaseConnection;
+import dao.MicrochipDao;
+import models.Microchip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Benchmarks de MicrochipDao contra la base sembrada por SembradorDatos.
+Misma estrategia que MascotaDaoBenchmark: una conexión fija y rollback después de cada escritura.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MicrochipDaoBenchmark {
+
+    @Param({"10000", "100000"})
+    public int filas;
+
+    private final MicrochipDao microchipDao = new MicrochipDao();
+    private final AtomicLong secuencia = new AtomicLong();
+    private SembradorDatos.Datos datos;
+    private Connection conn;
+
+    @Setup(Level.Trial)
+    public void preparar() throws SQLException {
+        datos = SembradorDatos.asegurar(filas);
+        conn = DatabaseConnection.getConnection();
+        conn.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        conn.rollback();
+        conn.close();
+    }
+
+    @Benchmark
+    public Microchip crear() throws SQLException {
+        Microchip microchip = new Microchip();
+        microchip.setCodigo("BENCHN-" + secuencia.incrementAndGet());
+        microchip.setVeterinaria("Veterinaria Bench");
+        Microchip creado = microchipDao.crear(microchip, conn);
+        conn.rollback();
+        return creado;
+    }
+
+    @Benchmark
+    public Microchip leer() throws SQLException {
+        long[] ids = datos.idsMicrochipLibres;
+        return microchipDao.leer(ids[ThreadLocalRandom.current().nextInt(ids.length)], conn);
+    }
+
+    @Benchmark
+    public Microchip leerPorCodigo() throws SQLException {
+        String[] codigos = datos.codigos;
+        return microchipDao.leerPorCodigo(codigos[ThreadLocalRandom.current().nextInt(codigos.length)], conn);
+    }
+}
@@ -0,0 +1,150 @@
+package benchmarks;
+
+import config.DatabaseConnection;
+import dao.MascotaDao;
+import dao.MicrochipDao;
+import models.Mascota;
+import models.Microchip;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Carga datos sintéticos para los benchmarks en la base apuntada por -Ddb.url.
+Las filas sembradas se reconocen por el prefijo del dueño ("Bench ") y del código ("BENCH-"),
+así que correr de nuevo con el mismo tamaño no inserta nada y con un tamaño mayor solo agrega la diferencia.
+Nunca borra datos: conviene usar una base exclusiva para benchmarks.
+ */
+
+public final class SembradorDatos {
+
+    public static final String PREFIJO_DUENIO = "Bench Dueño ";
+    public static final String PREFIJO_CODIGO = "BENCH-";
+    public static final String PREFIJO_CODIGO_LIBRE = "BENCHL-";
+    public static final String[] ESPECIES = {"PERRO", "GATO", "AVE", "PEZ", "REPTIL", "OTRO"};
+
+    // Cantidad de dueños distintos: cada uno queda con cantidad / DUENIOS mascotas
+    public static final int DUENIOS = 500;
+    // Microchips sin asignar que se dejan disponibles para medir asignarMicrochip
+    public static final int MICROCHIPS_LIBRES = 2_000;
+
+    private SembradorDatos() {
+    }
+
+    // Datos sembrados que los benchmarks usan para elegir claves existentes
+    public static class Datos {
+        public final long[] idsMascota;
+        public final long[] idsMicrochipLibres;
+        public final String[] codigos;
+
+        Datos(long[] idsMascota, long[] idsMicrochipLibres, String[] codigos) {
+            this.idsMascota = idsMascota;
+            this.idsMicrochipLibres = idsMicrochipLibres;
+            this.codigos = codigos;
+        }
+    }
+
+    // Asegura que existan al menos 'cantidad' mascotas sembradas (la mitad con microchip) y los microchips libres
+    public static Datos asegurar(int cantidad) throws SQLException {
+        MascotaDao mascotaDao = new MascotaDao();
+        MicrochipDao microchipDao = new MicrochipDao();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int existentes = contar(conn, "SELECT COUNT(*) FROM mascota WHERE duenio LIKE ?", PREFIJO_DUENIO + "%");
+                for (int desde = existentes; desde < cantidad; desde += MascotaDao.TAMANIO_LOTE_DEFECTO) {
+                    int hasta = Math.min(cantidad, desde + MascotaDao.TAMANIO_LOTE_DEFECTO);
+                    List<Microchip> microchips = new ArrayList<>();
+                    List<Mascota> mascotas = new ArrayList<>();
+                    for (int i = desde; i < hasta; i++) {
+                        Mascota mascota = new Mascota();
+                        mascota.setNombre("Mascota " + i);
+                        mascota.setEspecie(ESPECIES[i % ESPECIES.length]);
+                        mascota.setRaza("Raza " + (i % 40));
+                        mascota.setFechaNacimiento(LocalDate.of(2010, 1, 1).plusDays(i % 5000));
+                        mascota.setDuenio(PREFIJO_DUENIO + (i % DUENIOS));
+                        if (i % 2 == 0) {
+                            Microchip microchip = nuevoMicrochip(PREFIJO_CODIGO + String.format("%010d", i));
+                            microchips.add(microchip);
+                            mascota.setMicrochip(microchip);
+                        }
+                        mascotas.add(mascota);
+                    }
+                    microchipDao.crearLote(microchips, conn);
+                    mascotaDao.crearLote(mascotas, conn);
+                    conn.commit();
+                }
+
+                int libres = contar(conn, "SELECT COUNT(*) FROM microchip WHERE codigo LIKE ?", PREFIJO_CODIGO_LIBRE + "%");
+                List<Microchip> nuevosLibres = new ArrayList<>();
+                for (int i = libres; i < MICROCHIPS_LIBRES; i++) {
+                    nuevosLibres.add(nuevoMicrochip(PREFIJO_CODIGO_LIBRE + String.format("%010d", i)));
+                }
+                microchipDao.crearLote(nuevosLibres, conn);
+                conn.commit();
+
+                return new Datos(
+                        leerIds(conn, "SELECT id FROM mascota WHERE duenio LIKE ? AND eliminado = false ORDER BY id LIMIT " + cantidad,
+                                PREFIJO_DUENIO + "%"),
+                        leerIds(conn, "SELECT mc.id FROM microchip mc WHERE mc.codigo LIKE ? AND mc.eliminado = false"
+                                + " AND NOT EXISTS (SELECT 1 FROM mascota m WHERE m.microchip_id = mc.id)", PREFIJO_CODIGO_LIBRE + "%"),
+                        leerCodigos(conn, cantidad));
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static Microchip nuevoMicrochip(String codigo) {
+        Microchip microchip = new Microchip();
+        microchip.setCodigo(codigo);
+        microchip.setFechaImplantacion(LocalDate.of(2024, 1, 1));
+        microchip.setVeterinaria("Veterinaria Bench");
+        return microchip;
+    }
+
+    private static int contar(Connection conn, String sql, String parametro) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, parametro);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private static long[] leerIds(Connection conn, String sql, String parametro) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, parametro);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static String[] leerCodigos(Connection conn, int cantidad) throws SQLException {
+        List<String> codigos = new ArrayList<>();
+        String sql = "SELECT codigo FROM microchip WHERE codigo LIKE ? AND eliminado = false LIMIT " + cantidad;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, PREFIJO_CODIGO + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    codigos.add(rs.getString(1));
+                }
+            }
+        }
+        return codigos.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,114 @@
+package planes;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+Envuelve una conexión para anotar cada sentencia que preparan los DAOs, con los parámetros de su primera ejecución.
+El origen de una sentencia es el método más externo del paquete dao que estaba en la pila al prepararla
+(por ejemplo, MascotaDao.leerMicrochipsAsignados y no Tramos.consultarEnTramos, que es quien la arma).
+También se anotan todos los métodos del paquete dao que aparecieron en alguna pila, para saber qué se recorrió.
+Si se indicó una variante (ver setVariante), el origen la lleva entre corchetes: MascotaDao.leerCambiosStream[carga-inicial].
+Las sentencias preparadas fuera de los DAOs no se anotan.
+ */
+
+final class RegistroSentencias {
+
+    // Sentencia distinta por (origen, SQL), en el orden en que se vio por primera vez
+    static final class Sentencia {
+        final String origen;
+        final String sql;
+        final Map<Integer, Object> parametros;
+
+        Sentencia(String origen, String sql, Map<Integer, Object> parametros) {
+            this.origen = origen;
+            this.sql = sql;
+            this.parametros = parametros;
+        }
+    }
+
+    private final Map<String, Sentencia> sentencias = new LinkedHashMap<>();
+    private final Set<String> metodosRecorridos = new TreeSet<>();
+    private String variante;
+
+    Connection envolver(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    Object resultado = invocar(conn, metodo, args);
+                    if (metodo.getName().equals("prepareStatement") && args[0] instanceof String sql) {
+                        String origen = anotarPila();
+                        if (origen != null) {
+                            String conVariante = variante != null ? origen + "[" + variante + "]" : origen;
+                            return envolver((PreparedStatement) resultado, conVariante, sql);
+                        }
+                    }
+                    return resultado;
+                });
+    }
+
+    // Nombre de la variante de las sentencias que se preparen a partir de ahora; null para ninguna
+    void setVariante(String variante) {
+        this.variante = variante;
+    }
+
+    List<Sentencia> getSentencias() {
+        return new ArrayList<>(sentencias.values());
+    }
+
+    Set<String> getMetodosRecorridos() {
+        return Collections.unmodifiableSet(metodosRecorridos);
+    }
+
+    private PreparedStatement envolver(PreparedStatement stmt, String origen, String sql) {
+        Map<Integer, Object> parametros = new TreeMap<>();
+        InvocationHandler manejador = (proxy, metodo, args) -> {
+            String nombre = metodo.getName();
+            if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer indice) {
+                parametros.put(indice, nombre.equals("setNull") ? null : args[1]);
+            } else if (nombre.equals("clearParameters")) {
+                parametros.clear();
+            } else if (nombre.equals("addBatch") || nombre.startsWith("execute")) {
+                sentencias.putIfAbsent(origen + "\n" + sql, new Sentencia(origen, sql, new TreeMap<>(parametros)));
+            }
+            return invocar(stmt, metodo, args);
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, manejador);
+    }
+
+    // Anota los métodos del paquete dao de la pila actual y devuelve el más externo (null si no hay ninguno)
+    private String anotarPila() {
+        return StackWalker.getInstance().walk(marcos -> {
+            String[] externo = {null};
+            marcos.filter(marco -> marco.getClassName().startsWith("dao.")
+                            && !marco.getClassName().contains("$") && !marco.getMethodName().contains("$"))
+                    .forEach(marco -> {
+                        String clase = marco.getClassName().substring("dao.".length());
+                        String metodo = clase + "." + marco.getMethodName();
+                        metodosRecorridos.add(metodo);
+                        externo[0] = metodo;
+                    });
+            return externo[0];
+        });
+    }
+
+    private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package planes;
+
+import benchmarks.SembradorDatos;
+import config.DatabaseConnection;
+import dao.ArchivoDao;
+import dao.MascotaDao;
+import dao.MicrochipDao;
+import dao.OutboxDao;
+import dao.PlanCarga;
+import models.EventoOutbox;
+import models.Mascota;
+import models.Microchip;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/*
+Verifica que las sentencias de los DAOs usen los índices del esquema.
+Siembra la base de prueba con SembradorDatos, llama a cada método público de los DAOs que recibe una conexión
+(dentro de una transacción que al final se deshace) anotando el SQL real y sus parámetros con RegistroSentencias,
+y corre EXPLAIN sobre cada sentencia distinta. Un plan es una regresión si alguna tabla supera el umbral de filas
+estimadas con un recorrido completo (ALL), un recorrido completo de índice (INDEX), "Using filesort" (FILESORT)
+o "Using temporary" (TEMPORARY), salvo que el método figure con ese problema en el archivo de permitidos.
+Los métodos que arman SQL distinto según los argumentos se recorren por variante (ver variante()), y lo permitido
+para una variante no cubre a las otras: la variante incremental de leerCambiosStream no puede esconderse detrás
+de la carga inicial, que sí recorre toda la tabla.
+También falla si hay un método de DAO que el recorrido no llama: al agregar uno nuevo hay que sumarlo a recorrer().
+Propiedades: -Ddb.url (base de prueba), -Dplanes.filas (20000 mascotas sembradas), -Dplanes.filasMaximas (1000)
+y -Dplanes.permitidos (archivo de permitidos). Termina con código 1 si hay regresiones.
+ */
+
+public final class VerificadorPlanes {
+
+    private static final List<Class<?>> DAOS = List.of(MascotaDao.class, MicrochipDao.class, OutboxDao.class, ArchivoDao.class);
+    private static final Set<String> PROBLEMAS = Set.of("ALL", "INDEX", "FILESORT", "TEMPORARY");
+
+    private VerificadorPlanes() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int filas = Integer.getInteger("planes.filas", 20_000);
+        long filasMaximas = Long.getLong("planes.filasMaximas", 1_000L);
+        Path archivoPermitidos = Path.of(System.getProperty("planes.permitidos", "planes-permitidos.txt"));
+
+        Map<String, Set<String>> permitidos = leerPermitidos(archivoPermitidos);
+        SembradorDatos.Datos datos = SembradorDatos.asegurar(filas);
+        RegistroSentencias registro = new RegistroSentencias();
+
+        try (Connection real = DatabaseConnection.getConnection()) {
+            Connection conn = registro.envolver(real);
+            conn.setAutoCommit(false);
+            try {
+                recorrer(conn, datos, registro);
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+
+        List<String> regresiones = new ArrayList<>();
+        Set<String> permitidosUsados = new HashSet<>();
+        List<RegistroSentencias.Sentencia> sentencias = registro.getSentencias();
+        System.out.println("Planes de " + sentencias.size() + " sentencias (umbral: " + filasMaximas + " filas estimadas)");
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (RegistroSentencias.Sentencia sentencia : sentencias) {
+                for (String[] fila : explicar(sentencia, conn)) {
+                    Set<String> problemas = problemas(fila, filasMaximas);
+                    if (problemas.isEmpty()) {
+                        continue;
+                    }
+                    Set<String> permitidosMetodo = permitidos.get(sentencia.origen);
+                    boolean permitido = permitidosMetodo != null
+                            && (permitidosMetodo.isEmpty() || permitidosMetodo.containsAll(problemas));
+                    String linea = String.format("%-10s %-40s %s %s: %s, %s filas, %s", permitido ? "PERMITIDO" : "REGRESIÓN",
+                            sentencia.origen, problemas, fila[0], fila[1], fila[3], fila[4]);
+                    System.out.println(linea);
+                    if (permitido) {
+                        permitidosUsados.add(sentencia.origen);
+                    } else {
+                        System.out.println("           " + sentencia.sql);
+                        regresiones.add(linea);
+                    }
+                }
+            }
+        }
+
+        Set<String> sinRecorrer = metodosDeDaos();
+        sinRecorrer.removeAll(registro.getMetodosRecorridos());
+        for (String metodo : sinRecorrer) {
+            System.out.println("SIN RECORRER " + metodo + ": agregarlo a VerificadorPlanes.recorrer()");
+        }
+        for (String metodo : permitidos.keySet()) {
+            if (!permitidosUsados.contains(metodo)) {
+                System.out.println("Aviso: " + metodo + " figura en " + archivoPermitidos + " pero su plan ya no tiene problemas");
+            }
+        }
+
+        if (!regresiones.isEmpty() || !sinRecorrer.isEmpty()) {
+            System.out.println(regresiones.size() + " regresiones de plan y " + sinRecorrer.size() + " métodos sin recorrer");
+            System.exit(1);
+        }
+        System.out.println("Todos los planes están dentro del umbral");
+    }
+
+    // Llama una vez a cada método de los DAOs (dos veces si arma SQL distinto según los argumentos)
+    private static void recorrer(Connection conn, SembradorDatos.Datos datos, RegistroSentencias registro) throws SQLException {
+        MascotaDao mascotaDao = new MascotaDao();
+        MicrochipDao microchipDao = new MicrochipDao();
+        OutboxDao outboxDao = new OutboxDao();
+        ArchivoDao archivoDao = new ArchivoDao();
+
+        long idMascota = datos.idsMascota[datos.idsMascota.length / 2];
+        long idMicrochipLibre = datos.idsMicrochipLibres[0];
+        List<Long> idsMascota = primeros(datos.idsMascota, 100);
+        List<String> codigos = Arrays.asList(datos.codigos).subList(0, Math.min(100, datos.codigos.length));
+        List<Long> idsMicrochip = new ArrayList<>(microchipDao.leerIdsPorCodigos(codigos, conn).values());
+        String duenio = SembradorDatos.PREFIJO_DUENIO + "17";
+        LocalDateTime haceUnRato = LocalDateTime.now().minusMinutes(5);
+
+        // Lecturas de mascotas
+        mascotaDao.leer(idMascota, conn);
+        mascotaDao.leerPorIds(idsMascota, conn);
+        mascotaDao.leerTodos(conn);
+        consumir(mascotaDao.leerTodosStream(conn));
+        mascotaDao.leerPagina(idMascota, 50, conn);
+        mascotaDao.buscarPorDuenio(duenio, conn);
+        variante(registro, "un-caracter", () -> mascotaDao.buscarPorDuenio("B", conn));
+        mascotaDao.leerRankingPorDuenio(duenio, 10_000, conn);
+        variante(registro, "un-caracter", () -> mascotaDao.leerRankingPorDuenio("B", 10_000, conn));
+        mascotaDao.buscarPorEspecie("PERRO", conn);
+        mascotaDao.buscarPorEspeciePagina("PERRO", idMascota, 50, conn);
+        // Variantes sin JOIN: la consulta de mascotas y el IN (...) que completa los microchips (PlanCarga.LOTE)
+        mascotaDao.leerTodos(PlanCarga.LOTE, conn);
+        mascotaDao.leerPagina(idMascota, 50, PlanCarga.LOTE, conn);
+        mascotaDao.buscarPorDuenio(duenio, PlanCarga.LOTE, conn);
+        mascotaDao.buscarPorEspecie("PERRO", PlanCarga.LOTE, conn);
+        mascotaDao.buscarPorEspeciePagina("PERRO", idMascota, 50, PlanCarga.LOTE, conn);
+        mascotaDao.leerPorIds(idsMascota, PlanCarga.LOTE, conn);
+        mascotaDao.completarMicrochips(mascotaDao.leerPorIds(idsMascota, PlanCarga.SIN_MICROCHIP, conn).getElementos(), conn);
+        mascotaDao.leerMicrochipsAsignados(idsMicrochip, conn);
+        mascotaDao.leerMascotasPorMicrochip(idsMicrochip, conn);
+        mascotaDao.leerIdsActivos(idsMascota, conn);
+        mascotaDao.leerVersionesActivas(idMascota, idMicrochipLibre, conn);
+        variante(registro, "carga-inicial", () -> consumir(mascotaDao.leerCambiosStream(null, conn)));
+        consumir(mascotaDao.leerCambiosStream(haceUnRato, conn));
+        mascotaDao.leerResumenActivos(conn);
+
+        // Lecturas de microchips
+        microchipDao.leer(idsMicrochip.get(0), conn);
+        microchipDao.leerPorIds(idsMicrochip, conn);
+        microchipDao.leerTodos(conn);
+        consumir(microchipDao.leerTodosStream(conn));
+        microchipDao.leerPagina(idsMicrochip.get(0), 50, conn);
+        microchipDao.leerVersion(idsMicrochip.get(0), conn);
+        microchipDao.leerPorCodigo(codigos.get(0), conn);
+        microchipDao.contarTodos(conn);
+        consumir(microchipDao.leerCodigosStream(conn));
+        microchipDao.leerCodigosExistentes(codigos, conn);
+        microchipDao.leerCodigosEliminados(codigos, conn);
+        microchipDao.leerIdsActivos(idsMicrochip, conn);
+        microchipDao.leerActivosPorIds(idsMicrochip, conn);
+        variante(registro, "carga-inicial", () -> consumir(microchipDao.leerCambiosStream(null, conn)));
+        consumir(microchipDao.leerCambiosStream(haceUnRato, conn));
+        microchipDao.leerResumenActivos(conn);
+
+        // Escrituras (se deshacen al final)
+        Microchip microchip = microchipDao.crear(nuevoMicrochip("PLAN-0"), conn);
+        List<Microchip> lote = microchipDao.crearLote(List.of(nuevoMicrochip("PLAN-1"), nuevoMicrochip("PLAN-2")), conn);
+        Microchip leido = microchipDao.leer(microchip.getId(), conn);
+        microchipDao.actualizar(leido, conn);
+        microchipDao.actualizarCondicional(leido, conn);
+
+        Mascota mascota = mascotaDao.crear(nuevaMascota(null), conn);
+        mascotaDao.crearLote(List.of(nuevaMascota(null)), conn);
+        mascotaDao.crearCondicional(nuevaMascota(microchip), conn);
+        Mascota leida = mascotaDao.leer(mascota.getId(), conn);
+        mascotaDao.actualizar(leida, conn);
+        mascotaDao.actualizarCondicional(leida, conn);
+        mascotaDao.actualizarMicrochip(mascota.getId(), idMicrochipLibre, conn);
+        mascotaDao.actualizarMicrochipLote(Map.of(mascota.getId(), lote.get(0).getId()), conn);
+
+        // Archivo: una mascota y un microchip eliminados con la fecha corrida un día para que sean archivables
+        Mascota eliminada = mascotaDao.crear(nuevaMascota(null), conn);
+        mascotaDao.eliminar(eliminada.getId(), conn);
+        microchipDao.eliminar(lote.get(1).getId(), conn);
+        envejecer("mascota", eliminada.getId(), conn);
+        envejecer("microchip", lote.get(1).getId(), conn);
+        archivoDao.leerMascotasArchivables(0, 0, 100, conn);
+        archivoDao.leerMicrochipsArchivables(0, 0, 100, conn);
+        archivoDao.archivarMascotas(List.of(eliminada.getId()), 0, conn);
+        archivoDao.archivarMicrochips(List.of(lote.get(1).getId()), 0, conn);
+        archivoDao.restaurarMascota(eliminada.getId(), conn);
+        archivoDao.restaurarMicrochip(lote.get(1).getId(), conn);
+
+        // Outbox
+        EventoOutbox evento = new EventoOutbox("mascota", mascota.getId(), EventoOutbox.Operacion.ACTUALIZAR, 1, "{}");
+        outboxDao.registrar(evento, conn);
+        outboxDao.registrarLote(List.of(evento, evento), conn);
+        outboxDao.leerPendientes(500, conn);
+        outboxDao.eliminar(List.of(0L), conn);
+        outboxDao.contarPendientes(conn);
+        if (outboxDao.tomarTurnoRelay(conn)) {
+            outboxDao.liberarTurnoRelay(conn);
+        }
+    }
+
+    // Las sentencias que prepare la llamada se anotan como Clase.metodo[nombre]
+    private static void variante(RegistroSentencias registro, String nombre, Llamada llamada) throws SQLException {
+        registro.setVariante(nombre);
+        try {
+            llamada.ejecutar();
+        } finally {
+            registro.setVariante(null);
+        }
+    }
+
+    private interface Llamada {
+        void ejecutar() throws SQLException;
+    }
+
+    // Corre EXPLAIN con los mismos parámetros; cada fila es {tabla, tipo, clave, filas, Extra}
+    private static List<String[]> explicar(RegistroSentencias.Sentencia sentencia, Connection conn) throws SQLException {
+        List<String[]> filas = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sentencia.sql)) {
+            for (Map.Entry<Integer, Object> parametro : sentencia.parametros.entrySet()) {
+                if (parametro.getValue() == null) {
+                    stmt.setNull(parametro.getKey(), Types.NULL);
+                } else {
+                    stmt.setObject(parametro.getKey(), parametro.getValue());
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    filas.add(new String[]{rs.getString("table"), rs.getString("type"), rs.getString("key"),
+                            rs.getString("rows"), rs.getString("Extra")});
+                }
+            }
+        }
+        return filas;
+    }
+
+    private static Set<String> problemas(String[] fila, long filasMaximas) {
+        Set<String> problemas = new TreeSet<>();
+        long filas = fila[3] != null ? Long.parseLong(fila[3]) : 0;
+        if (filas <= filasMaximas) {
+            return problemas;
+        }
+        String extra = fila[4] != null ? fila[4] : "";
+        if ("ALL".equals(fila[1])) {
+            problemas.add("ALL");
+        }
+        if ("index".equals(fila[1])) {
+            problemas.add("INDEX");
+        }
+        if (extra.contains("Using filesort")) {
+            problemas.add("FILESORT");
+        }
+        if (extra.contains("Using temporary")) {
+            problemas.add("TEMPORARY");
+        }
+        return problemas;
+    }
+
+    // Líneas "Clase.metodo[variante] [PROBLEMA,...]  # motivo" (la variante es opcional y debe coincidir exactamente);
+    // sin problemas indicados se permite cualquiera
+    private static Map<String, Set<String>> leerPermitidos(Path archivo) throws IOException {
+        Map<String, Set<String>> permitidos = new HashMap<>();
+        if (!Files.exists(archivo)) {
+            return permitidos;
+        }
+        for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+            int comentario = linea.indexOf('#');
+            String contenido = (comentario >= 0 ? linea.substring(0, comentario) : linea).trim();
+            if (contenido.isEmpty()) {
+                continue;
+            }
+            String[] partes = contenido.split("\\s+");
+            Set<String> problemas = new TreeSet<>();
+            if (partes.length > 1) {
+                for (String problema : partes[1].split(",")) {
+                    if (!PROBLEMAS.contains(problema)) {
+                        throw new IllegalArgumentException("Problema desconocido en " + archivo + ": " + problema);
+                    }
+                    problemas.add(problema);
+                }
+            }
+            permitidos.put(partes[0], problemas);
+        }
+        return permitidos;
+    }
+
+    // Métodos públicos de los DAOs que reciben una conexión, como "MascotaDao.leer"
+    private static Set<String> metodosDeDaos() {
+        Set<String> metodos = new TreeSet<>();
+        for (Class<?> dao : DAOS) {
+            for (Method metodo : dao.getDeclaredMethods()) {
+                if (Modifier.isPublic(metodo.getModifiers()) && !metodo.isSynthetic()
+                        && Arrays.asList(metodo.getParameterTypes()).contains(Connection.class)) {
+                    metodos.add(dao.getSimpleName() + "." + metodo.getName());
+                }
+            }
+        }
+        return metodos;
+    }
+
+    private static void envejecer(String tabla, Long id, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE " + tabla + " SET actualizado_en = NOW(3) - INTERVAL 1 DAY WHERE id = ?")) {
+            stmt.setLong(1, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void consumir(Stream<?> stream) {
+        try (stream) {
+            stream.findFirst();
+        }
+    }
+
+    private static List<Long> primeros(long[] ids, int cantidad) {
+        Set<Long> resultado = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(cantidad, ids.length); i++) {
+            resultado.add(ids[i]);
+        }
+        return new ArrayList<>(resultado);
+    }
+
+    private static Mascota nuevaMascota(Microchip microchip) {
+        Mascota mascota = new Mascota();
+        mascota.setNombre("Plan");
+        mascota.setEspecie("PERRO");
+        mascota.setDuenio("Plan Dueño");
+        mascota.setFechaNacimiento(LocalDate.of(2020, 1, 1));
+        mascota.setMicrochip(microchip);
+        return mascota;
+    }
+
+    private static Microchip nuevoMicrochip(String codigo) {
+        Microchip microchip = new Microchip();
+        microchip.setCodigo(codigo);
+        microchip.setFechaImplantacion(LocalDate.of(2024, 1, 1));
+        return microchip;
+    }
+}
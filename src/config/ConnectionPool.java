@@ -0,0 +1,393 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+Pool de conexiones JDBC para una única URL de base de datos.
+Mantiene un conjunto de conexiones físicas abiertas y las presta envueltas en un proxy
+cuyo close() devuelve la conexión al pool en lugar de cerrarla.
+Soporta tamaño mínimo/máximo, precalentamiento, validación al prestar, desalojo de
+conexiones inactivas, detección de fugas y tiempo máximo de espera al pedir una conexión.
+El desalojo y la detección de fugas corren en una tarea periódica que arranca iniciar(). Las fugas y los errores
+de esa tarea se reportan por java.util.logging (logger "config.ConnectionPool").
+Sus estadísticas se pueden publicar por JMX (ver ConnectionPoolMXBean).
+ */
+
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String url;
+    private final String usuario;
+    private final String password;
+    private final int tamanioMinimo;
+    private final int tamanioMaximo;
+    private final long esperaMaximaMs;
+    private final long inactividadMaximaMs;
+    private final long umbralFugaMs;
+    private final int timeoutValidacionSeg;
+
+    // Conexiones físicas libres (la más reciente al frente) y prestadas
+    private final LinkedBlockingDeque<ConexionFisica> libres = new LinkedBlockingDeque<>();
+    private final Map<ConexionFisica, Prestamo> prestadas = new ConcurrentHashMap<>();
+
+    // Un permiso por cada conexión que se puede prestar como máximo
+    private final Semaphore permisos;
+    private final AtomicInteger totalFisicas = new AtomicInteger();
+    private final AtomicInteger esperando = new AtomicInteger();
+
+    // Contadores acumulados para las estadísticas
+    private final AtomicLong creadas = new AtomicLong();
+    private final AtomicLong destruidas = new AtomicLong();
+    private final AtomicLong prestamos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validacionesFallidas = new AtomicLong();
+    private final AtomicLong fugasDetectadas = new AtomicLong();
+
+    private final ScheduledExecutorService mantenimiento;
+    private final long periodoMantenimientoMs;
+    private boolean iniciado = false;
+    private volatile boolean cerrado = false;
+
+    public ConnectionPool(String url, String usuario, String password, int tamanioMinimo, int tamanioMaximo,
+                          long esperaMaximaMs, long inactividadMaximaMs, long umbralFugaMs) {
+        if (tamanioMinimo < 0 || tamanioMaximo < 1 || tamanioMinimo > tamanioMaximo) {
+            throw new IllegalArgumentException("Tamaño de pool inválido: min=" + tamanioMinimo + ", max=" + tamanioMaximo);
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+        this.tamanioMinimo = tamanioMinimo;
+        this.tamanioMaximo = tamanioMaximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.inactividadMaximaMs = inactividadMaximaMs;
+        this.umbralFugaMs = umbralFugaMs;
+        this.timeoutValidacionSeg = 2;
+        this.permisos = new Semaphore(tamanioMaximo, true);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+        this.periodoMantenimientoMs = Math.max(1000,
+                (umbralFugaMs > 0 ? Math.min(inactividadMaximaMs, umbralFugaMs) : inactividadMaximaMs) / 2);
+    }
+
+    // Arranca la tarea periódica de desalojo y detección de fugas; llamarlo más de una vez no tiene efecto
+    public synchronized void iniciar() {
+        if (iniciado || cerrado) {
+            return;
+        }
+        iniciado = true;
+        mantenimiento.scheduleWithFixedDelay(this::mantener, periodoMantenimientoMs, periodoMantenimientoMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Abre las conexiones mínimas por adelantado para que las primeras consultas no paguen el handshake
+    public void precalentar() throws SQLException {
+        while (totalFisicas.get() < tamanioMinimo) {
+            libres.offerFirst(crearFisica());
+        }
+    }
+
+    // Presta una conexión; espera como máximo esperaMaximaMs si el pool está agotado
+    public Connection getConnection() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+
+        esperando.incrementAndGet();
+        try {
+            if (!permisos.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTimeoutException("Tiempo de espera agotado (" + esperaMaximaMs
+                        + " ms) para obtener una conexión. " + getEstadisticas());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión", e);
+        } finally {
+            esperando.decrementAndGet();
+        }
+
+        try {
+            ConexionFisica fisica = tomarLibreValida();
+            if (fisica == null) {
+                fisica = crearFisica();
+            }
+            // Capturar la pila solo si la detección de fugas está activa, porque tiene un costo por préstamo
+            Throwable origen = umbralFugaMs > 0 ? new Throwable("Conexión prestada aquí") : null;
+            prestadas.put(fisica, new Prestamo(System.currentTimeMillis(), origen));
+            prestamos.incrementAndGet();
+            return envolver(fisica);
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    // Cierra todas las conexiones libres y rechaza nuevos préstamos
+    public synchronized void cerrar() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        ConexionFisica fisica;
+        while ((fisica = libres.pollFirst()) != null) {
+            destruir(fisica);
+        }
+    }
+
+    @Override
+    public EstadisticasPool getEstadisticas() {
+        return new EstadisticasPool(totalFisicas.get(), prestadas.size(), libres.size(), esperando.get(),
+                tamanioMinimo, tamanioMaximo, creadas.get(), destruidas.get(), prestamos.get(),
+                timeouts.get(), validacionesFallidas.get(), fugasDetectadas.get());
+    }
+
+    @Override
+    public int getTamanioMaximo() {
+        return tamanioMaximo;
+    }
+
+    // Indica si la conexión fue prestada por este pool (y no por otro, por ejemplo el de una réplica)
+    public boolean esPropia(Connection conn) {
+        return Proxy.isProxyClass(conn.getClass())
+                && Proxy.getInvocationHandler(conn) instanceof ManejadorConexion manejador
+                && manejador.pool() == this;
+    }
+
+    // Busca una conexión libre que siga viva; descarta las que fallan la validación
+    private ConexionFisica tomarLibreValida() {
+        ConexionFisica fisica;
+        while ((fisica = libres.pollFirst()) != null) {
+            if (esValida(fisica)) {
+                return fisica;
+            }
+            validacionesFallidas.incrementAndGet();
+            destruir(fisica);
+        }
+        return null;
+    }
+
+    private boolean esValida(ConexionFisica fisica) {
+        try {
+            return !fisica.conexion.isClosed() && fisica.conexion.isValid(timeoutValidacionSeg);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private ConexionFisica crearFisica() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, usuario, password);
+        try {
+            ConexionFisica fisica = new ConexionFisica(conn, conn.getTransactionIsolation(), conn.getCatalog());
+            totalFisicas.incrementAndGet();
+            creadas.incrementAndGet();
+            return fisica;
+        } catch (SQLException e) {
+            try {
+                conn.close();
+            } catch (SQLException errorCierre) {
+                e.addSuppressed(errorCierre);
+            }
+            throw e;
+        }
+    }
+
+    private void destruir(ConexionFisica fisica) {
+        totalFisicas.decrementAndGet();
+        destruidas.incrementAndGet();
+        try {
+            fisica.conexion.close();
+        } catch (SQLException e) {
+            // La conexión ya no sirve, no hay nada más que hacer
+        }
+    }
+
+    // Llamado por el proxy al cerrar: deja la conexión limpia y la devuelve al pool
+    private void devolver(ConexionFisica fisica) {
+        if (prestadas.remove(fisica) == null) {
+            return;
+        }
+        try {
+            boolean reutilizable = !cerrado && !fisica.conexion.isClosed() && restablecer(fisica);
+            if (reutilizable) {
+                fisica.ultimoUso = System.currentTimeMillis();
+                libres.offerFirst(fisica);
+            } else {
+                destruir(fisica);
+            }
+        } catch (SQLException e) {
+            destruir(fisica);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    // Deshace cualquier transacción abierta y vuelve la sesión al estado que tenía al crearse
+    // El aislamiento y el catálogo solo se restauran si quien la tomó los cambió, para no consultarlos en cada devolución
+    private boolean restablecer(ConexionFisica fisica) {
+        Connection conn = fisica.conexion;
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (conn.isReadOnly()) {
+                conn.setReadOnly(false);
+            }
+            if (fisica.aislamientoCambiado) {
+                conn.setTransactionIsolation(fisica.aislamientoInicial);
+                fisica.aislamientoCambiado = false;
+            }
+            if (fisica.catalogoCambiado) {
+                conn.setCatalog(fisica.catalogoInicial);
+                fisica.catalogoCambiado = false;
+            }
+            conn.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Tarea periódica: desaloja conexiones inactivas por encima del mínimo y reporta posibles fugas
+    private void mantener() {
+        long ahora = System.currentTimeMillis();
+
+        // Las más viejas quedan al final de la cola
+        ConexionFisica fisica;
+        while (totalFisicas.get() > tamanioMinimo && (fisica = libres.peekLast()) != null
+                && ahora - fisica.ultimoUso > inactividadMaximaMs) {
+            if (libres.removeLastOccurrence(fisica)) {
+                destruir(fisica);
+            }
+        }
+
+        for (Prestamo prestamo : prestadas.values()) {
+            if (prestamo.origen != null && !prestamo.reportado && ahora - prestamo.desde > umbralFugaMs) {
+                prestamo.reportado = true;
+                fugasDetectadas.incrementAndGet();
+                avisar("Posible fuga de conexión en " + url + ": prestada hace " + (ahora - prestamo.desde)
+                        + " ms sin devolverse", prestamo.origen);
+            }
+        }
+
+        try {
+            precalentar();
+        } catch (SQLException e) {
+            avisar("No se pudo reponer el mínimo de conexiones de " + url, e);
+        }
+    }
+
+    // Único punto por el que el pool reporta problemas; la pila indica dónde se tomó la conexión o la causa del error
+    private void avisar(String mensaje, Throwable detalle) {
+        LOGGER.log(Level.WARNING, mensaje, detalle);
+    }
+
+    private Connection envolver(ConexionFisica fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ManejadorConexion(fisica));
+    }
+
+    // Intercepta close()/isClosed() y delega todo lo demás en la conexión física
+    private class ManejadorConexion implements InvocationHandler {
+        private final ConexionFisica fisica;
+        private boolean cerrada = false;
+
+        ManejadorConexion(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        ConnectionPool pool() {
+            return ConnectionPool.this;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                // Se marcan antes de delegar para que el pool los restaure aunque la llamada falle a medias
+                case "setTransactionIsolation", "setCatalog" -> {
+                    if (cerrada) {
+                        throw new SQLException("La conexión ya fue devuelta al pool");
+                    }
+                    if (method.getName().equals("setCatalog")) {
+                        fisica.catalogoCambiado = true;
+                    } else {
+                        fisica.aislamientoCambiado = true;
+                    }
+                }
+                case "close" -> {
+                    if (!cerrada) {
+                        cerrada = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return cerrada || fisica.conexion.isClosed();
+                }
+                case "unwrap", "isWrapperFor", "equals", "hashCode", "toString" -> {
+                    // Estos métodos funcionan aunque el proxy ya se haya cerrado
+                }
+                default -> {
+                    if (cerrada) {
+                        throw new SQLException("La conexión ya fue devuelta al pool");
+                    }
+                }
+            }
+            try {
+                return method.invoke(fisica.conexion, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static class ConexionFisica {
+        private final Connection conexion;
+        private final int aislamientoInicial;
+        private final String catalogoInicial;
+        private volatile long ultimoUso = System.currentTimeMillis();
+        // Si quien la tuvo prestada cambió el aislamiento o el catálogo (ver ManejadorConexion)
+        private volatile boolean aislamientoCambiado = false;
+        private volatile boolean catalogoCambiado = false;
+
+        ConexionFisica(Connection conexion, int aislamientoInicial, String catalogoInicial) {
+            this.conexion = conexion;
+            this.aislamientoInicial = aislamientoInicial;
+            this.catalogoInicial = catalogoInicial;
+        }
+    }
+
+    private static class Prestamo {
+        private final long desde;
+        private final Throwable origen;
+        private volatile boolean reportado = false;
+
+        Prestamo(long desde, Throwable origen) {
+            this.desde = desde;
+            this.origen = origen;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package config;
+
+/*
+Interfaz de gestión (JMX) de un ConnectionPool.
+Las estadísticas se publican como un único atributo compuesto para que todos sus valores salgan del mismo instante.
+ */
+
+public interface ConnectionPoolMXBean {
+
+    EstadisticasPool getEstadisticas();
+
+    int getTamanioMaximo();
+}
@@ -1,14 +1,56 @@
 package config;
 
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 
 public class DatabaseConnection {
 
-    private static final String URL = "jdbc:mysql://localhost:3308/mascota_microchip";
-    private static final String USER = "root";
-    private static final String PASSWORD = "";
+    // La base se puede cambiar con -Ddb.url, -Ddb.usuario y -Ddb.password (por ejemplo, para apuntar a una base de prueba)
+    // rewriteBatchedStatements permite que el driver envíe los lotes de INSERT como un único INSERT multi-fila
+    // useCursorFetch hace que las consultas con fetch size usen un cursor del servidor en lugar de traer todo
+    private static final String PARAMETROS = "rewriteBatchedStatements=true&useCursorFetch=true";
+    private static final String URL = conParametros(System.getProperty("db.url", "jdbc:mysql://localhost:3308/mascota_microchip"));
+    private static final String USER = System.getProperty("db.usuario", "root");
+    private static final String PASSWORD = System.getProperty("db.password", "");
+
+    // Configuración del pool; cada valor puede sobrescribirse con -Ddb.pool.<nombre>=valor
+    private static final int POOL_MIN = Integer.getInteger("db.pool.min", 2);
+    private static final int POOL_MAX = Integer.getInteger("db.pool.max", 10);
+    private static final long POOL_ESPERA_MS = Long.getLong("db.pool.esperaMs", 5_000L);
+    private static final long POOL_INACTIVIDAD_MS = Long.getLong("db.pool.inactividadMs", 300_000L);
+    private static final long POOL_FUGA_MS = Long.getLong("db.pool.fugaMs", 60_000L);
+
+    // Réplicas de lectura (ver Replicas): -Ddb.replicas=<url>[,<url>...], con el mismo usuario y contraseña que el
+    // primario salvo -Ddb.replicas.usuario / -Ddb.replicas.password. Usan la misma configuración de pool
+    private static final List<String> URLS_REPLICAS = Arrays.stream(System.getProperty("db.replicas", "").split(","))
+            .map(String::trim).filter(url -> !url.isEmpty()).map(DatabaseConnection::conParametros).toList();
+    private static final long REPLICAS_CHEQUEO_MS = Long.getLong("db.replicas.chequeoMs", 5_000L);
+    private static final long REPLICAS_RETRASO_MAXIMO_S = Long.getLong("db.replicas.retrasoMaximoS", 10L);
+    // Después de escribir, las lecturas de la misma sesión (ver SesionLectura) van al primario durante este tiempo
+    // (0 lo desactiva). Nunca es menor que el peor atraso de una réplica en servicio: retrasoMaximoS más lo que puede
+    // crecer el atraso hasta el chequeo siguiente, que es cuando la réplica sale de servicio
+    private static final long LEER_PROPIAS_MINIMO_MS = REPLICAS_RETRASO_MAXIMO_S * 1_000 + REPLICAS_CHEQUEO_MS;
+    private static final long LEER_PROPIAS_MS = leerPropiasMs(Long.getLong("db.replicas.leerPropiasMs", LEER_PROPIAS_MINIMO_MS));
+
+    // Shards (ver Shards): -Ddb.shards=<url shard 0>,<url shard 1>,..., con el usuario y la contraseña del primario.
+    // Solo los usan MascotaDaoShards y MicrochipDaoShards; el resto de la aplicación sigue usando db.url, que no
+    // puede ser uno de ellos porque los shards no tienen la FK de mascota.microchip_id (ver 04_shards.sql)
+    private static final List<String> URLS_SHARDS = Arrays.stream(System.getProperty("db.shards", "").split(","))
+            .map(String::trim).filter(url -> !url.isEmpty()).map(DatabaseConnection::conParametros).toList();
+
+    private static final ConnectionPool pool;
+    private static final Replicas replicas;
+    private static final Shards shards;
+
+    // Tiempo que tarda cada pedido en obtener una conexión (incluye la espera cuando el pool está agotado)
+    private static final MetricaOperacion METRICA_OBTENER = Metricas.operacion("conexion", "DatabaseConnection.getConnection");
+    private static final MetricaOperacion METRICA_OBTENER_LECTURA = Metricas.operacion("conexion", "DatabaseConnection.getConnectionLectura");
 
     static {
         try {
@@ -16,9 +58,104 @@ public class DatabaseConnection {
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("Error: No se encontró el driver JDBC.", e);
         }
+
+        pool = new ConnectionPool(URL, USER, PASSWORD, POOL_MIN, POOL_MAX,
+                POOL_ESPERA_MS, POOL_INACTIVIDAD_MS, POOL_FUGA_MS);
+        pool.iniciar();
+        try {
+            pool.precalentar();
+        } catch (SQLException e) {
+            // Si la base no está disponible al iniciar, el pool abrirá las conexiones a demanda
+            System.err.println("No se pudo precalentar el pool de conexiones: " + e.getMessage());
+        }
+        Metricas.registrar("Pool,nombre=principal", pool);
+
+        replicas = URLS_REPLICAS.isEmpty() ? null : new Replicas(URLS_REPLICAS,
+                System.getProperty("db.replicas.usuario", USER), System.getProperty("db.replicas.password", PASSWORD),
+                POOL_MIN, POOL_MAX, POOL_ESPERA_MS, POOL_INACTIVIDAD_MS, POOL_FUGA_MS,
+                REPLICAS_CHEQUEO_MS, REPLICAS_RETRASO_MAXIMO_S);
+
+        if (URLS_SHARDS.contains(URL)) {
+            System.err.println("La base principal (db.url) no puede ser un shard; no se usarán los shards de db.shards");
+        }
+        shards = URLS_SHARDS.isEmpty() || URLS_SHARDS.contains(URL) ? null : new Shards(URLS_SHARDS, USER, PASSWORD,
+                POOL_MIN, POOL_MAX, POOL_ESPERA_MS, POOL_INACTIVIDAD_MS, POOL_FUGA_MS);
+        if (shards != null) {
+            try {
+                shards.verificar();
+            } catch (SQLException e) {
+                System.err.println("No se pudieron verificar los shards: " + e.getMessage());
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (replicas != null) {
+                replicas.cerrar();
+            }
+            if (shards != null) {
+                shards.close();
+            }
+            pool.cerrar();
+        }, "pool-cierre"));
     }
 
+    // Devuelve una conexión del pool; al cerrarla vuelve al pool en lugar de cerrarse físicamente
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        try (Medicion medicion = METRICA_OBTENER.iniciar()) {
+            Connection conn = pool.getConnection();
+            medicion.exito(1);
+            return conn;
+        }
+    }
+
+    // Conexión para una lectura que tolera el retraso de replicación: de una réplica en servicio si hay réplicas
+    // configuradas, o del primario si no hay ninguna disponible o si la sesión actual escribió hace menos de leerPropiasMs
+    // Las conexiones de réplica son de solo lectura
+    public static Connection getConnectionLectura() throws SQLException {
+        try (Medicion medicion = METRICA_OBTENER_LECTURA.iniciar()) {
+            Connection conn = replicas != null && !leePropiasEscrituras() ? replicas.getConnection() : null;
+            if (conn == null) {
+                conn = pool.getConnection();
+            }
+            medicion.exito(1);
+            return conn;
+        }
+    }
+
+    // Indica si la conexión es de una réplica; lo que se lee de ella puede estar atrasado y no conviene guardarlo en cachés
+    public static boolean esReplica(Connection conn) {
+        return replicas != null && replicas.esPropia(conn);
+    }
+
+    // EjecutorTransacciones la llama al confirmar cada transacción de escritura: abre la ventana de lectura propia
+    // de la sesión actual
+    public static void registrarEscritura() {
+        if (replicas != null && LEER_PROPIAS_MS > 0) {
+            SesionLectura.actual().abrirVentana(LEER_PROPIAS_MS);
+        }
+    }
+
+    private static boolean leePropiasEscrituras() {
+        return LEER_PROPIAS_MS > 0 && SesionLectura.actual().enVentana();
+    }
+
+    private static long leerPropiasMs(long configurado) {
+        return configurado <= 0 ? 0 : Math.max(configurado, LEER_PROPIAS_MINIMO_MS);
+    }
+
+    // Shards configurados con -Ddb.shards, o null si no se configuraron
+    public static Shards getShards() {
+        return shards;
+    }
+
+    private static String conParametros(String url) {
+        return url + (url.contains("?") ? "&" : "?") + PARAMETROS;
+    }
+
+    public static EstadisticasPool getEstadisticasPool() {
+        return pool.getEstadisticas();
+    }
+
+    public static int getTamanioMaximoPool() {
+        return pool.getTamanioMaximo();
     }
 }
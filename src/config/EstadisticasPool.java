@@ -0,0 +1,69 @@
+package config;
+
+/*
+Fotografía de las estadísticas de un ConnectionPool en un momento dado.
+Los valores de conexiones son instantáneos; los contadores son acumulados desde que se creó el pool.
+ */
+
+public class EstadisticasPool {
+    private final int totales;
+    private final int prestadas;
+    private final int libres;
+    private final int esperando;
+    private final int tamanioMinimo;
+    private final int tamanioMaximo;
+    private final long creadas;
+    private final long destruidas;
+    private final long prestamos;
+    private final long timeouts;
+    private final long validacionesFallidas;
+    private final long fugasDetectadas;
+
+    public EstadisticasPool(int totales, int prestadas, int libres, int esperando, int tamanioMinimo,
+                            int tamanioMaximo, long creadas, long destruidas, long prestamos, long timeouts,
+                            long validacionesFallidas, long fugasDetectadas) {
+        this.totales = totales;
+        this.prestadas = prestadas;
+        this.libres = libres;
+        this.esperando = esperando;
+        this.tamanioMinimo = tamanioMinimo;
+        this.tamanioMaximo = tamanioMaximo;
+        this.creadas = creadas;
+        this.destruidas = destruidas;
+        this.prestamos = prestamos;
+        this.timeouts = timeouts;
+        this.validacionesFallidas = validacionesFallidas;
+        this.fugasDetectadas = fugasDetectadas;
+    }
+
+    public int getTotales() { return totales; }
+    public int getPrestadas() { return prestadas; }
+    public int getLibres() { return libres; }
+    public int getEsperando() { return esperando; }
+    public int getTamanioMinimo() { return tamanioMinimo; }
+    public int getTamanioMaximo() { return tamanioMaximo; }
+    public long getCreadas() { return creadas; }
+    public long getDestruidas() { return destruidas; }
+    public long getPrestamos() { return prestamos; }
+    public long getTimeouts() { return timeouts; }
+    public long getValidacionesFallidas() { return validacionesFallidas; }
+    public long getFugasDetectadas() { return fugasDetectadas; }
+
+    @Override
+    public String toString() {
+        return "EstadisticasPool{" +
+                "totales=" + totales +
+                ", prestadas=" + prestadas +
+                ", libres=" + libres +
+                ", esperando=" + esperando +
+                ", min=" + tamanioMinimo +
+                ", max=" + tamanioMaximo +
+                ", creadas=" + creadas +
+                ", destruidas=" + destruidas +
+                ", prestamos=" + prestamos +
+                ", timeouts=" + timeouts +
+                ", validacionesFallidas=" + validacionesFallidas +
+                ", fugasDetectadas=" + fugasDetectadas +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+package config;
+
+import metrics.Metricas;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Réplicas de lectura de la base, cada una con su propio ConnectionPool.
+Las conexiones se reparten por turnos (round-robin) entre las réplicas en servicio y se prestan en modo solo lectura.
+Una réplica sale de servicio cuando no se puede abrir una conexión, cuando su replicación está detenida o cuando
+su retraso supera retrasoMaximoS; un chequeo periódico la vuelve a poner en servicio cuando se recupera.
+Si una instancia no es réplica (SHOW REPLICA STATUS sin filas, por ejemplo dos MySQL independientes para pruebas)
+o el usuario no puede consultar el estado de la replicación, solo se comprueba que responda.
+ */
+
+final class Replicas {
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger turno = new AtomicInteger();
+    private final long retrasoMaximoS;
+    private final ScheduledExecutorService chequeo;
+
+    Replicas(List<String> urls, String usuario, String password, int tamanioMinimo, int tamanioMaximo,
+             long esperaMaximaMs, long inactividadMaximaMs, long umbralFugaMs, long chequeoMs, long retrasoMaximoS) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("Se requiere al menos una réplica");
+        }
+        this.retrasoMaximoS = retrasoMaximoS;
+        for (int i = 0; i < urls.size(); i++) {
+            ConnectionPool pool = new ConnectionPool(urls.get(i), usuario, password, tamanioMinimo, tamanioMaximo,
+                    esperaMaximaMs, inactividadMaximaMs, umbralFugaMs);
+            pool.iniciar();
+            Replica replica = new Replica("replica-" + (i + 1), pool);
+            replicas.add(replica);
+            Metricas.registrar("Pool,nombre=" + replica.nombre, pool);
+        }
+
+        chequeo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replicas-chequeo");
+            t.setDaemon(true);
+            return t;
+        });
+        chequeo.scheduleWithFixedDelay(this::chequear, 0, chequeoMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Presta una conexión de solo lectura de la siguiente réplica en servicio; null si no hay ninguna disponible
+    Connection getConnection() {
+        int cantidad = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Replica replica = replicas.get((inicio + i) % cantidad);
+            if (!replica.enServicio) {
+                continue;
+            }
+            try {
+                Connection conn = replica.pool.getConnection();
+                try {
+                    conn.setReadOnly(true);
+                } catch (SQLException e) {
+                    conn.close();
+                    throw e;
+                }
+                return conn;
+            } catch (SQLTimeoutException e) {
+                // Pool agotado: la réplica está ocupada pero sana, se prueba con la siguiente
+            } catch (SQLException e) {
+                replica.actualizar(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    boolean esPropia(Connection conn) {
+        for (Replica replica : replicas) {
+            if (replica.pool.esPropia(conn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void cerrar() {
+        chequeo.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.cerrar();
+        }
+    }
+
+    // Tarea periódica: comprueba cada réplica y actualiza si está en servicio
+    private void chequear() {
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.pool.getConnection()) {
+                replica.actualizar(problemaReplicacion(conn));
+            } catch (SQLTimeoutException e) {
+                // Todas sus conexiones están en uso: responde, no se cambia su estado
+            } catch (SQLException | RuntimeException e) {
+                replica.actualizar(e.getMessage());
+            }
+        }
+    }
+
+    // Devuelve por qué la réplica no debería atender lecturas, o null si puede
+    private String problemaReplicacion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SHOW REPLICA STATUS")) {
+            if (!rs.next()) {
+                return null;
+            }
+            long retraso = rs.getLong("Seconds_Behind_Source");
+            if (rs.wasNull()) {
+                return "la replicación está detenida";
+            }
+            return retraso > retrasoMaximoS ? "retraso de " + retraso + " s (máximo " + retrasoMaximoS + " s)" : null;
+        } catch (SQLSyntaxErrorException e) {
+            // MySQL anterior a 8.0.22 o usuario sin el privilegio REPLICATION CLIENT
+            return null;
+        }
+    }
+
+    private static final class Replica {
+        private final String nombre;
+        private final ConnectionPool pool;
+        private volatile boolean enServicio = true;
+
+        Replica(String nombre, ConnectionPool pool) {
+            this.nombre = nombre;
+            this.pool = pool;
+        }
+
+        // problema null: la réplica puede atender lecturas. Solo informa por consola los cambios de estado
+        synchronized void actualizar(String problema) {
+            boolean sana = problema == null;
+            if (sana != enServicio) {
+                enServicio = sana;
+                System.err.println(sana ? "Réplica " + nombre + " de nuevo en servicio"
+                        : "Réplica " + nombre + " fuera de servicio: " + problema);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package config;
+
+import java.util.concurrent.Callable;
+
+/*
+Ventana de lectura propia: después de una escritura, las lecturas de la misma sesión van al primario hasta que
+ninguna réplica en servicio pueda estar tan atrasada como para no verla (ver DatabaseConnection.getConnectionLectura).
+Cada hilo tiene su sesión por defecto. Para que la ventana siga a una operación que salta de hilo, quien la lanza
+pasa su sesión con ejecutar(): EjecutorAsync lo hace con cada llamada, así una lectura asíncrona posterior a una
+escritura (sincrónica o asíncrona) del mismo llamador va al primario. Un cliente que atiende varias sesiones en
+los mismos hilos (por ejemplo, pedidos de distintos usuarios) puede crear una por usuario y ejecutar cada pedido en ella.
+ */
+
+public final class SesionLectura {
+
+    private static final ThreadLocal<SesionLectura> ACTUAL = ThreadLocal.withInitial(SesionLectura::new);
+
+    // Instante (System.nanoTime) hasta el que las lecturas de la sesión van al primario, si ventanaAbierta
+    private volatile long primarioHasta;
+    private volatile boolean ventanaAbierta;
+
+    // Sesión del hilo actual: la que se pasó con ejecutar() o, si no, la propia del hilo
+    public static SesionLectura actual() {
+        return ACTUAL.get();
+    }
+
+    // Ejecuta la tarea en este hilo con esta sesión como actual y después restablece la anterior
+    public <T> T ejecutar(Callable<T> tarea) throws Exception {
+        SesionLectura anterior = ACTUAL.get();
+        ACTUAL.set(this);
+        try {
+            return tarea.call();
+        } finally {
+            ACTUAL.set(anterior);
+        }
+    }
+
+    public void correr(Runnable tarea) {
+        SesionLectura anterior = ACTUAL.get();
+        ACTUAL.set(this);
+        try {
+            tarea.run();
+        } finally {
+            ACTUAL.set(anterior);
+        }
+    }
+
+    void abrirVentana(long ventanaMs) {
+        long hasta = System.nanoTime() + ventanaMs * 1_000_000;
+        // Dos escrituras concurrentes de la misma sesión: queda la ventana que termina más tarde
+        synchronized (this) {
+            if (!ventanaAbierta || hasta - primarioHasta > 0) {
+                primarioHasta = hasta;
+                ventanaAbierta = true;
+            }
+        }
+    }
+
+    boolean enVentana() {
+        if (!ventanaAbierta) {
+            return false;
+        }
+        if (System.nanoTime() - primarioHasta < 0) {
+            return true;
+        }
+        ventanaAbierta = false;
+        return false;
+    }
+}
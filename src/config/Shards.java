@@ -0,0 +1,174 @@
+package config;
+
+import dao.MicrochipDao;
+import metrics.Metricas;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/*
+Conjunto de shards (esquemas o instancias de MySQL con las mismas tablas), cada uno con su propio ConnectionPool.
+Los IDs son globales: cada shard genera los suyos a partir de (shard << BITS_ID_LOCAL) + 1 (ver 04_shards.sql), así
+que el shard de una fila se obtiene de su ID sin preguntar a ninguno. El shard donde se crea una fila nueva sale
+de un hash de su clave de reparto (dueño o código, ver MascotaDaoShards y MicrochipDaoShards).
+La cantidad de shards no puede cambiar una vez que hay datos: cambiaría el shard que corresponde a cada clave.
+ */
+
+public class Shards implements AutoCloseable {
+
+    // Bits del ID que numera filas dentro de un shard; los de arriba indican el shard
+    public static final int BITS_ID_LOCAL = 40;
+
+    private final List<ConnectionPool> pools = new ArrayList<>();
+
+    public Shards(List<String> urls, String usuario, String password, int tamanioMinimo, int tamanioMaximo,
+                  long esperaMaximaMs, long inactividadMaximaMs, long umbralFugaMs) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("Se requiere al menos un shard");
+        }
+        for (int i = 0; i < urls.size(); i++) {
+            ConnectionPool pool = new ConnectionPool(urls.get(i), usuario, password, tamanioMinimo, tamanioMaximo,
+                    esperaMaximaMs, inactividadMaximaMs, umbralFugaMs);
+            pool.iniciar();
+            pools.add(pool);
+            Metricas.registrar("Pool,nombre=shard-" + i, pool);
+        }
+    }
+
+    public int getCantidad() {
+        return pools.size();
+    }
+
+    public Connection getConnection(int shard) throws SQLException {
+        if (shard < 0 || shard >= pools.size()) {
+            throw new IllegalArgumentException("Shard inexistente: " + shard);
+        }
+        return pools.get(shard).getConnection();
+    }
+
+    // Primer ID que genera el shard; el último posible es primerId(shard + 1) - 1
+    public static long primerId(int shard) {
+        return ((long) shard << BITS_ID_LOCAL) + 1;
+    }
+
+    public int shardDeId(long id) {
+        long shard = id >>> BITS_ID_LOCAL;
+        if (id <= 0 || shard >= pools.size()) {
+            throw new IllegalArgumentException("El ID " + id + " no pertenece a ningún shard configurado");
+        }
+        return (int) shard;
+    }
+
+    // Shard que corresponde a una clave de reparto. Se hashea la misma clave con la que compara la collation de las
+    // columnas (ver MicrochipDao.claveCodigo), para que dos claves que el UNIQUE considera iguales caigan en el mismo shard
+    public int shardDeClave(String clave) {
+        CRC32 crc = new CRC32();
+        crc.update(MicrochipDao.claveCodigo(clave).getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % pools.size());
+    }
+
+    // Ejecuta la consulta en cada uno de los shards indicados en paralelo (un hilo virtual y una conexión por shard)
+    // y devuelve los resultados en el orden de los shards recibidos. Si algún shard falla, falla todo
+    public <T> List<T> enShards(Collection<Integer> shards, ConsultaShard<T> consulta) throws SQLException {
+        List<Future<T>> pendientes = new ArrayList<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int shard : shards) {
+                pendientes.add(hilos.submit(() -> {
+                    try (Connection conn = getConnection(shard)) {
+                        return consulta.ejecutar(shard, conn);
+                    }
+                }));
+            }
+            List<T> resultados = new ArrayList<>(pendientes.size());
+            for (Future<T> pendiente : pendientes) {
+                resultados.add(pendiente.get());
+            }
+            return resultados;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) {
+                throw sql;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new SQLException("Error consultando los shards: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido consultando los shards", e);
+        }
+    }
+
+    public <T> List<T> enTodos(ConsultaShard<T> consulta) throws SQLException {
+        List<Integer> todos = new ArrayList<>();
+        for (int i = 0; i < pools.size(); i++) {
+            todos.add(i);
+        }
+        return enShards(todos, consulta);
+    }
+
+    // Comprueba que cada shard genere IDs dentro de su rango y que mascota no tenga la FK a microchip,
+    // que no puede cumplirse cuando el microchip está en otro shard (ver 04_shards.sql)
+    public void verificar() throws SQLException {
+        List<String> problemas = new ArrayList<>();
+        enTodos((shard, conn) -> {
+            try (Statement stmt = conn.createStatement()) {
+                // Sin esto information_schema puede devolver un AUTO_INCREMENT guardado de hace horas
+                stmt.execute("SET SESSION information_schema_stats_expiry = 0");
+            }
+            String sql = "SELECT TABLE_NAME, AUTO_INCREMENT FROM information_schema.TABLES"
+                    + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN ('mascota', 'microchip')";
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long siguiente = rs.getLong(2);
+                    if (siguiente < primerId(shard) || siguiente >= primerId(shard + 1)) {
+                        agregar(problemas, "shard " + shard + ": el AUTO_INCREMENT de " + rs.getString(1)
+                                + " (" + siguiente + ") no está entre " + primerId(shard) + " y " + (primerId(shard + 1) - 1));
+                    }
+                }
+            }
+            sql = "SELECT COUNT(*) FROM information_schema.REFERENTIAL_CONSTRAINTS"
+                    + " WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'mascota'";
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    agregar(problemas, "shard " + shard + ": mascota todavía tiene la FK a microchip");
+                }
+            }
+            return null;
+        });
+        if (!problemas.isEmpty()) {
+            throw new SQLException("Shards mal preparados (ver 04_shards.sql): " + String.join("; ", problemas));
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ConnectionPool pool : pools) {
+            pool.cerrar();
+        }
+    }
+
+    private static void agregar(List<String> problemas, String problema) {
+        synchronized (problemas) {
+            problemas.add(problema);
+        }
+    }
+
+    // Consulta a ejecutar en un shard con una conexión de su pool
+    public interface ConsultaShard<T> {
+        T ejecutar(int shard, Connection conn) throws SQLException;
+    }
+}
@@ -0,0 +1,177 @@
+package dao;
+
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Clase DAO que mueve filas eliminadas lógicamente entre las tablas principales y mascota_archivo / microchip_archivo.
+Una fila se puede archivar si está eliminada y su última escritura (actualizado_en, que es el momento de la
+eliminación) es anterior a la retención; el reloj que se usa es el de la base.
+La búsqueda de candidatas no toma locks; archivar vuelve a comprobar la condición con SELECT ... FOR UPDATE
+solo sobre los IDs del lote, por lo que cada transacción bloquea pocas filas y nunca filas activas.
+ */
+
+public class ArchivoDao {
+
+    private static final String COLUMNAS_MASCOTA = "id, nombre, especie, raza, fecha_nacimiento, duenio, eliminado, version, actualizado_en, microchip_id";
+    private static final String COLUMNAS_MICROCHIP = "id, codigo, fecha_implantacion, veterinaria, observaciones, eliminado, version, actualizado_en";
+
+    private static final String ARCHIVABLE = "eliminado = true AND actualizado_en < NOW(3) - INTERVAL ? SECOND";
+    // Un microchip que todavía figura en alguna mascota (activa o eliminada) no se archiva: al borrarlo,
+    // el FK ON DELETE SET NULL modificaría esa mascota
+    private static final String MICROCHIP_ARCHIVABLE = ARCHIVABLE
+            + " AND NOT EXISTS (SELECT 1 FROM mascota m WHERE m.microchip_id = microchip.id)";
+
+    // Al restaurar, el microchip solo se conserva si sigue activo y ninguna otra mascota lo tiene
+    private static final String SQL_RESTAURAR_MASCOTA = "INSERT INTO mascota (id, nombre, especie, raza, fecha_nacimiento, duenio,"
+            + " eliminado, version, microchip_id) SELECT a.id, a.nombre, a.especie, a.raza, a.fecha_nacimiento, a.duenio, false,"
+            + " a.version + 1, CASE WHEN EXISTS (SELECT 1 FROM microchip mc WHERE mc.id = a.microchip_id AND mc.eliminado = false)"
+            + " AND NOT EXISTS (SELECT 1 FROM mascota m WHERE m.microchip_id = a.microchip_id) THEN a.microchip_id END"
+            + " FROM mascota_archivo a WHERE a.id = ?";
+    private static final String SQL_RESTAURAR_MICROCHIP = "INSERT INTO microchip (id, codigo, fecha_implantacion, veterinaria,"
+            + " observaciones, eliminado, version) SELECT id, codigo, fecha_implantacion, veterinaria, observaciones, false,"
+            + " version + 1 FROM microchip_archivo WHERE id = ?";
+
+    // Métricas por método (ver metrics.Metricas); se publican por JMX al cargar la clase
+    private static final MetricaOperacion METRICA_LEER_MASCOTAS_ARCHIVABLES = Metricas.operacion("dao", "ArchivoDao.leerMascotasArchivables");
+    private static final MetricaOperacion METRICA_LEER_MICROCHIPS_ARCHIVABLES = Metricas.operacion("dao", "ArchivoDao.leerMicrochipsArchivables");
+    private static final MetricaOperacion METRICA_ARCHIVAR_MASCOTAS = Metricas.operacion("dao", "ArchivoDao.archivarMascotas");
+    private static final MetricaOperacion METRICA_ARCHIVAR_MICROCHIPS = Metricas.operacion("dao", "ArchivoDao.archivarMicrochips");
+    private static final MetricaOperacion METRICA_RESTAURAR_MASCOTA = Metricas.operacion("dao", "ArchivoDao.restaurarMascota");
+    private static final MetricaOperacion METRICA_RESTAURAR_MICROCHIP = Metricas.operacion("dao", "ArchivoDao.restaurarMicrochip");
+
+    // IDs de hasta limite mascotas archivables con ID mayor a despuesDeId, ordenados (paginación por clave)
+    public List<Long> leerMascotasArchivables(long despuesDeId, long retencionSegundos, int limite, Connection conn) throws SQLException {
+        return METRICA_LEER_MASCOTAS_ARCHIVABLES.medir(
+                () -> leerArchivables("mascota", ARCHIVABLE, despuesDeId, retencionSegundos, limite, conn), List::size);
+    }
+
+    public List<Long> leerMicrochipsArchivables(long despuesDeId, long retencionSegundos, int limite, Connection conn) throws SQLException {
+        return METRICA_LEER_MICROCHIPS_ARCHIVABLES.medir(
+                () -> leerArchivables("microchip", MICROCHIP_ARCHIVABLE, despuesDeId, retencionSegundos, limite, conn), List::size);
+    }
+
+    // Copia a mascota_archivo y borra las mascotas indicadas que sigan siendo archivables; devuelve cuántas movió
+    // Debe llamarse dentro de una transacción
+    public int archivarMascotas(List<Long> ids, long retencionSegundos, Connection conn) throws SQLException {
+        return METRICA_ARCHIVAR_MASCOTAS.medir(
+                () -> archivar("mascota", COLUMNAS_MASCOTA, ARCHIVABLE, ids, retencionSegundos, conn), Integer::longValue);
+    }
+
+    public int archivarMicrochips(List<Long> ids, long retencionSegundos, Connection conn) throws SQLException {
+        return METRICA_ARCHIVAR_MICROCHIPS.medir(
+                () -> archivar("microchip", COLUMNAS_MICROCHIP, MICROCHIP_ARCHIVABLE, ids, retencionSegundos, conn), Integer::longValue);
+    }
+
+    // Devuelve la mascota archivada a la tabla principal como activa y con la versión incrementada
+    // Devuelve false si no está en el archivo. Debe llamarse dentro de una transacción
+    public boolean restaurarMascota(Long id, Connection conn) throws SQLException {
+        return METRICA_RESTAURAR_MASCOTA.medir(() -> restaurar("mascota", SQL_RESTAURAR_MASCOTA, id, conn), ArchivoDao::filas);
+    }
+
+    // Si otro microchip activo o eliminado ya usa el código, el UNIQUE lo rechaza con SQLIntegrityConstraintViolationException
+    public boolean restaurarMicrochip(Long id, Connection conn) throws SQLException {
+        return METRICA_RESTAURAR_MICROCHIP.medir(() -> restaurar("microchip", SQL_RESTAURAR_MICROCHIP, id, conn), ArchivoDao::filas);
+    }
+
+    private static List<Long> leerArchivables(String tabla, String condicion, long despuesDeId, long retencionSegundos,
+                                              int limite, Connection conn) throws SQLException {
+        String sql = "SELECT id FROM " + tabla + " WHERE id > ? AND " + condicion + " ORDER BY id LIMIT ?";
+        List<Long> ids = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, despuesDeId);
+            stmt.setLong(2, retencionSegundos);
+            stmt.setInt(3, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Bloquea las filas del lote que siguen cumpliendo la condición, las copia al archivo y las borra
+    private static int archivar(String tabla, String columnas, String condicion, List<Long> ids, long retencionSegundos,
+                                Connection conn) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Long> confirmados = new ArrayList<>(ids.size());
+        String bloquear = "SELECT id FROM " + tabla + " WHERE id IN (" + Tramos.marcadores(ids.size()) + ") AND "
+                + condicion + " FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(bloquear)) {
+            int indice = cargarIds(stmt, ids, 1);
+            stmt.setLong(indice, retencionSegundos);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    confirmados.add(rs.getLong(1));
+                }
+            }
+        }
+        if (confirmados.isEmpty()) {
+            return 0;
+        }
+
+        String enLote = " WHERE id IN (" + Tramos.marcadores(confirmados.size()) + ")";
+        int copiadas;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO " + tabla + "_archivo (" + columnas + ") SELECT " + columnas + " FROM " + tabla + enLote)) {
+            cargarIds(stmt, confirmados, 1);
+            copiadas = stmt.executeUpdate();
+        }
+        int borradas;
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + tabla + enLote)) {
+            cargarIds(stmt, confirmados, 1);
+            borradas = stmt.executeUpdate();
+        }
+        if (copiadas != confirmados.size() || borradas != confirmados.size()) {
+            throw new SQLException("Archiving " + tabla + " failed: " + confirmados.size() + " rows locked, "
+                    + copiadas + " copied, " + borradas + " deleted.");
+        }
+        return borradas;
+    }
+
+    private static boolean restaurar(String tabla, String sqlInsertar, Long id, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM " + tabla + "_archivo WHERE id = ? FOR UPDATE")) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sqlInsertar)) {
+            stmt.setLong(1, id);
+            if (stmt.executeUpdate() == 0) {
+                throw new SQLException("Restoring " + tabla + " failed, no rows affected.");
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + tabla + "_archivo WHERE id = ?")) {
+            stmt.setLong(1, id);
+            stmt.executeUpdate();
+        }
+        return true;
+    }
+
+    private static long filas(boolean restaurada) {
+        return restaurada ? 1 : 0;
+    }
+
+    // Carga los IDs como parámetros a partir de la posición indicada y devuelve la siguiente posición libre
+    private static int cargarIds(PreparedStatement stmt, List<Long> ids, int desde) throws SQLException {
+        int indice = desde;
+        for (Long id : ids) {
+            stmt.setLong(indice++, id);
+        }
+        return indice;
+    }
+}
@@ -0,0 +1,33 @@
+package dao;
+
+import java.sql.SQLException;
+
+/*
+Se lanza cuando un UPDATE con control de versión no encuentra la fila en la versión esperada:
+otra operación la modificó después de que se leyó. Quien la recibe debe volver a leer la entidad
+y reintentar (o mostrar los cambios al usuario) en lugar de pisar la escritura ajena.
+ */
+
+public class ConflictoVersionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String entidad;
+    private final Long id;
+    private final Integer versionEsperada;
+    private final Integer versionActual;
+
+    public ConflictoVersionException(String entidad, Long id, Integer versionEsperada, Integer versionActual) {
+        super("El registro de " + entidad + " con ID " + id + " fue modificado por otra operación (versión esperada "
+                + versionEsperada + ", actual " + versionActual + "); vuelva a leerlo e intente nuevamente");
+        this.entidad = entidad;
+        this.id = id;
+        this.versionEsperada = versionEsperada;
+        this.versionActual = versionActual;
+    }
+
+    public String getEntidad() { return entidad; }
+    public Long getId() { return id; }
+    public Integer getVersionEsperada() { return versionEsperada; }
+    public Integer getVersionActual() { return versionActual; }
+}
@@ -0,0 +1,102 @@
+package dao;
+
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+Adapta un cursor JDBC a un Stream que lee las filas a demanda.
+Solo hay en memoria la fila actual (más el bloque de fetch del driver), sin importar el tamaño de la tabla.
+El Stream es dueño del ResultSet y del PreparedStatement: se liberan al cerrar el Stream,
+por lo que debe usarse siempre dentro de un try-with-resources, incluso si se corta antes del final.
+ */
+
+public final class CursorStream {
+
+    // Filas que el servidor envía por cada ida cuando se lee con cursor
+    public static final int TAMANIO_FETCH = 500;
+
+    private CursorStream() {
+    }
+
+    // Ejecuta la consulta y devuelve un Stream perezoso sobre sus filas
+    public static <T> Stream<T> abrir(PreparedStatement stmt, MapeadorFila<T> mapeador) throws SQLException {
+        return abrir(stmt, mapeador, null);
+    }
+
+    // Igual que abrir(stmt, mapeador), registrando la lectura en la métrica indicada (puede ser null)
+    // La medición abarca desde la ejecución hasta el cierre del Stream y cuenta las filas efectivamente leídas
+    public static <T> Stream<T> abrir(PreparedStatement stmt, MapeadorFila<T> mapeador, MetricaOperacion metrica) throws SQLException {
+        Medicion medicion = metrica != null ? metrica.iniciar() : null;
+        ResultSet rs;
+        try {
+            stmt.setFetchSize(TAMANIO_FETCH);
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            stmt.close();
+            if (medicion != null) {
+                medicion.close();
+            }
+            throw e;
+        }
+
+        long[] leidas = {0};
+        boolean[] fallo = {false};
+        Spliterator<T> filas = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    accion.accept(mapeador.mapear(rs));
+                    leidas[0]++;
+                    return true;
+                } catch (SQLException e) {
+                    fallo[0] = true;
+                    throw new RuntimeException("Error leyendo el cursor: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(filas, false).onClose(() -> {
+            if (medicion != null) {
+                if (!fallo[0]) {
+                    medicion.exito(leidas[0]);
+                }
+                medicion.close();
+            }
+            cerrar(rs, stmt);
+        });
+    }
+
+    // Agrega al Stream el cierre de un recurso adicional (por ejemplo, la conexión que lo alimenta)
+    public static <T> Stream<T> cerrandoAlFinal(Stream<T> stream, AutoCloseable recurso) {
+        return stream.onClose(() -> cerrar(recurso));
+    }
+
+    private static void cerrar(AutoCloseable... recursos) {
+        RuntimeException error = null;
+        for (AutoCloseable recurso : recursos) {
+            try {
+                recurso.close();
+            } catch (Exception e) {
+                if (error == null) {
+                    error = new RuntimeException("Error cerrando el cursor: " + e.getMessage(), e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
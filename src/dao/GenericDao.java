@@ -5,20 +5,28 @@
 package dao;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /*
 Interfaz que define las operaciones CRUD básicas para el acceso a datos.
 Proporciona una capa de abstracción para la persistencia de entidades en la base de datos.
 Todas las operaciones reciben una conexión para permitir el manejo de transacciones.
+Los Streams devueltos mantienen un cursor abierto sobre la conexión y deben cerrarse.
 
 @param <T> Tipo de entidad que manejará el DAO
  */
 
 public interface GenericDao<T> {
     T crear(T entity, Connection conn) throws Exception;
+    List<T> crearLote(List<T> entities, Connection conn) throws Exception;
     T leer(Long id, Connection conn) throws Exception;
+    // Lee varias entidades activas en pocas idas a la base (IN de a tramos), en el orden de los IDs recibidos
+    LecturaPorIds<T> leerPorIds(Collection<Long> ids, Connection conn) throws Exception;
     List<T> leerTodos(Connection conn) throws Exception;
+    Stream<T> leerTodosStream(Connection conn) throws Exception;
+    Pagina<T> leerPagina(Long despuesDeId, int tamanio, Connection conn) throws Exception;
     T actualizar(T entity, Connection conn) throws Exception;
     boolean eliminar(Long id, Connection conn) throws Exception;
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/*
+Resultado de leer varias entidades por ID (ver GenericDao.leerPorIds).
+Los elementos respetan el orden de los IDs pedidos (un ID repetido aparece una sola vez, en su primera posición);
+los IDs que no existen o están eliminados quedan en faltantes, también en el orden pedido.
+
+@param <T> Tipo de entidad leída
+ */
+
+public class LecturaPorIds<T> {
+    private final List<T> elementos;
+    private final List<Long> faltantes;
+
+    public LecturaPorIds(List<T> elementos, List<Long> faltantes) {
+        this.elementos = elementos;
+        this.faltantes = faltantes;
+    }
+
+    // Arma el resultado recorriendo los IDs pedidos y buscando cada uno entre las entidades encontradas
+    public static <T> LecturaPorIds<T> ordenar(Collection<Long> ids, Map<Long, T> encontradas) {
+        List<T> elementos = new ArrayList<>(encontradas.size());
+        List<Long> faltantes = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            T entidad = encontradas.get(id);
+            if (entidad != null) {
+                elementos.add(entidad);
+            } else {
+                faltantes.add(id);
+            }
+        }
+        return new LecturaPorIds<>(elementos, faltantes);
+    }
+
+    // Rechaza una colección null o con algún ID null
+    public static void validarIds(Collection<Long> ids) {
+        if (ids == null || ids.stream().anyMatch(id -> id == null)) {
+            throw new IllegalArgumentException("Los IDs a leer son requeridos y no pueden ser null");
+        }
+    }
+
+    public List<T> getElementos() { return elementos; }
+    public List<Long> getFaltantes() { return faltantes; }
+    public boolean estanTodos() { return faltantes.isEmpty(); }
+}
@@ -0,0 +1,16 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+Convierte la fila actual de un ResultSet en una entidad.
+Permite que los DAOs compartan la lógica de recorrido de cursores sin repetir el mapeo.
+
+@param <T> Tipo de entidad que produce el mapeo
+ */
+
+@FunctionalInterface
+public interface MapeadorFila<T> {
+    T mapear(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,96 @@
+package dao;
+
+import models.Mascota;
+import models.Microchip;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/*
+Mapeo de filas a Mascota (con su microchip) por posición de columna.
+Las consultas seleccionan exactamente COLUMNAS: las de la mascota (alias m) seguidas por
+las del microchip unido con LEFT JOIN (alias mc). Cada columna se lee una sola vez por fila.
+Solo se usa en consultas que filtran eliminado = false, por lo que esa columna no se trae.
+Las lecturas sin JOIN (ver PlanCarga) seleccionan COLUMNAS_SIN_MICROCHIP, que en lugar del microchip trae
+m.microchip_id; ese mapeador deja en la mascota un Microchip con solo el ID.
+ */
+
+public class MapeadorMascota implements MapeadorFila<Mascota> {
+
+    public static final String COLUMNAS = "m.id, m.nombre, m.especie, m.raza, m.fecha_nacimiento, m.duenio, m.version, "
+            + MapeadorMicrochip.COLUMNAS;
+    public static final int CANTIDAD_COLUMNAS = 7 + MapeadorMicrochip.CANTIDAD_COLUMNAS;
+    public static final String COLUMNAS_SIN_MICROCHIP = "m.id, m.nombre, m.especie, m.raza, m.fecha_nacimiento, m.duenio, m.version, m.microchip_id";
+    public static final int CANTIDAD_COLUMNAS_SIN_MICROCHIP = 8;
+
+    // Para consultas cuyo SELECT empieza con COLUMNAS
+    public static final MapeadorMascota DESDE_PRIMERA = new MapeadorMascota(1);
+    // Para consultas cuyo SELECT empieza con COLUMNAS_SIN_MICROCHIP
+    public static final MapeadorMascota SIN_MICROCHIP_DESDE_PRIMERA = new MapeadorMascota(1, false);
+
+    private final int colId;
+    private final int colNombre;
+    private final int colEspecie;
+    private final int colRaza;
+    private final int colFechaNacimiento;
+    private final int colDuenio;
+    private final int colVersion;
+    private final MapeadorMicrochip microchip;
+    private final int colMicrochipId;
+
+    // primeraColumna: posición (desde 1) donde empiezan las COLUMNAS de mascota en el SELECT
+    public MapeadorMascota(int primeraColumna) {
+        this(primeraColumna, true);
+    }
+
+    // conMicrochip false: el SELECT trae COLUMNAS_SIN_MICROCHIP en lugar de COLUMNAS
+    public MapeadorMascota(int primeraColumna, boolean conMicrochip) {
+        this.colId = primeraColumna;
+        this.colNombre = primeraColumna + 1;
+        this.colEspecie = primeraColumna + 2;
+        this.colRaza = primeraColumna + 3;
+        this.colFechaNacimiento = primeraColumna + 4;
+        this.colDuenio = primeraColumna + 5;
+        this.colVersion = primeraColumna + 6;
+        this.microchip = conMicrochip ? new MapeadorMicrochip(primeraColumna + 7) : null;
+        this.colMicrochipId = conMicrochip ? 0 : primeraColumna + 7;
+    }
+
+    // Columnas, cantidad y mapeador que corresponden al plan de carga del microchip
+    public static String columnas(PlanCarga plan) {
+        return plan == PlanCarga.JOIN ? COLUMNAS : COLUMNAS_SIN_MICROCHIP;
+    }
+
+    public static int cantidadColumnas(PlanCarga plan) {
+        return plan == PlanCarga.JOIN ? CANTIDAD_COLUMNAS : CANTIDAD_COLUMNAS_SIN_MICROCHIP;
+    }
+
+    public static MapeadorMascota desdePrimera(PlanCarga plan) {
+        return plan == PlanCarga.JOIN ? DESDE_PRIMERA : SIN_MICROCHIP_DESDE_PRIMERA;
+    }
+
+    @Override
+    public Mascota mapear(ResultSet rs) throws SQLException {
+        Mascota mascota = new Mascota();
+        mascota.setId(rs.getLong(colId));
+        mascota.setNombre(rs.getString(colNombre));
+        mascota.setEspecie(rs.getString(colEspecie));
+        mascota.setRaza(rs.getString(colRaza));
+        mascota.setFechaNacimiento(rs.getObject(colFechaNacimiento, LocalDate.class));
+        mascota.setDuenio(rs.getString(colDuenio));
+        mascota.setVersion(rs.getInt(colVersion));
+        mascota.setEliminado(false);
+        if (microchip != null) {
+            mascota.setMicrochip(microchip.mapear(rs));
+        } else {
+            long microchipId = rs.getLong(colMicrochipId);
+            if (!rs.wasNull()) {
+                Microchip referencia = new Microchip();
+                referencia.setId(microchipId);
+                mascota.setMicrochip(referencia);
+            }
+        }
+        return mascota;
+    }
+}
@@ -0,0 +1,58 @@
+package dao;
+
+import models.Microchip;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/*
+Mapeo de filas a Microchip por posición de columna.
+Las consultas seleccionan exactamente COLUMNAS (con el alias mc), así que las posiciones
+se conocen al crear el mapeador y cada fila se lee sin resolver nombres de columna.
+Solo se usa en consultas que filtran eliminado = false, por lo que esa columna no se trae.
+ */
+
+public class MapeadorMicrochip implements MapeadorFila<Microchip> {
+
+    public static final String COLUMNAS = "mc.id, mc.codigo, mc.fecha_implantacion, mc.veterinaria, mc.observaciones, mc.version";
+    public static final int CANTIDAD_COLUMNAS = 6;
+
+    // Para consultas cuyo SELECT empieza con COLUMNAS
+    public static final MapeadorMicrochip DESDE_PRIMERA = new MapeadorMicrochip(1);
+
+    private final int colId;
+    private final int colCodigo;
+    private final int colFechaImplantacion;
+    private final int colVeterinaria;
+    private final int colObservaciones;
+    private final int colVersion;
+
+    // primeraColumna: posición (desde 1) donde empiezan las COLUMNAS de microchip en el SELECT
+    public MapeadorMicrochip(int primeraColumna) {
+        this.colId = primeraColumna;
+        this.colCodigo = primeraColumna + 1;
+        this.colFechaImplantacion = primeraColumna + 2;
+        this.colVeterinaria = primeraColumna + 3;
+        this.colObservaciones = primeraColumna + 4;
+        this.colVersion = primeraColumna + 5;
+    }
+
+    // Devuelve null si la fila no tiene microchip (por ejemplo, en un LEFT JOIN sin coincidencia)
+    @Override
+    public Microchip mapear(ResultSet rs) throws SQLException {
+        long id = rs.getLong(colId);
+        if (rs.wasNull()) {
+            return null;
+        }
+        Microchip microchip = new Microchip();
+        microchip.setId(id);
+        microchip.setCodigo(rs.getString(colCodigo));
+        microchip.setFechaImplantacion(rs.getObject(colFechaImplantacion, LocalDate.class));
+        microchip.setVeterinaria(rs.getString(colVeterinaria));
+        microchip.setObservaciones(rs.getString(colObservaciones));
+        microchip.setVersion(rs.getInt(colVersion));
+        microchip.setEliminado(false);
+        return microchip;
+    }
+}
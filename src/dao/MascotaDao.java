@@ -4,11 +4,23 @@
  */
 package dao;
 
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
 import models.Mascota;
 import models.Microchip;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 
 /*
@@ -19,20 +31,70 @@ Se encarga de mapear entre objetos Java y registros de la base de datos.
 
 public class MascotaDao implements GenericDao<Mascota> {
     
+    // Cantidad de filas enviadas por cada executeBatch cuando no se indica otra
+    public static final int TAMANIO_LOTE_DEFECTO = Tramos.TAMANIO_LOTE;
+    
+    // Largo mínimo del texto para buscar por el índice FULLTEXT (coincide con ngram_token_size de MySQL)
+    private static final int LARGO_MINIMO_NGRAM = 2;
+    
+    // Relevancia de una coincidencia por dueño: 0 nombre exacto, 1 empieza con el texto, 2 alguna palabra empieza con el texto, 3 lo contiene
+    // La comparación usa la collation de la columna (utf8mb4_0900_ai_ci), que ignora mayúsculas y acentos
+    private static final String RANGO_DUENIO = "(CASE WHEN m.duenio = ? THEN 0 WHEN m.duenio LIKE ? THEN 1 WHEN m.duenio LIKE ? THEN 2 ELSE 3 END)";
+    
+    // Todas las lecturas traen columnas explícitas en el orden que espera MapeadorMascota
+    private static final String DESDE_MASCOTAS = " FROM mascota m LEFT JOIN microchip mc ON m.microchip_id = mc.id AND mc.eliminado = false";
+    private static final String SELECT_MASCOTAS = "SELECT " + MapeadorMascota.COLUMNAS + DESDE_MASCOTAS;
+    private static final MapeadorMascota MAPEADOR = MapeadorMascota.DESDE_PRIMERA;
+    // Lecturas de listas con un PlanCarga distinto de JOIN: solo la tabla mascota (ver MapeadorMascota.COLUMNAS_SIN_MICROCHIP)
+    private static final String DESDE_MASCOTAS_SIN_MICROCHIP = " FROM mascota m";
+    
+    private final MicrochipDao microchipDao = new MicrochipDao();
+    
+    private static final String SQL_INSERTAR = "INSERT INTO mascota (nombre, especie, raza, fecha_nacimiento, duenio, microchip_id, eliminado) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    // Escrituras condicionales: la validación del microchip viaja en la misma sentencia en lugar de hacerse con SELECT previos
+    private static final String MICROCHIP_ACTIVO = "EXISTS (SELECT 1 FROM microchip mc WHERE mc.id = ? AND mc.eliminado = false)";
+    private static final String SQL_INSERTAR_CONDICIONAL = "INSERT INTO mascota (nombre, especie, raza, fecha_nacimiento, duenio, microchip_id, eliminado)"
+            + " SELECT ?, ?, ?, ?, ?, ?, ? FROM DUAL WHERE ? IS NULL OR " + MICROCHIP_ACTIVO;
+    // Control de concurrencia optimista: las actualizaciones completas solo se aplican en la versión leída y la incrementan
+    private static final String SQL_ACTUALIZAR = "UPDATE mascota SET nombre = ?, especie = ?, raza = ?, fecha_nacimiento = ?, duenio = ?, microchip_id = ?,"
+            + " version = version + 1 WHERE id = ? AND version = ? AND eliminado = false";
+    private static final String SQL_ACTUALIZAR_CONDICIONAL = SQL_ACTUALIZAR + " AND (? IS NULL OR microchip_id <=> ? OR " + MICROCHIP_ACTIVO + ")";
+    
+    // Seguimiento de cambios (ver leerCambiosStream): columnas propias de la mascota, con el ID del microchip y eliminado
+    private static final String SELECT_CAMBIOS = "SELECT id, nombre, especie, raza, fecha_nacimiento, duenio, version, microchip_id, eliminado FROM mascota";
+    
+    // Métricas por método (ver metrics.Metricas); se publican por JMX al cargar la clase
+    private static final MetricaOperacion METRICA_CREAR = Metricas.operacion("dao", "MascotaDao.crear");
+    private static final MetricaOperacion METRICA_CREAR_LOTE = Metricas.operacion("dao", "MascotaDao.crearLote");
+    private static final MetricaOperacion METRICA_LEER = Metricas.operacion("dao", "MascotaDao.leer");
+    private static final MetricaOperacion METRICA_LEER_POR_IDS = Metricas.operacion("dao", "MascotaDao.leerPorIds");
+    private static final MetricaOperacion METRICA_LEER_TODOS = Metricas.operacion("dao", "MascotaDao.leerTodos");
+    private static final MetricaOperacion METRICA_LEER_TODOS_STREAM = Metricas.operacion("dao", "MascotaDao.leerTodosStream");
+    private static final MetricaOperacion METRICA_LEER_PAGINA = Metricas.operacion("dao", "MascotaDao.leerPagina");
+    private static final MetricaOperacion METRICA_ACTUALIZAR = Metricas.operacion("dao", "MascotaDao.actualizar");
+    private static final MetricaOperacion METRICA_ELIMINAR = Metricas.operacion("dao", "MascotaDao.eliminar");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_DUENIO = Metricas.operacion("dao", "MascotaDao.buscarPorDuenio");
+    private static final MetricaOperacion METRICA_LEER_RANKING_POR_DUENIO = Metricas.operacion("dao", "MascotaDao.leerRankingPorDuenio");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_ESPECIE = Metricas.operacion("dao", "MascotaDao.buscarPorEspecie");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_ESPECIE_PAGINA = Metricas.operacion("dao", "MascotaDao.buscarPorEspeciePagina");
+    private static final MetricaOperacion METRICA_LEER_MICROCHIPS_ASIGNADOS = Metricas.operacion("dao", "MascotaDao.leerMicrochipsAsignados");
+    private static final MetricaOperacion METRICA_LEER_MASCOTAS_POR_MICROCHIP = Metricas.operacion("dao", "MascotaDao.leerMascotasPorMicrochip");
+    private static final MetricaOperacion METRICA_LEER_IDS_ACTIVOS = Metricas.operacion("dao", "MascotaDao.leerIdsActivos");
+    private static final MetricaOperacion METRICA_ACTUALIZAR_MICROCHIP_LOTE = Metricas.operacion("dao", "MascotaDao.actualizarMicrochipLote");
+    private static final MetricaOperacion METRICA_LEER_CAMBIOS_STREAM = Metricas.operacion("dao", "MascotaDao.leerCambiosStream");
+    private static final MetricaOperacion METRICA_LEER_RESUMEN_ACTIVOS = Metricas.operacion("dao", "MascotaDao.leerResumenActivos");
+    private static final MetricaOperacion METRICA_CREAR_CONDICIONAL = Metricas.operacion("dao", "MascotaDao.crearCondicional");
+    private static final MetricaOperacion METRICA_ACTUALIZAR_CONDICIONAL = Metricas.operacion("dao", "MascotaDao.actualizarCondicional");
+    private static final MetricaOperacion METRICA_ACTUALIZAR_MICROCHIP = Metricas.operacion("dao", "MascotaDao.actualizarMicrochip");
+    private static final MetricaOperacion METRICA_LEER_VERSIONES_ACTIVAS = Metricas.operacion("dao", "MascotaDao.leerVersionesActivas");
+    
     // Crea una nueva mascota en la base de datos. Incluye la asignación de microchip si está presente en el objeto
     @Override
     public Mascota crear(Mascota mascota, Connection conn) throws SQLException {
-        String sql = "INSERT INTO mascota (nombre, especie, raza, fecha_nacimiento, duenio, microchip_id, eliminado) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, mascota.getNombre());
-            stmt.setString(2, mascota.getEspecie());
-            stmt.setString(3, mascota.getRaza());
-            stmt.setDate(4, mascota.getFechaNacimiento() != null ? 
-                Date.valueOf(mascota.getFechaNacimiento()) : null);
-            stmt.setString(5, mascota.getDuenio());
-            stmt.setObject(6, mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null, Types.BIGINT);
-            stmt.setBoolean(7, false);
+        try (Medicion medicion = METRICA_CREAR.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            cargarParametrosInsertar(stmt, mascota);
             
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
@@ -42,140 +104,590 @@ public class MascotaDao implements GenericDao<Mascota> {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     mascota.setId(generatedKeys.getLong(1));
+                    mascota.setVersion(0);
                 } else {
                     throw new SQLException("Creating mascota failed, no ID obtained.");
                 }
             }
+            medicion.exito(1);
         }
         return mascota;
     }
     
+    @Override
+    public List<Mascota> crearLote(List<Mascota> mascotas, Connection conn) throws SQLException {
+        return crearLote(mascotas, TAMANIO_LOTE_DEFECTO, conn);
+    }
+    
+    // Crea varias mascotas usando JDBC batch, enviando de a tamanioLote filas por ida a la base
+    // Con rewriteBatchedStatements cada lote viaja como un único INSERT multi-fila; los IDs generados se asignan en orden
+    public List<Mascota> crearLote(List<Mascota> mascotas, int tamanioLote, Connection conn) throws SQLException {
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero");
+        }
+        
+        try (Medicion medicion = METRICA_CREAR_LOTE.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            for (int inicio = 0; inicio < mascotas.size(); inicio += tamanioLote) {
+                List<Mascota> lote = mascotas.subList(inicio, Math.min(inicio + tamanioLote, mascotas.size()));
+                for (Mascota mascota : lote) {
+                    cargarParametrosInsertar(stmt, mascota);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    for (Mascota mascota : lote) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("Creating mascota batch failed, no ID obtained.");
+                        }
+                        mascota.setId(generatedKeys.getLong(1));
+                        mascota.setVersion(0);
+                    }
+                }
+            }
+            medicion.exito(mascotas.size());
+        }
+        return mascotas;
+    }
+    
     // Recupera una mascota por su ID, incluyendo la información del microchip asociado si existe
     // Realiza un JOIN con la tabla microchip para cargar toda la información relacionada
     @Override
     public Mascota leer(Long id, Connection conn) throws SQLException {
-        String sql = "SELECT m.*, mc.* FROM mascota m LEFT JOIN microchip mc ON m.microchip_id = mc.id AND mc.eliminado = false WHERE m.id = ? AND m.eliminado = false";
+        String sql = SELECT_MASCOTAS + " WHERE m.id = ? AND m.eliminado = false";
         Mascota mascota = null;
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Medicion medicion = METRICA_LEER.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    mascota = resultSetToMascota(rs);
+                    mascota = MAPEADOR.mapear(rs);
                 }
             }
+            medicion.exito(mascota != null ? 1 : 0);
         }
         return mascota;
     }
     
+    // Lee las mascotas activas de los IDs indicados, con su microchip, de a Tramos.TAMANIO_IN por consulta
+    // El resultado sigue el orden de los IDs recibidos e informa los que no existen o están eliminados
+    @Override
+    public LecturaPorIds<Mascota> leerPorIds(Collection<Long> ids, Connection conn) throws SQLException {
+        return leerPorIds(ids, PlanCarga.JOIN, conn);
+    }
+    
+    public LecturaPorIds<Mascota> leerPorIds(Collection<Long> ids, PlanCarga plan, Connection conn) throws SQLException {
+        LecturaPorIds.validarIds(ids);
+        Map<Long, Mascota> mascotas = new HashMap<>();
+        MapeadorMascota mapeador = MapeadorMascota.desdePrimera(plan);
+        Tramos.consultarEnTramos(select(plan) + " WHERE m.id IN (%s) AND m.eliminado = false",
+                new LinkedHashSet<>(ids), conn, METRICA_LEER_POR_IDS, rs -> {
+                    Mascota mascota = mapeador.mapear(rs);
+                    mascotas.put(mascota.getId(), mascota);
+                });
+        LecturaPorIds<Mascota> resultado = LecturaPorIds.ordenar(ids, mascotas);
+        completarMicrochips(resultado.getElementos(), plan, conn);
+        return resultado;
+    }
+    
     // Recupera todas las mascotas activas (no eliminadas) del sistema
     // Incluye la información de microchip para cada mascota mediante LEFT JOIN
     @Override
     public List<Mascota> leerTodos(Connection conn) throws SQLException {
-        String sql = "SELECT m.*, mc.* FROM mascota m LEFT JOIN microchip mc ON m.microchip_id = mc.id AND mc.eliminado = false WHERE m.eliminado = false";
+        return leerTodos(PlanCarga.JOIN, conn);
+    }
+    
+    // Igual que leerTodos, trayendo el microchip según el plan indicado
+    public List<Mascota> leerTodos(PlanCarga plan, Connection conn) throws SQLException {
+        String sql = select(plan) + " WHERE m.eliminado = false";
         List<Mascota> mascotas = new ArrayList<>();
+        MapeadorMascota mapeador = MapeadorMascota.desdePrimera(plan);
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
+        try (Medicion medicion = METRICA_LEER_TODOS.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                mascotas.add(resultSetToMascota(rs));
+                mascotas.add(mapeador.mapear(rs));
             }
+            medicion.exito(mascotas.size());
         }
+        completarMicrochips(mascotas, plan, conn);
         return mascotas;
     }
     
-    // Actualiza los datos de una mascota existente en la base de datos
-    // Permite modificar todos los campos incluyendo la asignación de microchip
+    // Recorre todas las mascotas activas con un cursor del servidor, sin cargarlas todas en memoria
+    // El Stream debe cerrarse (try-with-resources) para liberar el cursor aunque no se lea hasta el final
     @Override
-    public Mascota actualizar(Mascota mascota, Connection conn) throws SQLException {
-        String sql = "UPDATE mascota SET nombre = ?, especie = ?, raza = ?, fecha_nacimiento = ?, duenio = ?, microchip_id = ? WHERE id = ?";
+    public Stream<Mascota> leerTodosStream(Connection conn) throws SQLException {
+        String sql = SELECT_MASCOTAS + " WHERE m.eliminado = false";
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        return CursorStream.abrir(stmt, MAPEADOR, METRICA_LEER_TODOS_STREAM);
+    }
+    
+    // Recupera una página de mascotas activas con ID mayor a despuesDeId, ordenadas por ID
+    // Usa la clave primaria para saltar directo al inicio de la página, sin OFFSET
+    @Override
+    public Pagina<Mascota> leerPagina(Long despuesDeId, int tamanio, Connection conn) throws SQLException {
+        return leerPagina(despuesDeId, tamanio, PlanCarga.JOIN, conn);
+    }
+    
+    public Pagina<Mascota> leerPagina(Long despuesDeId, int tamanio, PlanCarga plan, Connection conn) throws SQLException {
+        String sql = select(plan) + " WHERE m.id > ? AND m.eliminado = false ORDER BY m.id LIMIT ?";
         
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, mascota.getNombre());
-            stmt.setString(2, mascota.getEspecie());
-            stmt.setString(3, mascota.getRaza());
-            stmt.setDate(4, mascota.getFechaNacimiento() != null ? 
-                Date.valueOf(mascota.getFechaNacimiento()) : null);
-            stmt.setString(5, mascota.getDuenio());
-            stmt.setObject(6, mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null, Types.BIGINT);
-            stmt.setLong(7, mascota.getId());
+            stmt.setLong(1, despuesDeId);
+            stmt.setInt(2, tamanio + 1);
+            return leerPaginaMascotas(stmt, tamanio, plan, conn, METRICA_LEER_PAGINA);
+        }
+    }
+    
+    // Actualiza los datos de una mascota existente si nadie la modificó desde que se leyó (ver getVersion)
+    // Permite modificar todos los campos incluyendo la asignación de microchip
+    // Lanza ConflictoVersionException si la versión no coincide y SQLException si la mascota no existe o está eliminada
+    @Override
+    public Mascota actualizar(Mascota mascota, Connection conn) throws SQLException {
+        try (Medicion medicion = METRICA_ACTUALIZAR.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_ACTUALIZAR)) {
+            cargarParametrosActualizar(stmt, mascota);
             
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Updating mascota failed, no rows affected.");
+            if (stmt.executeUpdate() == 0) {
+                Integer actual = leerVersionesActivas(mascota.getId(), null, conn)[0];
+                if (actual == null) {
+                    throw new SQLException("Updating mascota failed, no rows affected.");
+                }
+                throw new ConflictoVersionException("mascota", mascota.getId(), mascota.getVersion(), actual);
             }
+            medicion.exito(1);
         }
+        mascota.setVersion(mascota.getVersion() + 1);
         return mascota;
     }
     
     // Realiza una eliminación lógica de una mascota marcándola como eliminada. No borra físicamente el registro de la base de datos
+    // Devuelve false si la mascota no existe o ya estaba eliminada
     @Override
     public boolean eliminar(Long id, Connection conn) throws SQLException {
-        String sql = "UPDATE mascota SET eliminado = true WHERE id = ?";
+        String sql = "UPDATE mascota SET eliminado = true, version = version + 1 WHERE id = ? AND eliminado = false";
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Medicion medicion = METRICA_ELIMINAR.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, id);
-            return stmt.executeUpdate() > 0;
+            boolean resultado = stmt.executeUpdate() > 0;
+            medicion.exito(resultado ? 1 : 0);
+            return resultado;
+        }
+    }
+    
+    // Inserta la mascota solo si no tiene microchip o si su microchip existe y está activo; devuelve false si no se insertó
+    // Un microchip ya asignado a otra mascota lo rechaza el UNIQUE de microchip_id con SQLIntegrityConstraintViolationException
+    public boolean crearCondicional(Mascota mascota, Connection conn) throws SQLException {
+        Long microchipId = mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null;
+        
+        try (Medicion medicion = METRICA_CREAR_CONDICIONAL.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR_CONDICIONAL, Statement.RETURN_GENERATED_KEYS)) {
+            cargarParametrosInsertar(stmt, mascota);
+            stmt.setObject(8, microchipId, Types.BIGINT);
+            stmt.setObject(9, microchipId, Types.BIGINT);
+            
+            if (stmt.executeUpdate() == 0) {
+                medicion.exito(0);
+                return false;
+            }
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Creating mascota failed, no ID obtained.");
+                }
+                mascota.setId(generatedKeys.getLong(1));
+                mascota.setVersion(0);
+            }
+            medicion.exito(1);
+            return true;
+        }
+    }
+    
+    // Actualiza todos los campos solo si la mascota está activa, sigue en la versión que trae el objeto y, cuando el
+    // microchip cambia, el nuevo existe y está activo. Devuelve false si no se cumplió la condición; si se aplicó, deja
+    // en el objeto la nueva versión. Un microchip ya asignado a otra mascota lo rechaza el UNIQUE
+    public boolean actualizarCondicional(Mascota mascota, Connection conn) throws SQLException {
+        Long microchipId = mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null;
+        
+        try (Medicion medicion = METRICA_ACTUALIZAR_CONDICIONAL.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_ACTUALIZAR_CONDICIONAL)) {
+            int indice = cargarParametrosActualizar(stmt, mascota);
+            stmt.setObject(indice++, microchipId, Types.BIGINT);
+            stmt.setObject(indice++, microchipId, Types.BIGINT);
+            stmt.setObject(indice, microchipId, Types.BIGINT);
+            
+            boolean resultado = stmt.executeUpdate() > 0;
+            if (resultado) {
+                mascota.setVersion(mascota.getVersion() + 1);
+            }
+            medicion.exito(resultado ? 1 : 0);
+            return resultado;
+        }
+    }
+    
+    // Asigna el microchip a la mascota (o lo quita si microchipId es null) sin tocar el resto de los campos
+    // Solo se aplica si la mascota está activa y el microchip existe y está activo; devuelve false si no se aplicó
+    public boolean actualizarMicrochip(Long mascotaId, Long microchipId, Connection conn) throws SQLException {
+        String sql = microchipId == null
+                ? "UPDATE mascota SET microchip_id = NULL, version = version + 1 WHERE id = ? AND eliminado = false"
+                : "UPDATE mascota SET microchip_id = ?, version = version + 1 WHERE id = ? AND eliminado = false AND " + MICROCHIP_ACTIVO;
+        
+        try (Medicion medicion = METRICA_ACTUALIZAR_MICROCHIP.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (microchipId == null) {
+                stmt.setLong(1, mascotaId);
+            } else {
+                stmt.setLong(1, microchipId);
+                stmt.setLong(2, mascotaId);
+                stmt.setLong(3, microchipId);
+            }
+            boolean resultado = stmt.executeUpdate() > 0;
+            medicion.exito(resultado ? 1 : 0);
+            return resultado;
+        }
+    }
+    
+    // Sondeo en una sola ida para explicar por qué una escritura condicional no afectó filas
+    // Devuelve {versión de la mascota activa, versión del microchip activo}; null si no existe, está eliminado o el ID es null
+    public Integer[] leerVersionesActivas(Long mascotaId, Long microchipId, Connection conn) throws SQLException {
+        String sql = "SELECT (SELECT version FROM mascota WHERE id = ? AND eliminado = false),"
+                + " (SELECT version FROM microchip WHERE id = ? AND eliminado = false)";
+        
+        try (Medicion medicion = METRICA_LEER_VERSIONES_ACTIVAS.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, mascotaId, Types.BIGINT);
+            stmt.setObject(2, microchipId, Types.BIGINT);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                Integer[] resultado = {rs.getObject(1, Integer.class), rs.getObject(2, Integer.class)};
+                medicion.exito(1);
+                return resultado;
+            }
         }
     }
     
-    // Busca mascotas por el nombre del dueño utilizando búsqueda parcial (LIKE)
+    // Busca mascotas cuyo dueño contiene el texto, ordenadas por relevancia (ver condicionDuenio y RANGO_DUENIO)
     public List<Mascota> buscarPorDuenio(String duenio, Connection conn) throws SQLException {
-        String sql = "SELECT m.*, mc.* FROM mascota m LEFT JOIN microchip mc ON m.microchip_id = mc.id AND mc.eliminado = false WHERE m.duenio LIKE ? AND m.eliminado = false";
+        return buscarPorDuenio(duenio, PlanCarga.JOIN, conn);
+    }
+    
+    public List<Mascota> buscarPorDuenio(String duenio, PlanCarga plan, Connection conn) throws SQLException {
+        String texto = normalizarBusqueda(duenio);
+        String sql = "SELECT " + MapeadorMascota.columnas(plan) + ", " + RANGO_DUENIO + " AS rango" + desde(plan)
+                + " WHERE " + condicionDuenio(texto) + " AND m.eliminado = false ORDER BY rango, m.id";
         List<Mascota> mascotas = new ArrayList<>();
+        MapeadorMascota mapeador = MapeadorMascota.desdePrimera(plan);
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, "%" + duenio + "%");
+        try (Medicion medicion = METRICA_BUSCAR_POR_DUENIO.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int indice = cargarParametrosRango(stmt, 1, texto);
+            cargarParametrosCondicionDuenio(stmt, indice, texto);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    mascotas.add(resultSetToMascota(rs));
+                    mascotas.add(mapeador.mapear(rs));
                 }
             }
+            medicion.exito(mascotas.size());
         }
+        completarMicrochips(mascotas, plan, conn);
         return mascotas;
     }
     
+    // IDs de las mascotas cuyo dueño contiene el texto, en orden (rango, id), hasta limite. Solo ordena (id, rango),
+    // sin el JOIN ni las demás columnas, una vez por búsqueda: MascotaService guarda el ranking y lee cada página por ID
+    public RankingDuenio leerRankingPorDuenio(String duenio, int limite, Connection conn) throws SQLException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite del ranking debe ser mayor a cero");
+        }
+        String texto = normalizarBusqueda(duenio);
+        String sql = "SELECT m.id, " + RANGO_DUENIO + " AS rango FROM mascota m"
+                + " WHERE " + condicionDuenio(texto) + " AND m.eliminado = false ORDER BY rango, m.id LIMIT ?";
+        List<Long> ids = new ArrayList<>();
+        List<Integer> rangos = new ArrayList<>();
+        
+        try (Medicion medicion = METRICA_LEER_RANKING_POR_DUENIO.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int indice = cargarParametrosRango(stmt, 1, texto);
+            indice = cargarParametrosCondicionDuenio(stmt, indice, texto);
+            stmt.setInt(indice, limite + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    rangos.add(rs.getInt(2));
+                }
+            }
+            medicion.exito(ids.size());
+        }
+        
+        // Se pidió una fila de más solo para saber si el ranking quedó recortado
+        int cantidad = Math.min(ids.size(), limite);
+        return new RankingDuenio(rangos.subList(0, cantidad).stream().mapToInt(Integer::intValue).toArray(),
+                ids.subList(0, cantidad).stream().mapToLong(Long::longValue).toArray(), ids.size() > limite);
+    }
+    
     // Busca mascotas por especie exacta 
     public List<Mascota> buscarPorEspecie(String especie, Connection conn) throws SQLException {
-        String sql = "SELECT m.*, mc.* FROM mascota m LEFT JOIN microchip mc ON m.microchip_id = mc.id AND mc.eliminado = false WHERE m.especie = ? AND m.eliminado = false";
+        return buscarPorEspecie(especie, PlanCarga.JOIN, conn);
+    }
+    
+    public List<Mascota> buscarPorEspecie(String especie, PlanCarga plan, Connection conn) throws SQLException {
+        String sql = select(plan) + " WHERE m.especie = ? AND m.eliminado = false";
         List<Mascota> mascotas = new ArrayList<>();
+        MapeadorMascota mapeador = MapeadorMascota.desdePrimera(plan);
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Medicion medicion = METRICA_BUSCAR_POR_ESPECIE.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, especie);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    mascotas.add(resultSetToMascota(rs));
+                    mascotas.add(mapeador.mapear(rs));
                 }
             }
+            medicion.exito(mascotas.size());
+        }
+        completarMicrochips(mascotas, plan, conn);
+        return mascotas;
+    }
+    
+    // Página de mascotas de una especie, ordenadas por ID
+    // idx_mascota_especie guarda el ID junto a la especie, así que el rango especie = ? AND id > ? sale del índice ya ordenado
+    public Pagina<Mascota> buscarPorEspeciePagina(String especie, Long despuesDeId, int tamanio, Connection conn) throws SQLException {
+        return buscarPorEspeciePagina(especie, despuesDeId, tamanio, PlanCarga.JOIN, conn);
+    }
+    
+    public Pagina<Mascota> buscarPorEspeciePagina(String especie, Long despuesDeId, int tamanio, PlanCarga plan,
+                                                  Connection conn) throws SQLException {
+        String sql = select(plan) + " WHERE m.especie = ? AND m.id > ? AND m.eliminado = false ORDER BY m.id LIMIT ?";
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, especie);
+            stmt.setLong(2, despuesDeId);
+            stmt.setInt(3, tamanio + 1);
+            return leerPaginaMascotas(stmt, tamanio, plan, conn, METRICA_BUSCAR_POR_ESPECIE_PAGINA);
         }
+    }
+    
+    // Devuelve, de los microchips indicados, los que ya están asignados a alguna mascota
+    // Incluye las mascotas eliminadas porque el UNIQUE de microchip_id también las abarca
+    public Set<Long> leerMicrochipsAsignados(Collection<Long> microchipIds, Connection conn) throws SQLException {
+        Set<Long> asignados = new HashSet<>();
+        Tramos.consultarEnTramos("SELECT microchip_id FROM mascota WHERE microchip_id IN (%s)",
+                microchipIds, conn, METRICA_LEER_MICROCHIPS_ASIGNADOS, rs -> asignados.add(rs.getLong(1)));
+        return asignados;
+    }
+    
+    // Devuelve, para cada microchip indicado que está asignado, el ID de la mascota que lo tiene
+    // Como leerMicrochipsAsignados, incluye las mascotas eliminadas
+    public Map<Long, Long> leerMascotasPorMicrochip(Collection<Long> microchipIds, Connection conn) throws SQLException {
+        Map<Long, Long> mascotas = new HashMap<>();
+        Tramos.consultarEnTramos("SELECT microchip_id, id FROM mascota WHERE microchip_id IN (%s)",
+                microchipIds, conn, METRICA_LEER_MASCOTAS_POR_MICROCHIP, rs -> mascotas.put(rs.getLong(1), rs.getLong(2)));
         return mascotas;
     }
     
-    // Convierte un ResultSet en un objeto Mascota, incluyendo la carga del microchip asociado
-    private Mascota resultSetToMascota(ResultSet rs) throws SQLException {
+    // Devuelve, de los IDs indicados, los que pertenecen a una mascota activa
+    public Set<Long> leerIdsActivos(Collection<Long> ids, Connection conn) throws SQLException {
+        Set<Long> activas = new HashSet<>();
+        Tramos.consultarEnTramos("SELECT id FROM mascota WHERE id IN (%s) AND eliminado = false",
+                ids, conn, METRICA_LEER_IDS_ACTIVOS, rs -> activas.add(rs.getLong(1)));
+        return activas;
+    }
+    
+    // Asigna a cada mascota (clave) su microchip (valor) con un único executeBatch de UPDATE condicionales,
+    // con la misma condición que actualizarMicrochip. Devuelve los IDs de las mascotas a las que no se aplicó
+    public Set<Long> actualizarMicrochipLote(Map<Long, Long> microchipPorMascota, Connection conn) throws SQLException {
+        String sql = "UPDATE mascota SET microchip_id = ?, version = version + 1 WHERE id = ? AND eliminado = false AND " + MICROCHIP_ACTIVO;
+        List<Long> mascotaIds = new ArrayList<>(microchipPorMascota.keySet());
+        Set<Long> noAplicadas = new HashSet<>();
+        
+        try (Medicion medicion = METRICA_ACTUALIZAR_MICROCHIP_LOTE.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Long mascotaId : mascotaIds) {
+                Long microchipId = microchipPorMascota.get(mascotaId);
+                stmt.setLong(1, microchipId);
+                stmt.setLong(2, mascotaId);
+                stmt.setLong(3, microchipId);
+                stmt.addBatch();
+            }
+            int[] filas = stmt.executeBatch();
+            for (int i = 0; i < filas.length; i++) {
+                if (filas[i] == 0) {
+                    noAplicadas.add(mascotaIds.get(i));
+                }
+            }
+            medicion.exito(mascotaIds.size() - noAplicadas.size());
+        }
+        return noAplicadas;
+    }
+    
+    // Cantidad de filas activas y suma de sus versiones, para que el modelo de lectura compruebe que no se le pasó
+    // ningún cambio (ver ModeloLectura): una fila nueva, borrada o actualizada que falte cambia alguno de los dos
+    public long[] leerResumenActivos(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*), COALESCE(SUM(version), 0) FROM mascota WHERE eliminado = false";
+        
+        try (Medicion medicion = METRICA_LEER_RESUMEN_ACTIVOS.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            long[] resumen = {rs.getLong(1), rs.getLong(2)};
+            medicion.exito(1);
+            return resumen;
+        }
+    }
+    
+    // Recorre con cursor las mascotas escritas desde el instante indicado (columna actualizado_en), incluidas las
+    // eliminadas, para mantener al día una copia en memoria. Con desde null trae todas las activas (carga inicial)
+    // El microchip se devuelve solo con su ID y la mascota trae el valor real de eliminado
+    public Stream<Mascota> leerCambiosStream(LocalDateTime desde, Connection conn) throws SQLException {
+        String sql = desde == null ? SELECT_CAMBIOS + " WHERE eliminado = false" : SELECT_CAMBIOS + " WHERE actualizado_en >= ?";
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (desde != null) {
+            stmt.setObject(1, desde);
+        }
+        return CursorStream.abrir(stmt, MascotaDao::mapearCambio, METRICA_LEER_CAMBIOS_STREAM);
+    }
+    
+    private static Mascota mapearCambio(ResultSet rs) throws SQLException {
         Mascota mascota = new Mascota();
-        mascota.setId(rs.getLong("m.id"));
-        mascota.setNombre(rs.getString("m.nombre"));
-        mascota.setEspecie(rs.getString("m.especie"));
-        mascota.setRaza(rs.getString("m.raza"));
-        mascota.setFechaNacimiento(rs.getDate("m.fecha_nacimiento") != null ? 
-            rs.getDate("m.fecha_nacimiento").toLocalDate() : null);
-        mascota.setDuenio(rs.getString("m.duenio"));
-        mascota.setEliminado(rs.getBoolean("m.eliminado"));
-        
-        // Cargar microchip si existe
-        if (rs.getObject("mc.id") != null) {
+        mascota.setId(rs.getLong(1));
+        mascota.setNombre(rs.getString(2));
+        mascota.setEspecie(rs.getString(3));
+        mascota.setRaza(rs.getString(4));
+        mascota.setFechaNacimiento(rs.getObject(5, LocalDate.class));
+        mascota.setDuenio(rs.getString(6));
+        mascota.setVersion(rs.getInt(7));
+        long microchipId = rs.getLong(8);
+        if (!rs.wasNull()) {
             Microchip microchip = new Microchip();
-            microchip.setId(rs.getLong("mc.id"));
-            microchip.setCodigo(rs.getString("mc.codigo"));
-            microchip.setFechaImplantacion(rs.getDate("mc.fecha_implantacion") != null ? 
-                rs.getDate("mc.fecha_implantacion").toLocalDate() : null);
-            microchip.setVeterinaria(rs.getString("mc.veterinaria"));
-            microchip.setObservaciones(rs.getString("mc.observaciones"));
-            microchip.setEliminado(rs.getBoolean("mc.eliminado"));
+            microchip.setId(microchipId);
             mascota.setMicrochip(microchip);
         }
-        
+        mascota.setEliminado(rs.getBoolean(9));
         return mascota;
     }
+    
+    // Filtro de la búsqueda por dueño. Con 2 o más caracteres usa el índice FULLTEXT ngram (ft_mascota_duenio) como
+    // búsqueda de frase y confirma la subcadena con LIKE sobre los pocos candidatos; con 1 carácter busca por prefijo
+    // sobre idx_mascota_duenio. En ningún caso recorre toda la tabla.
+    private String condicionDuenio(String texto) {
+        if (texto.length() < LARGO_MINIMO_NGRAM) {
+            return "m.duenio LIKE ?";
+        }
+        return "MATCH(m.duenio) AGAINST (? IN BOOLEAN MODE) AND m.duenio LIKE ?";
+    }
+    
+    private int cargarParametrosCondicionDuenio(PreparedStatement stmt, int indice, String texto) throws SQLException {
+        if (texto.length() < LARGO_MINIMO_NGRAM) {
+            stmt.setString(indice++, escaparLike(texto) + "%");
+            return indice;
+        }
+        // Entre comillas dobles es una búsqueda de frase: los n-gramas deben aparecer seguidos
+        stmt.setString(indice++, "\"" + texto.replace("\"", "") + "\"");
+        stmt.setString(indice++, "%" + escaparLike(texto) + "%");
+        return indice;
+    }
+    
+    private int cargarParametrosRango(PreparedStatement stmt, int indice, String texto) throws SQLException {
+        stmt.setString(indice++, texto);
+        stmt.setString(indice++, escaparLike(texto) + "%");
+        stmt.setString(indice++, "% " + escaparLike(texto) + "%");
+        return indice;
+    }
+    
+    // Quita espacios sobrantes para que "  juan   perez " busque lo mismo que "juan perez"
+    private static String normalizarBusqueda(String texto) {
+        return texto.trim().replaceAll("\\s+", " ");
+    }
+    
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+    
+    // Ejecuta una consulta pedida con LIMIT tamanio + 1, midiéndola con la métrica indicada, y arma la página resultante
+    private Pagina<Mascota> leerPaginaMascotas(PreparedStatement stmt, int tamanio, PlanCarga plan, Connection conn,
+                                               MetricaOperacion metrica) throws SQLException {
+        List<Mascota> mascotas = new ArrayList<>();
+        MapeadorMascota mapeador = MapeadorMascota.desdePrimera(plan);
+        try (Medicion medicion = metrica.iniciar();
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                mascotas.add(mapeador.mapear(rs));
+            }
+            medicion.exito(Math.min(mascotas.size(), tamanio));
+        }
+        Pagina<Mascota> pagina = Pagina.desdeFilas(mascotas, tamanio, Mascota::getId);
+        completarMicrochips(pagina.getElementos(), plan, conn);
+        return pagina;
+    }
+    
+    private static String desde(PlanCarga plan) {
+        return plan == PlanCarga.JOIN ? DESDE_MASCOTAS : DESDE_MASCOTAS_SIN_MICROCHIP;
+    }
+    
+    private static String select(PlanCarga plan) {
+        return "SELECT " + MapeadorMascota.columnas(plan) + desde(plan);
+    }
+    
+    private void completarMicrochips(List<Mascota> mascotas, PlanCarga plan, Connection conn) throws SQLException {
+        if (plan == PlanCarga.LOTE) {
+            completarMicrochips(mascotas, conn);
+        }
+    }
+    
+    // Reemplaza las referencias que dejó el mapeador (microchips con solo el ID) por los microchips completos, con
+    // una consulta IN (...) para toda la lista; si el microchip está eliminado queda null, igual que con el JOIN.
+    // Lo usan PlanCarga.LOTE y MascotaService.cargarMicrochips para listas leídas con SIN_MICROCHIP
+    public void completarMicrochips(List<Mascota> mascotas, Connection conn) throws SQLException {
+        Set<Long> ids = new HashSet<>();
+        for (Mascota mascota : mascotas) {
+            if (esReferencia(mascota.getMicrochip())) {
+                ids.add(mascota.getMicrochip().getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, Microchip> microchips = microchipDao.leerActivosPorIds(ids, conn);
+        for (Mascota mascota : mascotas) {
+            if (esReferencia(mascota.getMicrochip())) {
+                mascota.setMicrochip(microchips.get(mascota.getMicrochip().getId()));
+            }
+        }
+    }
+    
+    private static boolean esReferencia(Microchip microchip) {
+        return microchip != null && microchip.getCodigo() == null;
+    }
+    
+    // Carga los parámetros comunes de SQL_ACTUALIZAR y devuelve la posición del siguiente
+    private int cargarParametrosActualizar(PreparedStatement stmt, Mascota mascota) throws SQLException {
+        if (mascota.getVersion() == null) {
+            throw new IllegalArgumentException("La versión de la mascota es requerida para actualizarla");
+        }
+        stmt.setString(1, mascota.getNombre());
+        stmt.setString(2, mascota.getEspecie());
+        stmt.setString(3, mascota.getRaza());
+        stmt.setDate(4, mascota.getFechaNacimiento() != null ? 
+            Date.valueOf(mascota.getFechaNacimiento()) : null);
+        stmt.setString(5, mascota.getDuenio());
+        stmt.setObject(6, mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null, Types.BIGINT);
+        stmt.setLong(7, mascota.getId());
+        stmt.setInt(8, mascota.getVersion());
+        return 9;
+    }
+    
+    private void cargarParametrosInsertar(PreparedStatement stmt, Mascota mascota) throws SQLException {
+        stmt.setString(1, mascota.getNombre());
+        stmt.setString(2, mascota.getEspecie());
+        stmt.setString(3, mascota.getRaza());
+        stmt.setDate(4, mascota.getFechaNacimiento() != null ? 
+            Date.valueOf(mascota.getFechaNacimiento()) : null);
+        stmt.setString(5, mascota.getDuenio());
+        stmt.setObject(6, mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null, Types.BIGINT);
+        stmt.setBoolean(7, false);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package dao;
+
+import config.Shards;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import models.Mascota;
+import models.Microchip;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+Acceso a mascotas repartidas en varios shards (ver config.Shards), delegando en MascotaDao con la conexión del
+shard que corresponde. Una mascota se crea en el shard que indica el hash de su dueño y queda ahí aunque después
+cambie de dueño: leer, actualizar y eliminar usan el shard que indica su ID. El dueño solo elige dónde se crea
+(es un dato que toda mascota tiene antes de tener ID y reparte parejo); no se enruta por dueño porque una mascota
+que cambió de dueño no se mueve y la búsqueda por dueño es por subcadena, que igual recorre todos los shards.
+leerTodos y buscarPorEspecie consultan todos los shards en paralelo y juntan los resultados ordenados por ID.
+El microchip de una mascota puede estar en otro shard, por eso los shards no tienen la FK de microchip_id ni se
+usa el JOIN: las mascotas se leen sin microchip y se completan con una consulta IN por shard de microchips.
+Sin FK ni un UNIQUE común, que el microchip exista y no esté asignado a otra mascota se comprueba antes de
+escribir, consultando los shards; dos escrituras simultáneas con el mismo microchip en shards distintos pueden
+pasar las dos la comprobación.
+Cada operación toma y devuelve sus propias conexiones: no participa de transacciones de quien la llama.
+ */
+
+public class MascotaDaoShards {
+
+    private static final MetricaOperacion METRICA_CREAR = Metricas.operacion("dao", "MascotaDaoShards.crear");
+    private static final MetricaOperacion METRICA_LEER = Metricas.operacion("dao", "MascotaDaoShards.leer");
+    private static final MetricaOperacion METRICA_LEER_TODOS = Metricas.operacion("dao", "MascotaDaoShards.leerTodos");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_ESPECIE = Metricas.operacion("dao", "MascotaDaoShards.buscarPorEspecie");
+    private static final MetricaOperacion METRICA_ACTUALIZAR = Metricas.operacion("dao", "MascotaDaoShards.actualizar");
+    private static final MetricaOperacion METRICA_ELIMINAR = Metricas.operacion("dao", "MascotaDaoShards.eliminar");
+
+    private final Shards shards;
+    private final MascotaDao mascotaDao = new MascotaDao();
+    private final MicrochipDaoShards microchips;
+
+    public MascotaDaoShards(Shards shards) {
+        this.shards = shards;
+        this.microchips = new MicrochipDaoShards(shards);
+    }
+
+    public Mascota crear(Mascota mascota) throws SQLException {
+        if (mascota.getDuenio() == null || mascota.getDuenio().isBlank()) {
+            throw new IllegalArgumentException("El dueño de la mascota es requerido para elegir su shard");
+        }
+        try (Medicion medicion = METRICA_CREAR.iniciar()) {
+            validarMicrochip(mascota);
+            mascota = crearEnShard(mascota);
+            medicion.exito(1);
+        }
+        return mascota;
+    }
+
+    private Mascota crearEnShard(Mascota mascota) throws SQLException {
+        try (Connection conn = shards.getConnection(shards.shardDeClave(mascota.getDuenio()))) {
+            return mascotaDao.crear(mascota, conn);
+        }
+    }
+
+    public Mascota leer(Long id) throws SQLException {
+        List<Mascota> mascotas = METRICA_LEER.medir(() -> leerEnShard(id), List::size);
+        return mascotas.isEmpty() ? null : mascotas.get(0);
+    }
+
+    private List<Mascota> leerEnShard(Long id) throws SQLException {
+        List<Mascota> mascotas;
+        try (Connection conn = shards.getConnection(shards.shardDeId(id))) {
+            mascotas = mascotaDao.leerPorIds(List.of(id), PlanCarga.SIN_MICROCHIP, conn).getElementos();
+        }
+        completarMicrochips(mascotas);
+        return mascotas;
+    }
+
+    public List<Mascota> leerTodos() throws SQLException {
+        return METRICA_LEER_TODOS.medir(() -> juntar(shards.enTodos(
+                (shard, conn) -> mascotaDao.leerTodos(PlanCarga.SIN_MICROCHIP, conn))), List::size);
+    }
+
+    public List<Mascota> buscarPorEspecie(String especie) throws SQLException {
+        return METRICA_BUSCAR_POR_ESPECIE.medir(() -> juntar(shards.enTodos(
+                (shard, conn) -> mascotaDao.buscarPorEspecie(especie, PlanCarga.SIN_MICROCHIP, conn))), List::size);
+    }
+
+    public Mascota actualizar(Mascota mascota) throws SQLException {
+        try (Medicion medicion = METRICA_ACTUALIZAR.iniciar()) {
+            validarMicrochip(mascota);
+            mascota = actualizarEnShard(mascota);
+            medicion.exito(1);
+        }
+        return mascota;
+    }
+
+    private Mascota actualizarEnShard(Mascota mascota) throws SQLException {
+        try (Connection conn = shards.getConnection(shards.shardDeId(mascota.getId()))) {
+            return mascotaDao.actualizar(mascota, conn);
+        }
+    }
+
+    public boolean eliminar(Long id) throws SQLException {
+        boolean resultado;
+        try (Medicion medicion = METRICA_ELIMINAR.iniciar();
+             Connection conn = shards.getConnection(shards.shardDeId(id))) {
+            resultado = mascotaDao.eliminar(id, conn);
+            medicion.exito(resultado ? 1 : 0);
+        }
+        return resultado;
+    }
+
+    // Une las listas de cada shard ordenadas por ID y completa sus microchips
+    private List<Mascota> juntar(List<List<Mascota>> porShard) throws SQLException {
+        List<Mascota> mascotas = new ArrayList<>();
+        for (List<Mascota> delShard : porShard) {
+            mascotas.addAll(delShard);
+        }
+        mascotas.sort(Comparator.comparing(Mascota::getId));
+        completarMicrochips(mascotas);
+        return mascotas;
+    }
+
+    // Reemplaza las referencias que dejó PlanCarga.SIN_MICROCHIP por los microchips completos, con una consulta
+    // por shard de microchips; si el microchip está eliminado queda null, igual que con el JOIN
+    private void completarMicrochips(List<Mascota> mascotas) throws SQLException {
+        Set<Long> ids = new HashSet<>();
+        for (Mascota mascota : mascotas) {
+            if (mascota.getMicrochip() != null) {
+                ids.add(mascota.getMicrochip().getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, Microchip> porId = microchips.leerActivosPorIds(ids);
+        for (Mascota mascota : mascotas) {
+            if (mascota.getMicrochip() != null) {
+                mascota.setMicrochip(porId.get(mascota.getMicrochip().getId()));
+            }
+        }
+    }
+
+    // El microchip debe existir activo en su shard y no estar asignado a otra mascota en ningún shard
+    private void validarMicrochip(Mascota mascota) throws SQLException {
+        if (mascota.getMicrochip() == null || mascota.getMicrochip().getId() == null) {
+            return;
+        }
+        Long microchipId = mascota.getMicrochip().getId();
+        if (microchips.leer(microchipId) == null) {
+            throw new IllegalArgumentException("Microchip no encontrado o eliminado con ID: " + microchipId);
+        }
+        for (Map<Long, Long> asignados : shards.enTodos(
+                (shard, conn) -> mascotaDao.leerMascotasPorMicrochip(List.of(microchipId), conn))) {
+            Long mascotaActual = asignados.get(microchipId);
+            if (mascotaActual != null && !mascotaActual.equals(mascota.getId())) {
+                throw new IllegalArgumentException("El microchip " + microchipId + " ya está asignado a la mascota " + mascotaActual);
+            }
+        }
+    }
+}
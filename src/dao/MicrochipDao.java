@@ -4,10 +4,23 @@
  */
 package dao;
 
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
 import models.Microchip;
 import java.sql.*;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /*
 Clase DAO (Data Access Object) que maneja las operaciones de persistencia para la entidad Microchip.
@@ -17,18 +30,50 @@ Garantiza la integridad de los datos y el manejo adecuado de conexiones a la bas
 
 public class MicrochipDao implements GenericDao<Microchip> {
     
+    // Cantidad de filas enviadas por cada executeBatch cuando no se indica otra
+    public static final int TAMANIO_LOTE_DEFECTO = Tramos.TAMANIO_LOTE;
+    
+    // Todas las lecturas traen columnas explícitas en el orden que espera MapeadorMicrochip
+    private static final String SELECT_MICROCHIPS = "SELECT " + MapeadorMicrochip.COLUMNAS + " FROM microchip mc";
+    private static final MapeadorMicrochip MAPEADOR = MapeadorMicrochip.DESDE_PRIMERA;
+    
+    private static final String SQL_INSERTAR = "INSERT INTO microchip (codigo, fecha_implantacion, veterinaria, observaciones, eliminado) VALUES (?, ?, ?, ?, ?)";
+    
+    // Control de concurrencia optimista: solo se aplica si la fila sigue activa y en la versión leída, y la incrementa
+    private static final String SQL_ACTUALIZAR = "UPDATE microchip SET codigo = ?, fecha_implantacion = ?, veterinaria = ?, observaciones = ?,"
+            + " version = version + 1 WHERE id = ? AND version = ? AND eliminado = false";
+    
+    // Seguimiento de cambios (ver leerCambiosStream): las columnas de MapeadorMicrochip más eliminado
+    private static final String SELECT_CAMBIOS = "SELECT " + MapeadorMicrochip.COLUMNAS + ", mc.eliminado FROM microchip mc";
+    
+    // Métricas por método (ver metrics.Metricas); se publican por JMX al cargar la clase
+    private static final MetricaOperacion METRICA_CREAR = Metricas.operacion("dao", "MicrochipDao.crear");
+    private static final MetricaOperacion METRICA_CREAR_LOTE = Metricas.operacion("dao", "MicrochipDao.crearLote");
+    private static final MetricaOperacion METRICA_LEER = Metricas.operacion("dao", "MicrochipDao.leer");
+    private static final MetricaOperacion METRICA_LEER_TODOS = Metricas.operacion("dao", "MicrochipDao.leerTodos");
+    private static final MetricaOperacion METRICA_LEER_TODOS_STREAM = Metricas.operacion("dao", "MicrochipDao.leerTodosStream");
+    private static final MetricaOperacion METRICA_LEER_PAGINA = Metricas.operacion("dao", "MicrochipDao.leerPagina");
+    private static final MetricaOperacion METRICA_ACTUALIZAR_CONDICIONAL = Metricas.operacion("dao", "MicrochipDao.actualizarCondicional");
+    private static final MetricaOperacion METRICA_LEER_VERSION = Metricas.operacion("dao", "MicrochipDao.leerVersion");
+    private static final MetricaOperacion METRICA_ELIMINAR = Metricas.operacion("dao", "MicrochipDao.eliminar");
+    private static final MetricaOperacion METRICA_LEER_POR_CODIGO = Metricas.operacion("dao", "MicrochipDao.leerPorCodigo");
+    private static final MetricaOperacion METRICA_CONTAR_TODOS = Metricas.operacion("dao", "MicrochipDao.contarTodos");
+    private static final MetricaOperacion METRICA_LEER_CODIGOS_STREAM = Metricas.operacion("dao", "MicrochipDao.leerCodigosStream");
+    private static final MetricaOperacion METRICA_LEER_CODIGOS_EXISTENTES = Metricas.operacion("dao", "MicrochipDao.leerCodigosExistentes");
+    private static final MetricaOperacion METRICA_LEER_IDS_POR_CODIGOS = Metricas.operacion("dao", "MicrochipDao.leerIdsPorCodigos");
+    private static final MetricaOperacion METRICA_LEER_CODIGOS_ELIMINADOS = Metricas.operacion("dao", "MicrochipDao.leerCodigosEliminados");
+    private static final MetricaOperacion METRICA_LEER_IDS_ACTIVOS = Metricas.operacion("dao", "MicrochipDao.leerIdsActivos");
+    private static final MetricaOperacion METRICA_LEER_CAMBIOS_STREAM = Metricas.operacion("dao", "MicrochipDao.leerCambiosStream");
+    private static final MetricaOperacion METRICA_LEER_RESUMEN_ACTIVOS = Metricas.operacion("dao", "MicrochipDao.leerResumenActivos");
+    private static final MetricaOperacion METRICA_LEER_POR_IDS = Metricas.operacion("dao", "MicrochipDao.leerPorIds");
+    private static final MetricaOperacion METRICA_LEER_ACTIVOS_POR_IDS = Metricas.operacion("dao", "MicrochipDao.leerActivosPorIds");
+    
     // Crea un nuevo microchip en la base de datos
     @Override
     public Microchip crear(Microchip microchip, Connection conn) throws SQLException {
-        String sql = "INSERT INTO microchip (codigo, fecha_implantacion, veterinaria, observaciones, eliminado) VALUES (?, ?, ?, ?, ?)";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, microchip.getCodigo());
-            stmt.setDate(2, microchip.getFechaImplantacion() != null ? 
-                Date.valueOf(microchip.getFechaImplantacion()) : null);
-            stmt.setString(3, microchip.getVeterinaria());
-            stmt.setString(4, microchip.getObservaciones());
-            stmt.setBoolean(5, false);
+        try (Medicion medicion = METRICA_CREAR.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            cargarParametrosInsertar(stmt, microchip);
             
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
@@ -38,103 +83,329 @@ public class MicrochipDao implements GenericDao<Microchip> {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     microchip.setId(generatedKeys.getLong(1));
+                    microchip.setVersion(0);
                 } else {
                     throw new SQLException("Creating microchip failed, no ID obtained.");
                 }
             }
+            medicion.exito(1);
         }
         return microchip;
     }
     
+    @Override
+    public List<Microchip> crearLote(List<Microchip> microchips, Connection conn) throws SQLException {
+        return crearLote(microchips, TAMANIO_LOTE_DEFECTO, conn);
+    }
+    
+    // Crea varios microchips usando JDBC batch, enviando de a tamanioLote filas por ida a la base
+    // Con rewriteBatchedStatements cada lote viaja como un único INSERT multi-fila; los IDs generados se asignan en orden
+    public List<Microchip> crearLote(List<Microchip> microchips, int tamanioLote, Connection conn) throws SQLException {
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero");
+        }
+        
+        try (Medicion medicion = METRICA_CREAR_LOTE.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR, Statement.RETURN_GENERATED_KEYS)) {
+            for (int inicio = 0; inicio < microchips.size(); inicio += tamanioLote) {
+                List<Microchip> lote = microchips.subList(inicio, Math.min(inicio + tamanioLote, microchips.size()));
+                for (Microchip microchip : lote) {
+                    cargarParametrosInsertar(stmt, microchip);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    for (Microchip microchip : lote) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("Creating microchip batch failed, no ID obtained.");
+                        }
+                        microchip.setId(generatedKeys.getLong(1));
+                        microchip.setVersion(0);
+                    }
+                }
+            }
+            medicion.exito(microchips.size());
+        }
+        return microchips;
+    }
+    
     // Recupera un microchip por su ID
     @Override
     public Microchip leer(Long id, Connection conn) throws SQLException {
-        String sql = "SELECT * FROM microchip WHERE id = ? AND eliminado = false";
+        String sql = SELECT_MICROCHIPS + " WHERE mc.id = ? AND mc.eliminado = false";
         Microchip microchip = null;
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Medicion medicion = METRICA_LEER.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    microchip = resultSetToMicrochip(rs);
+                    microchip = MAPEADOR.mapear(rs);
                 }
             }
+            medicion.exito(microchip != null ? 1 : 0);
         }
         return microchip;
     }
     // Recupera todos los microchips activos del sistema
     @Override
     public List<Microchip> leerTodos(Connection conn) throws SQLException {
-        String sql = "SELECT * FROM microchip WHERE eliminado = false";
+        String sql = SELECT_MICROCHIPS + " WHERE mc.eliminado = false";
         List<Microchip> microchips = new ArrayList<>();
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
+        try (Medicion medicion = METRICA_LEER_TODOS.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                microchips.add(resultSetToMicrochip(rs));
+                microchips.add(MAPEADOR.mapear(rs));
             }
+            medicion.exito(microchips.size());
         }
         return microchips;
     }
     
-    // Actualiza los datos de un microchip existente
+    // Recorre todos los microchips activos con un cursor del servidor, sin cargarlos todos en memoria
+    // El Stream debe cerrarse (try-with-resources) para liberar el cursor aunque no se lea hasta el final
+    @Override
+    public Stream<Microchip> leerTodosStream(Connection conn) throws SQLException {
+        String sql = SELECT_MICROCHIPS + " WHERE mc.eliminado = false";
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        return CursorStream.abrir(stmt, MAPEADOR, METRICA_LEER_TODOS_STREAM);
+    }
+    
+    // Recupera una página de microchips activos con ID mayor a despuesDeId, ordenados por ID
+    @Override
+    public Pagina<Microchip> leerPagina(Long despuesDeId, int tamanio, Connection conn) throws SQLException {
+        String sql = SELECT_MICROCHIPS + " WHERE mc.id > ? AND mc.eliminado = false ORDER BY mc.id LIMIT ?";
+        List<Microchip> microchips = new ArrayList<>();
+        
+        try (Medicion medicion = METRICA_LEER_PAGINA.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, despuesDeId);
+            stmt.setInt(2, tamanio + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    microchips.add(MAPEADOR.mapear(rs));
+                }
+            }
+            medicion.exito(Math.min(microchips.size(), tamanio));
+        }
+        return Pagina.desdeFilas(microchips, tamanio, Microchip::getId);
+    }
+    
+    // Actualiza los datos de un microchip existente si nadie lo modificó desde que se leyó (ver getVersion)
+    // Lanza ConflictoVersionException si la versión no coincide y SQLException si el microchip no existe o está eliminado
+    // Se mide a través de actualizarCondicional y leerVersion
     @Override
     public Microchip actualizar(Microchip microchip, Connection conn) throws SQLException {
-        String sql = "UPDATE microchip SET codigo = ?, fecha_implantacion = ?, veterinaria = ?, observaciones = ? WHERE id = ?";
+        if (!actualizarCondicional(microchip, conn)) {
+            Integer actual = leerVersion(microchip.getId(), conn);
+            if (actual == null) {
+                throw new SQLException("Updating microchip failed, no rows affected.");
+            }
+            throw new ConflictoVersionException("microchip", microchip.getId(), microchip.getVersion(), actual);
+        }
+        return microchip;
+    }
+    
+    // Actualiza todos los campos solo si el microchip está activo y en la versión que trae el objeto
+    // Devuelve false si no se aplicó; si se aplicó, deja en el objeto la nueva versión
+    // Un código repetido lo rechaza el UNIQUE de codigo con SQLIntegrityConstraintViolationException
+    public boolean actualizarCondicional(Microchip microchip, Connection conn) throws SQLException {
+        if (microchip.getVersion() == null) {
+            throw new IllegalArgumentException("La versión del microchip es requerida para actualizarlo");
+        }
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Medicion medicion = METRICA_ACTUALIZAR_CONDICIONAL.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_ACTUALIZAR)) {
             stmt.setString(1, microchip.getCodigo());
             stmt.setDate(2, microchip.getFechaImplantacion() != null ? 
                 Date.valueOf(microchip.getFechaImplantacion()) : null);
             stmt.setString(3, microchip.getVeterinaria());
             stmt.setString(4, microchip.getObservaciones());
             stmt.setLong(5, microchip.getId());
+            stmt.setInt(6, microchip.getVersion());
             
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Updating microchip failed, no rows affected.");
+            boolean resultado = stmt.executeUpdate() > 0;
+            if (resultado) {
+                microchip.setVersion(microchip.getVersion() + 1);
+            }
+            medicion.exito(resultado ? 1 : 0);
+            return resultado;
+        }
+    }
+    
+    // Devuelve la versión actual de un microchip activo, o null si no existe o está eliminado
+    // Sirve para explicar por qué una actualización condicional no afectó filas
+    public Integer leerVersion(Long id, Connection conn) throws SQLException {
+        String sql = "SELECT version FROM microchip WHERE id = ? AND eliminado = false";
+        
+        try (Medicion medicion = METRICA_LEER_VERSION.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Integer version = rs.next() ? rs.getInt(1) : null;
+                medicion.exito(version != null ? 1 : 0);
+                return version;
             }
         }
-        return microchip;
     }
     
     // Realiza una eliminación lógica de un microchip marcándolo como eliminado
+    // Devuelve false si el microchip no existe o ya estaba eliminado
     @Override
     public boolean eliminar(Long id, Connection conn) throws SQLException {
-        String sql = "UPDATE microchip SET eliminado = true WHERE id = ?";
+        String sql = "UPDATE microchip SET eliminado = true, version = version + 1 WHERE id = ? AND eliminado = false";
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Medicion medicion = METRICA_ELIMINAR.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, id);
-            return stmt.executeUpdate() > 0;
+            boolean resultado = stmt.executeUpdate() > 0;
+            medicion.exito(resultado ? 1 : 0);
+            return resultado;
         }
     }
     
     // Busca un microchip por su código único
     public Microchip leerPorCodigo(String codigo, Connection conn) throws SQLException {
-        String sql = "SELECT * FROM microchip WHERE codigo = ? AND eliminado = false";
+        String sql = SELECT_MICROCHIPS + " WHERE mc.codigo = ? AND mc.eliminado = false";
         Microchip microchip = null;
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Medicion medicion = METRICA_LEER_POR_CODIGO.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, codigo);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    microchip = resultSetToMicrochip(rs);
+                    microchip = MAPEADOR.mapear(rs);
                 }
             }
+            medicion.exito(microchip != null ? 1 : 0);
         }
         return microchip;
     }
     
-    // Convierte un ResultSet en un objeto Microchip
-    private Microchip resultSetToMicrochip(ResultSet rs) throws SQLException {
-        Microchip microchip = new Microchip();
-        microchip.setId(rs.getLong("id"));
-        microchip.setCodigo(rs.getString("codigo"));
-        microchip.setFechaImplantacion(rs.getDate("fecha_implantacion") != null ? 
-            rs.getDate("fecha_implantacion").toLocalDate() : null);
-        microchip.setVeterinaria(rs.getString("veterinaria"));
-        microchip.setObservaciones(rs.getString("observaciones"));
-        microchip.setEliminado(rs.getBoolean("eliminado"));
-        return microchip;
+    // Cuenta todos los microchips, incluidos los eliminados lógicamente
+    public long contarTodos(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM microchip";
+        
+        try (Medicion medicion = METRICA_CONTAR_TODOS.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            long resultado = rs.next() ? rs.getLong(1) : 0;
+            medicion.exito(1);
+            return resultado;
+        }
+    }
+    
+    // Cantidad de filas activas y suma de sus versiones, para que el modelo de lectura compruebe que no se le pasó
+    // ningún cambio (ver ModeloLectura): una fila nueva, borrada o actualizada que falte cambia alguno de los dos
+    public long[] leerResumenActivos(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*), COALESCE(SUM(mc.version), 0) FROM microchip mc WHERE mc.eliminado = false";
+        
+        try (Medicion medicion = METRICA_LEER_RESUMEN_ACTIVOS.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            long[] resumen = {rs.getLong(1), rs.getLong(2)};
+            medicion.exito(1);
+            return resumen;
+        }
+    }
+    
+    // Recorre con cursor los códigos de todos los microchips, incluidos los eliminados (el UNIQUE también los abarca)
+    public Stream<String> leerCodigosStream(Connection conn) throws SQLException {
+        String sql = "SELECT codigo FROM microchip";
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        return CursorStream.abrir(stmt, rs -> rs.getString(1), METRICA_LEER_CODIGOS_STREAM);
+    }
+    
+    // Devuelve, de los códigos indicados, los que ya pertenecen a un microchip activo
+    // Consulta de a Tramos.TAMANIO_IN códigos por vez para no armar sentencias demasiado grandes
+    public Set<String> leerCodigosExistentes(Collection<String> codigos, Connection conn) throws SQLException {
+        Set<String> existentes = new HashSet<>();
+        Tramos.consultarEnTramos("SELECT codigo FROM microchip WHERE codigo IN (%s) AND eliminado = false",
+                codigos, conn, METRICA_LEER_CODIGOS_EXISTENTES, rs -> existentes.add(rs.getString(1)));
+        return existentes;
+    }
+    
+    // Devuelve el ID de cada código indicado que pertenece a un microchip activo; los demás no aparecen en el mapa
+    // El código de cada entrada es el que devuelve la base, que puede diferir del pedido en mayúsculas o acentos
+    public Map<String, Long> leerIdsPorCodigos(Collection<String> codigos, Connection conn) throws SQLException {
+        Map<String, Long> ids = new HashMap<>();
+        Tramos.consultarEnTramos("SELECT codigo, id FROM microchip WHERE codigo IN (%s) AND eliminado = false",
+                codigos, conn, METRICA_LEER_IDS_POR_CODIGOS, rs -> ids.put(rs.getString(1), rs.getLong(2)));
+        return ids;
+    }
+    
+    // Devuelve, de los códigos indicados, los que pertenecen a un microchip eliminado (el UNIQUE impide reutilizarlos)
+    public Set<String> leerCodigosEliminados(Collection<String> codigos, Connection conn) throws SQLException {
+        Set<String> eliminados = new HashSet<>();
+        Tramos.consultarEnTramos("SELECT codigo FROM microchip WHERE codigo IN (%s) AND eliminado = true",
+                codigos, conn, METRICA_LEER_CODIGOS_ELIMINADOS, rs -> eliminados.add(rs.getString(1)));
+        return eliminados;
+    }
+    
+    // Devuelve, de los IDs indicados, los que pertenecen a un microchip activo
+    public Set<Long> leerIdsActivos(Collection<Long> ids, Connection conn) throws SQLException {
+        Set<Long> activos = new HashSet<>();
+        Tramos.consultarEnTramos("SELECT id FROM microchip WHERE id IN (%s) AND eliminado = false",
+                ids, conn, METRICA_LEER_IDS_ACTIVOS, rs -> activos.add(rs.getLong(1)));
+        return activos;
+    }
+    
+    // Devuelve completos los microchips activos de los IDs indicados, por ID; los demás no aparecen en el mapa
+    // Es la consulta de PlanCarga.LOTE: una sola ida por cada Tramos.TAMANIO_IN IDs distintos
+    public Map<Long, Microchip> leerActivosPorIds(Collection<Long> ids, Connection conn) throws SQLException {
+        return leerMapaPorIds(ids, conn, METRICA_LEER_ACTIVOS_POR_IDS);
+    }
+    
+    // Lee los microchips activos de los IDs indicados de a Tramos.TAMANIO_IN por consulta; los faltantes quedan en el resultado
+    @Override
+    public LecturaPorIds<Microchip> leerPorIds(Collection<Long> ids, Connection conn) throws SQLException {
+        LecturaPorIds.validarIds(ids);
+        return LecturaPorIds.ordenar(ids, leerMapaPorIds(ids, conn, METRICA_LEER_POR_IDS));
+    }
+    
+    private Map<Long, Microchip> leerMapaPorIds(Collection<Long> ids, Connection conn, MetricaOperacion metrica) throws SQLException {
+        Map<Long, Microchip> microchips = new HashMap<>();
+        Tramos.consultarEnTramos(SELECT_MICROCHIPS + " WHERE mc.id IN (%s) AND mc.eliminado = false",
+                new LinkedHashSet<>(ids), conn, metrica, rs -> {
+                    Microchip microchip = MAPEADOR.mapear(rs);
+                    microchips.put(microchip.getId(), microchip);
+                });
+        return microchips;
+    }
+    
+    // Recorre con cursor los microchips escritos desde el instante indicado (columna actualizado_en), incluidos los
+    // eliminados, para mantener al día una copia en memoria. Con desde null trae todos los activos (carga inicial)
+    public Stream<Microchip> leerCambiosStream(LocalDateTime desde, Connection conn) throws SQLException {
+        String sql = desde == null ? SELECT_CAMBIOS + " WHERE mc.eliminado = false" : SELECT_CAMBIOS + " WHERE mc.actualizado_en >= ?";
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (desde != null) {
+            stmt.setObject(1, desde);
+        }
+        return CursorStream.abrir(stmt, rs -> {
+            Microchip microchip = MAPEADOR.mapear(rs);
+            microchip.setEliminado(rs.getBoolean(MapeadorMicrochip.CANTIDAD_COLUMNAS + 1));
+            return microchip;
+        }, METRICA_LEER_CAMBIOS_STREAM);
+    }
+    
+    private void cargarParametrosInsertar(PreparedStatement stmt, Microchip microchip) throws SQLException {
+        stmt.setString(1, microchip.getCodigo());
+        stmt.setDate(2, microchip.getFechaImplantacion() != null ? 
+            Date.valueOf(microchip.getFechaImplantacion()) : null);
+        stmt.setString(3, microchip.getVeterinaria());
+        stmt.setString(4, microchip.getObservaciones());
+        stmt.setBoolean(5, false);
+    }
+    
+    // Clave con la que la columna codigo compara los códigos: su colación (utf8mb4_0900_ai_ci) ignora mayúsculas
+    // y acentos, así que "AbC-é" y "abc-e" chocan en el UNIQUE. No recorta espacios porque la colación es NO PAD.
+    // Es una aproximación que a lo sumo junta de más (nunca separa dos códigos que la base considera iguales
+    // salvo casos raros como "ß" y "ss"); el UNIQUE sigue siendo la garantía final
+    public static String claveCodigo(String codigo) {
+        return Normalizer.normalize(codigo, Normalizer.Form.NFKD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
     }
-}
\ No newline at end of file
+}
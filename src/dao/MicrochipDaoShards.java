@@ -0,0 +1,133 @@
+package dao;
+
+import config.Shards;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import models.Microchip;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Acceso a microchips repartidos en varios shards (ver config.Shards), delegando en MicrochipDao con la conexión
+del shard que corresponde. Un microchip se crea en el shard que indica el hash de su código, así que el UNIQUE de
+codigo de cada shard alcanza para que el código sea único en todos; por eso no se permite cambiar el código por
+uno que corresponda a otro shard. Leer por ID o por código consulta un solo shard; leerTodos consulta todos.
+Cada operación toma y devuelve sus propias conexiones: no participa de transacciones de quien la llama.
+ */
+
+public class MicrochipDaoShards {
+
+    private static final MetricaOperacion METRICA_CREAR = Metricas.operacion("dao", "MicrochipDaoShards.crear");
+    private static final MetricaOperacion METRICA_LEER = Metricas.operacion("dao", "MicrochipDaoShards.leer");
+    private static final MetricaOperacion METRICA_LEER_POR_CODIGO = Metricas.operacion("dao", "MicrochipDaoShards.leerPorCodigo");
+    private static final MetricaOperacion METRICA_LEER_POR_IDS = Metricas.operacion("dao", "MicrochipDaoShards.leerPorIds");
+    private static final MetricaOperacion METRICA_LEER_TODOS = Metricas.operacion("dao", "MicrochipDaoShards.leerTodos");
+    private static final MetricaOperacion METRICA_ACTUALIZAR = Metricas.operacion("dao", "MicrochipDaoShards.actualizar");
+    private static final MetricaOperacion METRICA_ELIMINAR = Metricas.operacion("dao", "MicrochipDaoShards.eliminar");
+
+    private final Shards shards;
+    private final MicrochipDao microchipDao = new MicrochipDao();
+
+    public MicrochipDaoShards(Shards shards) {
+        this.shards = shards;
+    }
+
+    public Microchip crear(Microchip microchip) throws SQLException {
+        if (microchip.getCodigo() == null || microchip.getCodigo().isBlank()) {
+            throw new IllegalArgumentException("El código del microchip es requerido para elegir su shard");
+        }
+        try (Medicion medicion = METRICA_CREAR.iniciar();
+             Connection conn = shards.getConnection(shards.shardDeClave(microchip.getCodigo()))) {
+            microchip = microchipDao.crear(microchip, conn);
+            medicion.exito(1);
+        }
+        return microchip;
+    }
+
+    public Microchip leer(Long id) throws SQLException {
+        Microchip microchip;
+        try (Medicion medicion = METRICA_LEER.iniciar();
+             Connection conn = shards.getConnection(shards.shardDeId(id))) {
+            microchip = microchipDao.leer(id, conn);
+            medicion.exito(microchip != null ? 1 : 0);
+        }
+        return microchip;
+    }
+
+    public Microchip leerPorCodigo(String codigo) throws SQLException {
+        Microchip microchip;
+        try (Medicion medicion = METRICA_LEER_POR_CODIGO.iniciar();
+             Connection conn = shards.getConnection(shards.shardDeClave(codigo))) {
+            microchip = microchipDao.leerPorCodigo(codigo, conn);
+            medicion.exito(microchip != null ? 1 : 0);
+        }
+        return microchip;
+    }
+
+    // Consulta solo los shards de los IDs pedidos, en paralelo; el resultado sigue el orden de los IDs
+    public LecturaPorIds<Microchip> leerPorIds(Collection<Long> ids) throws SQLException {
+        LecturaPorIds.validarIds(ids);
+        return METRICA_LEER_POR_IDS.medir(() -> LecturaPorIds.ordenar(ids, leerActivosPorIds(ids)),
+                resultado -> resultado.getElementos().size());
+    }
+
+    // Microchips activos de los IDs indicados, por ID (lo usa MascotaDaoShards para completar las mascotas)
+    Map<Long, Microchip> leerActivosPorIds(Collection<Long> ids) throws SQLException {
+        Map<Integer, List<Long>> idsPorShard = new LinkedHashMap<>();
+        for (Long id : ids) {
+            idsPorShard.computeIfAbsent(shards.shardDeId(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, Microchip> microchips = new HashMap<>();
+        for (Map<Long, Microchip> delShard : shards.enShards(idsPorShard.keySet(),
+                (shard, conn) -> microchipDao.leerActivosPorIds(idsPorShard.get(shard), conn))) {
+            microchips.putAll(delShard);
+        }
+        return microchips;
+    }
+
+    // Junta los microchips activos de todos los shards, ordenados por ID
+    public List<Microchip> leerTodos() throws SQLException {
+        List<Microchip> microchips = new ArrayList<>();
+        try (Medicion medicion = METRICA_LEER_TODOS.iniciar()) {
+            for (List<Microchip> delShard : shards.enTodos((shard, conn) -> microchipDao.leerTodos(conn))) {
+                microchips.addAll(delShard);
+            }
+            medicion.exito(microchips.size());
+        }
+        microchips.sort(Comparator.comparing(Microchip::getId));
+        return microchips;
+    }
+
+    public Microchip actualizar(Microchip microchip) throws SQLException {
+        int shard = shards.shardDeId(microchip.getId());
+        if (shards.shardDeClave(microchip.getCodigo()) != shard) {
+            throw new IllegalArgumentException("El código " + microchip.getCodigo()
+                    + " corresponde a otro shard; para cambiarlo hay que eliminar el microchip y crear uno nuevo");
+        }
+        try (Medicion medicion = METRICA_ACTUALIZAR.iniciar();
+             Connection conn = shards.getConnection(shard)) {
+            microchip = microchipDao.actualizar(microchip, conn);
+            medicion.exito(1);
+        }
+        return microchip;
+    }
+
+    public boolean eliminar(Long id) throws SQLException {
+        boolean resultado;
+        try (Medicion medicion = METRICA_ELIMINAR.iniciar();
+             Connection conn = shards.getConnection(shards.shardDeId(id))) {
+            resultado = microchipDao.eliminar(id, conn);
+            medicion.exito(resultado ? 1 : 0);
+        }
+        return resultado;
+    }
+}
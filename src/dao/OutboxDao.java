@@ -0,0 +1,161 @@
+package dao;
+
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import models.EventoOutbox;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+Clase DAO para la tabla outbox. Los servicios registran los eventos con la conexión de la transacción
+que hace la escritura, así el evento existe si y solo si el cambio se confirmó.
+RelayOutbox lee los pendientes en orden de id y borra los que ya publicó.
+ */
+
+public class OutboxDao {
+
+    // Los locks con nombre son de todo el servidor: el nombre lleva la base de la conexión para que los relays
+    // de otras bases del mismo servidor (por ejemplo, otro ambiente) no se bloqueen entre sí.
+    // GET_LOCK admite nombres de hasta 64 caracteres, por eso se toman como mucho 51 del nombre de la base
+    private static final String LOCK_RELAY = "CONCAT(LEFT(DATABASE(), 51), '.outbox_relay')";
+
+    // Columnas en el orden que espera mapear
+    private static final String COLUMNAS = "id, entidad, entidad_id, operacion, version, datos, creado_en";
+
+    private static final String SQL_INSERTAR = "INSERT INTO outbox (entidad, entidad_id, operacion, version, datos) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_LEER_PENDIENTES = "SELECT " + COLUMNAS + " FROM outbox ORDER BY id LIMIT ?";
+
+    // Métricas por método (ver metrics.Metricas); se publican por JMX al cargar la clase
+    private static final MetricaOperacion METRICA_REGISTRAR = Metricas.operacion("dao", "OutboxDao.registrar");
+    private static final MetricaOperacion METRICA_REGISTRAR_LOTE = Metricas.operacion("dao", "OutboxDao.registrarLote");
+    private static final MetricaOperacion METRICA_LEER_PENDIENTES = Metricas.operacion("dao", "OutboxDao.leerPendientes");
+    private static final MetricaOperacion METRICA_ELIMINAR = Metricas.operacion("dao", "OutboxDao.eliminar");
+    private static final MetricaOperacion METRICA_CONTAR_PENDIENTES = Metricas.operacion("dao", "OutboxDao.contarPendientes");
+
+    // Agrega un evento; debe llamarse dentro de la transacción de la escritura que lo origina
+    public void registrar(EventoOutbox evento, Connection conn) throws SQLException {
+        try (Medicion medicion = METRICA_REGISTRAR.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR)) {
+            cargarParametrosInsertar(stmt, evento);
+            stmt.executeUpdate();
+            medicion.exito(1);
+        }
+    }
+
+    // Agrega varios eventos con JDBC batch (un INSERT multi-fila por tramo con rewriteBatchedStatements)
+    public void registrarLote(List<EventoOutbox> eventos, Connection conn) throws SQLException {
+        try (Medicion medicion = METRICA_REGISTRAR_LOTE.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR)) {
+            for (int inicio = 0; inicio < eventos.size(); inicio += Tramos.TAMANIO_LOTE) {
+                int fin = Math.min(inicio + Tramos.TAMANIO_LOTE, eventos.size());
+                for (EventoOutbox evento : eventos.subList(inicio, fin)) {
+                    cargarParametrosInsertar(stmt, evento);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            medicion.exito(eventos.size());
+        }
+    }
+
+    // Devuelve los primeros limite eventos pendientes, ordenados por id
+    public List<EventoOutbox> leerPendientes(int limite, Connection conn) throws SQLException {
+        List<EventoOutbox> eventos = new ArrayList<>();
+
+        try (Medicion medicion = METRICA_LEER_PENDIENTES.iniciar();
+             PreparedStatement stmt = conn.prepareStatement(SQL_LEER_PENDIENTES)) {
+            stmt.setInt(1, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    eventos.add(mapear(rs));
+                }
+            }
+            medicion.exito(eventos.size());
+        }
+        return eventos;
+    }
+
+    // Borra los eventos ya publicados; devuelve cuántos borró
+    public int eliminar(Collection<Long> ids, Connection conn) throws SQLException {
+        return METRICA_ELIMINAR.medir(() -> eliminarEnTramos(ids, conn), Integer::longValue);
+    }
+
+    private static int eliminarEnTramos(Collection<Long> ids, Connection conn) throws SQLException {
+        List<Long> pendientes = new ArrayList<>(ids);
+        int eliminados = 0;
+
+        for (int inicio = 0; inicio < pendientes.size(); inicio += Tramos.TAMANIO_IN) {
+            List<Long> tramo = pendientes.subList(inicio, Math.min(inicio + Tramos.TAMANIO_IN, pendientes.size()));
+            String sql = "DELETE FROM outbox WHERE id IN (" + Tramos.marcadores(tramo.size()) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < tramo.size(); i++) {
+                    stmt.setLong(i + 1, tramo.get(i));
+                }
+                eliminados += stmt.executeUpdate();
+            }
+        }
+        return eliminados;
+    }
+
+    // Toma el lock con nombre del relay en la sesión de conn, sin esperar: si otro proceso lo tiene devuelve false
+    // Así, aunque haya varias instancias con relay, solo una publica a la vez y se mantiene el orden
+    public boolean tomarTurnoRelay(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(" + LOCK_RELAY + ", 0)")) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    // Libera el lock de tomarTurnoRelay; debe llamarse antes de devolver la conexión al pool
+    public void liberarTurnoRelay(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(" + LOCK_RELAY + ")")) {
+            stmt.executeQuery().close();
+        }
+    }
+
+    // Cantidad de eventos todavía sin publicar
+    public long contarPendientes(Connection conn) throws SQLException {
+        long cantidad = 0;
+        try (Medicion medicion = METRICA_CONTAR_PENDIENTES.iniciar();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM outbox");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                cantidad = rs.getLong(1);
+            }
+            medicion.exito(1);
+        }
+        return cantidad;
+    }
+
+    private void cargarParametrosInsertar(PreparedStatement stmt, EventoOutbox evento) throws SQLException {
+        stmt.setString(1, evento.getEntidad());
+        stmt.setLong(2, evento.getEntidadId());
+        stmt.setString(3, evento.getOperacion().name());
+        if (evento.getVersion() != null) {
+            stmt.setInt(4, evento.getVersion());
+        } else {
+            stmt.setNull(4, Types.INTEGER);
+        }
+        stmt.setString(5, evento.getDatos());
+    }
+
+    // Lee la fila por posición, según COLUMNAS
+    private static EventoOutbox mapear(ResultSet rs) throws SQLException {
+        EventoOutbox evento = new EventoOutbox(rs.getString(2), rs.getLong(3),
+                EventoOutbox.Operacion.valueOf(rs.getString(4)), rs.getObject(5, Integer.class), rs.getString(6));
+        evento.setId(rs.getLong(1));
+        Timestamp creadoEn = rs.getTimestamp(7);
+        evento.setCreadoEn(creadoEn != null ? creadoEn.toLocalDateTime() : null);
+        return evento;
+    }
+}
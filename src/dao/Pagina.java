@@ -0,0 +1,53 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+Página de resultados obtenida con paginación por clave (keyset).
+En lugar de un número de página, guarda un token de continuación armado con el ID
+de la última fila devuelta; la página siguiente se pide "después de" ese ID,
+por lo que cualquier página cuesta lo mismo que la primera.
+
+@param <T> Tipo de entidad contenida en la página
+ */
+
+public class Pagina<T> {
+    private final List<T> elementos;
+    private final String siguienteToken;
+
+    public Pagina(List<T> elementos, String siguienteToken) {
+        this.elementos = elementos;
+        this.siguienteToken = siguienteToken;
+    }
+
+    // Arma la página a partir de filas leídas con LIMIT tamanio + 1: la fila extra solo indica que hay más
+    public static <T> Pagina<T> desdeFilas(List<T> filas, int tamanio, Function<T, Long> id) {
+        if (filas.size() <= tamanio) {
+            return new Pagina<>(filas, null);
+        }
+        List<T> elementos = new ArrayList<>(filas.subList(0, tamanio));
+        return new Pagina<>(elementos, tokenDesdeId(id.apply(elementos.get(tamanio - 1))));
+    }
+
+    public static String tokenDesdeId(Long id) {
+        return String.valueOf(id);
+    }
+
+    // Convierte el token recibido en el ID desde el cual continuar; null o vacío significa primera página
+    public static Long idDesdeToken(String token) {
+        if (token == null || token.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.valueOf(token.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Token de continuación inválido: " + token);
+        }
+    }
+
+    public List<T> getElementos() { return elementos; }
+    public String getSiguienteToken() { return siguienteToken; }
+    public boolean hayMas() { return siguienteToken != null; }
+}
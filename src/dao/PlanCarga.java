@@ -0,0 +1,19 @@
+package dao;
+
+/*
+Cómo se trae el microchip en las lecturas de listas y páginas de mascotas.
+Ninguna opción hace una consulta por mascota: como mucho hay una consulta IN (...) extra por lista
+(de a Tramos.TAMANIO_IN IDs por vez).
+Con SIN_MICROCHIP y LOTE la consulta de mascotas no hace el JOIN y solo trae m.microchip_id.
+ */
+
+public enum PlanCarga {
+    // LEFT JOIN con microchip en la misma consulta (comportamiento de siempre)
+    JOIN,
+    // El microchip queda como referencia: un Microchip con solo el ID (o null si la mascota no tiene).
+    // Alcanza para mostrar listas y para volver a guardar la mascota sin perder la asignación; si después hacen
+    // falta los microchips, MascotaService.cargarMicrochips los completa con una sola consulta
+    SIN_MICROCHIP,
+    // Una segunda consulta IN (...) completa los microchips de toda la lista antes de devolverla
+    LOTE
+}
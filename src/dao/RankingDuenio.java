@@ -0,0 +1,53 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Resultado ordenado de una búsqueda por dueño: los IDs de las mascotas que coinciden con su rango de relevancia
+(ver MascotaDao.leerRankingPorDuenio), en orden (rango, id). Guarda solo dos arreglos, así que se puede conservar
+en una caché y servir las páginas siguientes leyendo por ID, sin volver a ordenar las coincidencias.
+ */
+
+public class RankingDuenio {
+    private final int[] rangos;
+    private final long[] ids;
+    private final boolean recortado;
+
+    RankingDuenio(int[] rangos, long[] ids, boolean recortado) {
+        this.rangos = rangos;
+        this.ids = ids;
+        this.recortado = recortado;
+    }
+
+    // Posición de la primera entrada que va después de (rango, id); con (-1, 0) es la primera
+    // Búsqueda binaria: las entradas están ordenadas por (rango, id)
+    public int posicionDespuesDe(int rango, long id) {
+        int desde = 0;
+        int hasta = ids.length;
+        while (desde < hasta) {
+            int medio = (desde + hasta) >>> 1;
+            if (rangos[medio] < rango || (rangos[medio] == rango && ids[medio] <= id)) {
+                desde = medio + 1;
+            } else {
+                hasta = medio;
+            }
+        }
+        return desde;
+    }
+
+    // IDs de las posiciones [desde, hasta)
+    public List<Long> getIds(int desde, int hasta) {
+        List<Long> resultado = new ArrayList<>(hasta - desde);
+        for (int i = desde; i < hasta; i++) {
+            resultado.add(ids[i]);
+        }
+        return resultado;
+    }
+
+    public int getCantidad() { return ids.length; }
+    public int getRango(int posicion) { return rangos[posicion]; }
+    public long getId(int posicion) { return ids[posicion]; }
+    // true si había más coincidencias que el límite pedido: las que lo exceden no están en el ranking
+    public boolean isRecortado() { return recortado; }
+}
@@ -0,0 +1,70 @@
+package dao;
+
+import metrics.MetricaOperacion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/*
+Tamaños de tramo y ayudas para las sentencias por lotes que comparten los DAOs del paquete.
+Los executeBatch se envían de a TAMANIO_LOTE filas y las cláusulas IN (...) llevan como mucho TAMANIO_IN valores,
+así ninguna sentencia crece sin límite aunque la colección recibida sea muy grande.
+ */
+
+final class Tramos {
+
+    // Cantidad de filas enviadas por cada executeBatch cuando no se indica otra
+    static final int TAMANIO_LOTE = 1000;
+
+    // Cantidad máxima de valores en una misma cláusula IN
+    static final int TAMANIO_IN = 1000;
+
+    private Tramos() {
+    }
+
+    // Ejecuta la consulta de a TAMANIO_IN valores (códigos o IDs) por vez; el %s de sql se reemplaza por los marcadores del IN
+    // Todos los tramos cuentan como una sola llamada de la métrica, con las filas leídas en total
+    static void consultarEnTramos(String sql, Collection<?> valores, Connection conn, MetricaOperacion metrica,
+                                  LectorFila lector) throws SQLException {
+        metrica.medir(() -> consultarEnTramos(sql, valores, conn, lector), Long::longValue);
+    }
+
+    // Devuelve la cantidad de filas leídas
+    private static long consultarEnTramos(String sql, Collection<?> valores, Connection conn, LectorFila lector) throws SQLException {
+        List<?> pendientes = new ArrayList<>(valores);
+        long filas = 0;
+
+        for (int inicio = 0; inicio < pendientes.size(); inicio += TAMANIO_IN) {
+            List<?> tramo = pendientes.subList(inicio, Math.min(inicio + TAMANIO_IN, pendientes.size()));
+
+            try (PreparedStatement stmt = conn.prepareStatement(String.format(sql, marcadores(tramo.size())))) {
+                for (int i = 0; i < tramo.size(); i++) {
+                    stmt.setObject(i + 1, tramo.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        lector.leer(rs);
+                        filas++;
+                    }
+                }
+            }
+        }
+        return filas;
+    }
+
+    // Arma la lista "?, ?, ..." para una cláusula IN con la cantidad de valores indicada
+    static String marcadores(int cantidad) {
+        return String.join(", ", Collections.nCopies(cantidad, "?"));
+    }
+
+    // Procesa la fila actual de un ResultSet
+    interface LectorFila {
+        void leer(ResultSet rs) throws SQLException;
+    }
+}
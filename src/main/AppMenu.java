@@ -4,16 +4,23 @@
  */
 package main;
 
+import dao.Pagina;
 import models.Mascota;
 import models.Microchip;
+import service.ExportadorMascotas;
+import service.ImportadorCsv;
 import service.MascotaService;
 import service.MicrochipService;
+import service.ResultadoImportacion;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Scanner;
 
 public class AppMenu {
+    private static final int TAMANIO_PAGINA = 20;
+    
     private final Scanner scanner;
     private final MascotaService mascotaService;
     private final MicrochipService microchipService;
@@ -40,6 +47,8 @@ public class AppMenu {
                     case "5" -> eliminarMascota();
                     case "6" -> buscarMascotasPorDuenio();
                     case "7" -> gestionarMicrochips();
+                    case "8" -> importarMascotasCsv();
+                    case "9" -> exportarMascotas();
                     case "0" -> {
                         System.out.println("¡Hasta luego!");
                         return;
@@ -64,6 +73,8 @@ public class AppMenu {
         System.out.println("5. Eliminar Mascota (lógico)");
         System.out.println("6. Buscar Mascotas por Dueño");
         System.out.println("7. Gestionar Microchips");
+        System.out.println("8. Importar Mascotas desde CSV");
+        System.out.println("9. Exportar Mascotas (CSV / NDJSON)");
         System.out.println("0. Salir");
         System.out.print("Seleccione: ");
     }
@@ -100,16 +111,25 @@ public class AppMenu {
     private void listarMascotas() {
         try {
             System.out.println("\n--- LISTA MASCOTAS ---");
-            List<Mascota> mascotas = mascotaService.getAll();
-            if (mascotas.isEmpty()) {
-                System.out.println("No hay mascotas");
-            } else {
-                mascotas.forEach(System.out::println);
-            }
+            String token = null;
+            do {
+                Pagina<Mascota> pagina = mascotaService.getPagina(token, TAMANIO_PAGINA);
+                if (token == null && pagina.getElementos().isEmpty()) {
+                    System.out.println("No hay mascotas");
+                }
+                pagina.getElementos().forEach(System.out::println);
+                token = pagina.getSiguienteToken();
+            } while (token != null && continuarPaginando());
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
     }
+    
+    // Pregunta si mostrar la página siguiente; Enter continúa, cualquier otra entrada corta el listado
+    private boolean continuarPaginando() {
+        System.out.print("-- Enter: página siguiente | q: terminar -- ");
+        return scanner.nextLine().trim().isEmpty();
+    }
 
     private void buscarMascotaPorId() {
         try {
@@ -140,6 +160,8 @@ public class AppMenu {
             System.out.println("Actual: " + existente);
             Mascota actualizada = new Mascota();
             actualizada.setId(id);
+            // La versión leída hace que el cambio se rechace si otro usuario la modificó mientras tanto
+            actualizada.setVersion(existente.getVersion());
 
             System.out.print("Nuevo nombre: ");
             actualizada.setNombre(scanner.nextLine());
@@ -183,13 +205,52 @@ public class AppMenu {
         try {
             System.out.print("Nombre dueño: ");
             String duenio = scanner.nextLine();
-            List<Mascota> mascotas = mascotaService.buscarPorDuenio(duenio);
+            String token = null;
+            do {
+                Pagina<Mascota> pagina = mascotaService.buscarPorDuenio(duenio, token, TAMANIO_PAGINA);
+                if (token == null && pagina.getElementos().isEmpty()) {
+                    System.out.println("No se encontraron mascotas");
+                }
+                pagina.getElementos().forEach(System.out::println);
+                token = pagina.getSiguienteToken();
+            } while (token != null && continuarPaginando());
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void importarMascotasCsv() {
+        System.out.println("\n--- IMPORTAR MASCOTAS DESDE CSV ---");
+        System.out.println("Columnas: nombre, especie, duenio y opcionales raza, fecha_nacimiento, microchip_codigo,");
+        System.out.println("microchip_fecha_implantacion, microchip_veterinaria, microchip_observaciones");
+        try {
+            System.out.print("Archivo CSV: ");
+            Path csv = Path.of(scanner.nextLine().trim());
             
-            if (mascotas.isEmpty()) {
-                System.out.println("No se encontraron mascotas");
-            } else {
-                mascotas.forEach(System.out::println);
+            Path rechazos = csv.resolveSibling(csv.getFileName() + ".rechazos.csv");
+            System.out.print("Archivo de rechazos [" + rechazos + "]: ");
+            String otro = scanner.nextLine().trim();
+            if (!otro.isEmpty()) {
+                rechazos = Path.of(otro);
             }
+            
+            ResultadoImportacion resultado = new ImportadorCsv().importar(csv, rechazos);
+            System.out.println("Importación terminada: " + resultado);
+            if (resultado.getRechazadas() > 0) {
+                System.out.println("Filas rechazadas en: " + rechazos);
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void exportarMascotas() {
+        System.out.println("\n--- EXPORTAR MASCOTAS ---");
+        System.out.println("El formato sale de la extensión: .csv, .ndjson o .jsonl; agregar .gz para comprimir");
+        try {
+            System.out.print("Archivo destino: ");
+            Path destino = Path.of(scanner.nextLine().trim());
+            new ExportadorMascotas().exportar(destino, System.out::println);
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -6,6 +6,10 @@
 
 package main;
 
+import service.ArchivadorEliminados;
+import service.MicrochipService;
+import service.RelayOutbox;
+
 import java.sql.SQLException;
 
 public class Main {
@@ -17,9 +21,25 @@ public class Main {
                 System.out.println("Conexión establecida con éxito a: " + conn.getMetaData().getURL());
             }
             
-            // Usar menú
-            AppMenu menu = new AppMenu();
-            menu.iniciar();
+            // Cargar el índice de códigos de microchip antes de atender pedidos
+            MicrochipService.reconstruirIndiceCodigos();
+            
+            // Publicar los cambios del outbox si se configuró -Doutbox.archivo (ver RelayOutbox)
+            RelayOutbox relay = RelayOutbox.desdePropiedades();
+            // Archivar periódicamente las filas eliminadas si se configuró -Darchivo.intervaloMin
+            ArchivadorEliminados archivador = ArchivadorEliminados.desdePropiedades();
+            try {
+                // Usar menú
+                AppMenu menu = new AppMenu();
+                menu.iniciar();
+            } finally {
+                if (archivador != null) {
+                    archivador.close();
+                }
+                if (relay != null) {
+                    relay.close();
+                }
+            }
             
         } catch (SQLException e) {
             System.out.println("Error: " + e.getMessage());
@@ -0,0 +1,99 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Histograma de latencias sin bloqueos, con cubetas log-lineales.
+Cada potencia de dos se divide en 8 sub-cubetas, por lo que un percentil se reporta con un error
+relativo máximo de 12,5 % usando memoria fija (unas 500 cubetas) sin importar cuántos valores se registren.
+Registrar un valor cuesta un incremento atómico; el cálculo de percentiles recorre las cubetas y solo
+ocurre cuando se consultan las métricas.
+ */
+
+final class Histograma {
+
+    private static final int BITS_SUB = 3;
+    private static final int SUB_CUBETAS = 1 << BITS_SUB;
+    private static final int CANTIDAD_CUBETAS = (64 - BITS_SUB + 1) * SUB_CUBETAS;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CANTIDAD_CUBETAS);
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Long::max, 0);
+
+    void registrar(long valor) {
+        long v = Math.max(0, valor);
+        cubetas.incrementAndGet(indice(v));
+        suma.add(v);
+        maximo.accumulate(v);
+    }
+
+    // Valor por debajo del cual queda la fracción p (entre 0 y 1) de los registros; 0 si no hay registros
+    long percentil(double p) {
+        long[] copia = new long[CANTIDAD_CUBETAS];
+        long total = 0;
+        for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long objetivo = Math.max(1, (long) Math.ceil(p * total));
+        long acumulado = 0;
+        for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    long cantidad() {
+        long total = 0;
+        for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+            total += cubetas.get(i);
+        }
+        return total;
+    }
+
+    long suma() {
+        return suma.sum();
+    }
+
+    long maximo() {
+        return maximo.get();
+    }
+
+    void reiniciar() {
+        for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+            cubetas.set(i, 0);
+        }
+        suma.reset();
+        maximo.reset();
+    }
+
+    // Los valores menores a SUB_CUBETAS tienen cubeta propia; el resto se ubica por potencia de dos y sub-cubeta
+    static int indice(long valor) {
+        if (valor < SUB_CUBETAS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (exponente - BITS_SUB)) & (SUB_CUBETAS - 1);
+        return (exponente - BITS_SUB + 1) * SUB_CUBETAS + sub;
+    }
+
+    // Mayor valor que cae en la cubeta indicada
+    static long limiteSuperior(int indice) {
+        if (indice < SUB_CUBETAS) {
+            return indice;
+        }
+        int exponente = indice / SUB_CUBETAS + BITS_SUB - 1;
+        int sub = indice % SUB_CUBETAS;
+        int desplazamiento = exponente - BITS_SUB;
+        return ((long) (SUB_CUBETAS + sub) << desplazamiento) + (1L << desplazamiento) - 1;
+    }
+}
@@ -0,0 +1,36 @@
+package metrics;
+
+/*
+Medición de una única llamada a una operación.
+Se usa en un try-with-resources: exito(filas) marca la llamada como correcta antes de devolver el resultado;
+si el bloque termina sin llamarlo (por una excepción), al cerrarse se cuenta como error.
+ */
+
+public final class Medicion implements AutoCloseable {
+
+    private final MetricaOperacion metrica;
+    private final long inicio;
+    private boolean exitosa = false;
+    private long filas = 0;
+    private boolean cerrada = false;
+
+    Medicion(MetricaOperacion metrica) {
+        this.metrica = metrica;
+        this.inicio = System.nanoTime();
+    }
+
+    // Marca la llamada como exitosa con la cantidad de filas devueltas o afectadas
+    public void exito(long filas) {
+        this.exitosa = true;
+        this.filas = filas;
+    }
+
+    @Override
+    public void close() {
+        if (cerrada) {
+            return;
+        }
+        cerrada = true;
+        metrica.registrar(System.nanoTime() - inicio, exitosa, filas);
+    }
+}
@@ -0,0 +1,106 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/*
+Métricas acumuladas de una operación (un método de DAO o de servicio): llamadas, errores,
+filas devueltas o afectadas e histograma de latencias.
+Se obtiene con Metricas.operacion(...) y cada llamada se mide con iniciar() dentro de un try-with-resources.
+ */
+
+public class MetricaOperacion implements MetricaOperacionMBean {
+
+    private static final double NANOS_POR_MS = 1_000_000.0;
+
+    private final String capa;
+    private final String nombre;
+    private final LongAdder llamadas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder filas = new LongAdder();
+    private final Histograma latencias = new Histograma();
+
+    MetricaOperacion(String capa, String nombre) {
+        this.capa = capa;
+        this.nombre = nombre;
+    }
+
+    // Comienza a medir una llamada; la medición se registra al cerrarla
+    public Medicion iniciar() {
+        return new Medicion(this);
+    }
+
+    // Mide una llamada entera sin anidar el cuerpo del método en un try: si lanza una excepción se cuenta como error,
+    // y si termina bien se suman las filas que filas calcule a partir del resultado
+    public <T, E extends Exception> T medir(Llamada<T, E> llamada, ToLongFunction<? super T> filas) throws E {
+        try (Medicion medicion = iniciar()) {
+            T resultado = llamada.ejecutar();
+            medicion.exito(filas.applyAsLong(resultado));
+            return resultado;
+        }
+    }
+
+    void registrar(long duracionNanos, boolean exitosa, long cantidadFilas) {
+        llamadas.increment();
+        if (exitosa) {
+            filas.add(cantidadFilas);
+        } else {
+            errores.increment();
+        }
+        latencias.registrar(duracionNanos);
+    }
+
+    @Override
+    public String getCapa() { return capa; }
+
+    @Override
+    public String getNombre() { return nombre; }
+
+    @Override
+    public long getLlamadas() { return llamadas.sum(); }
+
+    @Override
+    public long getErrores() { return errores.sum(); }
+
+    @Override
+    public long getFilas() { return filas.sum(); }
+
+    @Override
+    public double getLatenciaPromedioMs() {
+        long cantidad = latencias.cantidad();
+        return cantidad == 0 ? 0 : latencias.suma() / NANOS_POR_MS / cantidad;
+    }
+
+    @Override
+    public double getLatenciaP50Ms() { return latencias.percentil(0.50) / NANOS_POR_MS; }
+
+    @Override
+    public double getLatenciaP95Ms() { return latencias.percentil(0.95) / NANOS_POR_MS; }
+
+    @Override
+    public double getLatenciaP99Ms() { return latencias.percentil(0.99) / NANOS_POR_MS; }
+
+    @Override
+    public double getLatenciaMaximaMs() { return latencias.maximo() / NANOS_POR_MS; }
+
+    // Pone en cero los contadores y el histograma (por ejemplo, para observar una ventana de tiempo)
+    @Override
+    public void reiniciar() {
+        llamadas.reset();
+        errores.reset();
+        filas.reset();
+        latencias.reiniciar();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s.%s{llamadas=%d, errores=%d, filas=%d, p50=%.3f ms, p95=%.3f ms, p99=%.3f ms, max=%.3f ms}",
+                capa, nombre, getLlamadas(), getErrores(), getFilas(),
+                getLatenciaP50Ms(), getLatenciaP95Ms(), getLatenciaP99Ms(), getLatenciaMaximaMs());
+    }
+
+    // Llamada medida con medir(...); E es la excepción que puede lanzar (por ejemplo, SQLException)
+    public interface Llamada<T, E extends Exception> {
+        T ejecutar() throws E;
+    }
+}
@@ -0,0 +1,31 @@
+package metrics;
+
+/*
+Interfaz de gestión (JMX) de una MetricaOperacion.
+Las latencias se expresan en milisegundos; los contadores son acumulados desde el inicio o el último reinicio.
+ */
+
+public interface MetricaOperacionMBean {
+
+    String getCapa();
+
+    String getNombre();
+
+    long getLlamadas();
+
+    long getErrores();
+
+    long getFilas();
+
+    double getLatenciaPromedioMs();
+
+    double getLatenciaP50Ms();
+
+    double getLatenciaP95Ms();
+
+    double getLatenciaP99Ms();
+
+    double getLatenciaMaximaMs();
+
+    void reiniciar();
+}
@@ -0,0 +1,59 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+Registro de las métricas de la aplicación.
+Cada operación se crea una sola vez (normalmente en una constante estática de la clase que la mide)
+y se publica como MBean en el servidor JMX de la plataforma, bajo el dominio "mascota_microchip".
+Se pueden consultar con jconsole o VisualVM, o con cualquier cliente JMX remoto
+(-Dcom.sun.management.jmxremote.port=...).
+ */
+
+public final class Metricas {
+
+    public static final String DOMINIO = "mascota_microchip";
+
+    private static final Map<String, MetricaOperacion> OPERACIONES = new ConcurrentHashMap<>();
+
+    private Metricas() {
+    }
+
+    // Devuelve la métrica de la operación indicada, creándola y publicándola por JMX la primera vez
+    public static MetricaOperacion operacion(String capa, String nombre) {
+        return OPERACIONES.computeIfAbsent(capa + ":" + nombre, clave -> {
+            MetricaOperacion metrica = new MetricaOperacion(capa, nombre);
+            registrar("Operacion,capa=" + capa + ",nombre=" + nombre, metrica);
+            return metrica;
+        });
+    }
+
+    // Publica un MBean bajo DOMINIO:type=<tipo>; si no se puede (por ejemplo, nombre repetido) solo se informa
+    public static void registrar(String tipo, Object mbean) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nombre = new ObjectName(DOMINIO + ":type=" + tipo);
+            if (servidor.isRegistered(nombre)) {
+                servidor.unregisterMBean(nombre);
+            }
+            servidor.registerMBean(mbean, nombre);
+        } catch (JMException e) {
+            System.err.println("No se pudo publicar la métrica " + tipo + " por JMX: " + e.getMessage());
+        }
+    }
+
+    // Todas las operaciones registradas, ordenadas por capa y nombre
+    public static List<MetricaOperacion> getOperaciones() {
+        List<MetricaOperacion> operaciones = new ArrayList<>(OPERACIONES.values());
+        operaciones.sort(Comparator.comparing(MetricaOperacion::getCapa).thenComparing(MetricaOperacion::getNombre));
+        return operaciones;
+    }
+}
@@ -6,21 +6,25 @@ package models;
 
 /*
 Clase abstracta base que proporciona campos comunes para todas las entidades del sistema.
-Define los atributos básicos de identificación y estado de eliminación lógica.
+Define los atributos básicos de identificación y estado de eliminación lógica, y la versión
+usada para el control de concurrencia optimista (se incrementa en cada escritura de la fila).
  */
 
 public abstract class Base {
     private Long id;
     private Boolean eliminado;
+    private Integer version;
     
     // Constructores
     public Base() {
         this.eliminado = false;
+        this.version = 0;
     }
     
     public Base(Long id, Boolean eliminado) {
         this.id = id;
         this.eliminado = eliminado;
+        this.version = 0;
     }
     
     // Getters y Setters
@@ -29,4 +33,7 @@ public abstract class Base {
     
     public Boolean getEliminado() { return eliminado; }
     public void setEliminado(Boolean eliminado) { this.eliminado = eliminado; }
+    
+    public Integer getVersion() { return version; }
+    public void setVersion(Integer version) { this.version = version; }
 }
@@ -0,0 +1,69 @@
+package models;
+
+import java.time.LocalDateTime;
+
+/*
+Clase que representa un cambio registrado en la tabla outbox.
+Cada escritura de los servicios agrega un evento en la misma transacción que la modifica,
+con la entidad afectada, la operación, la versión resultante (si se conoce) y los datos en JSON.
+El id lo asigna la base y define el orden en que se publican los eventos.
+*/
+
+public class EventoOutbox {
+
+    public enum Operacion { INSERTAR, ACTUALIZAR, ELIMINAR, ASIGNAR_MICROCHIP, QUITAR_MICROCHIP, RESTAURAR }
+
+    private Long id;
+    private String entidad;
+    private Long entidadId;
+    private Operacion operacion;
+    private Integer version;
+    private String datos;
+    private LocalDateTime creadoEn;
+
+    // Constructores
+    public EventoOutbox() {
+    }
+
+    public EventoOutbox(String entidad, Long entidadId, Operacion operacion, Integer version, String datos) {
+        this.entidad = entidad;
+        this.entidadId = entidadId;
+        this.operacion = operacion;
+        this.version = version;
+        this.datos = datos;
+    }
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getEntidad() { return entidad; }
+    public void setEntidad(String entidad) { this.entidad = entidad; }
+
+    public Long getEntidadId() { return entidadId; }
+    public void setEntidadId(Long entidadId) { this.entidadId = entidadId; }
+
+    public Operacion getOperacion() { return operacion; }
+    public void setOperacion(Operacion operacion) { this.operacion = operacion; }
+
+    public Integer getVersion() { return version; }
+    public void setVersion(Integer version) { this.version = version; }
+
+    // JSON de la entidad después del cambio, o null (por ejemplo, en una eliminación)
+    public String getDatos() { return datos; }
+    public void setDatos(String datos) { this.datos = datos; }
+
+    public LocalDateTime getCreadoEn() { return creadoEn; }
+    public void setCreadoEn(LocalDateTime creadoEn) { this.creadoEn = creadoEn; }
+
+    @Override
+    public String toString() {
+        return "EventoOutbox{" +
+                "id=" + id +
+                ", entidad='" + entidad + '\'' +
+                ", entidadId=" + entidadId +
+                ", operacion=" + operacion +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,254 @@
+package service;
+
+import config.DatabaseConnection;
+import dao.ArchivoDao;
+import dao.MascotaDao;
+import dao.MicrochipDao;
+import dao.OutboxDao;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import models.EventoOutbox.Operacion;
+import models.Mascota;
+import models.Microchip;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+Mueve a mascota_archivo y microchip_archivo las filas eliminadas lógicamente hace más que la retención, para que
+las tablas principales y sus índices no crezcan con filas que ninguna consulta devuelve.
+Trabaja en lotes chicos: busca los IDs candidatos en orden (paginación por clave, sin locks) y archiva cada lote en
+su propia transacción; entre lotes hace una pausa para no competir con el resto de la aplicación.
+Primero se archivan las mascotas y después los microchips, porque un microchip que todavía figura en una mascota
+no se archiva. Cada lote registra su duración y filas en la métrica ArchivadorEliminados.lote.
+Con -Darchivo.intervaloMin=<minutos> Main lo programa y publica por JMX el acumulado de las pasadas; -Darchivo.retencionDias (30), -Darchivo.lote (500) y
+-Darchivo.pausaMs (200) ajustan la retención, el tamaño de lote y la pausa.
+Las filas archivadas se pueden volver a la tabla principal, como activas, con restaurarMascota / restaurarMicrochip.
+ */
+
+public class ArchivadorEliminados implements ArchivadorEliminadosMBean, AutoCloseable {
+
+    private static final MetricaOperacion METRICA_ARCHIVAR = Metricas.operacion("archivo", "ArchivadorEliminados.archivar");
+    private static final MetricaOperacion METRICA_LOTE = Metricas.operacion("archivo", "ArchivadorEliminados.lote");
+    private static final MetricaOperacion METRICA_RESTAURAR_MASCOTA = Metricas.operacion("archivo", "ArchivadorEliminados.restaurarMascota");
+    private static final MetricaOperacion METRICA_RESTAURAR_MICROCHIP = Metricas.operacion("archivo", "ArchivadorEliminados.restaurarMicrochip");
+
+    // Cada lote y cada restauración es una transacción que se repite si la base la aborta por un deadlock
+    private static final EjecutorTransacciones TX_LOTE = new EjecutorTransacciones("ArchivadorEliminados.lote");
+    private static final EjecutorTransacciones TX_RESTAURAR_MASCOTA = new EjecutorTransacciones("ArchivadorEliminados.restaurarMascota");
+    private static final EjecutorTransacciones TX_RESTAURAR_MICROCHIP = new EjecutorTransacciones("ArchivadorEliminados.restaurarMicrochip");
+
+    private final ArchivoDao archivoDao = new ArchivoDao();
+    private final MascotaDao mascotaDao = new MascotaDao();
+    private final MicrochipDao microchipDao = new MicrochipDao();
+    private final OutboxDao outboxDao = new OutboxDao();
+    private final long retencionSegundos;
+    private final int tamanioLote;
+    private final long pausaMs;
+    private ScheduledExecutorService programador;
+    private volatile long intervaloMs = -1;
+
+    private final AtomicLong pasadas = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+    private final AtomicLong mascotasArchivadas = new AtomicLong();
+    private final AtomicLong microchipsArchivados = new AtomicLong();
+    private volatile long duracionUltimaPasadaMs = -1;
+
+    public ArchivadorEliminados(long retencionDias, int tamanioLote, long pausaMs) {
+        if (retencionDias < 0) {
+            throw new IllegalArgumentException("La retención no puede ser negativa");
+        }
+        if (tamanioLote <= 0 || tamanioLote > MicrochipDao.TAMANIO_LOTE_DEFECTO) {
+            throw new IllegalArgumentException("El tamaño de lote debe estar entre 1 y " + MicrochipDao.TAMANIO_LOTE_DEFECTO);
+        }
+        if (pausaMs < 0) {
+            throw new IllegalArgumentException("La pausa no puede ser negativa");
+        }
+        this.retencionSegundos = TimeUnit.DAYS.toSeconds(retencionDias);
+        this.tamanioLote = tamanioLote;
+        this.pausaMs = pausaMs;
+    }
+
+    // Crea el archivador con la configuración de -Darchivo.* y, si se indicó -Darchivo.intervaloMin, lo programa;
+    // devuelve null si no se indicó
+    public static ArchivadorEliminados desdePropiedades() {
+        Long intervaloMin = Long.getLong("archivo.intervaloMin");
+        if (intervaloMin == null || intervaloMin <= 0) {
+            return null;
+        }
+        ArchivadorEliminados archivador = new ArchivadorEliminados(Long.getLong("archivo.retencionDias", 30L),
+                Integer.getInteger("archivo.lote", 500), Long.getLong("archivo.pausaMs", 200L));
+        archivador.iniciar(TimeUnit.MINUTES.toMillis(intervaloMin));
+        return archivador;
+    }
+
+    // Publica el archivador por JMX y programa una pasada cada intervaloMs
+    public synchronized void iniciar(long intervaloMs) {
+        if (programador != null) {
+            throw new IllegalStateException("El archivador ya está programado");
+        }
+        Metricas.registrar("ArchivadorEliminados,nombre=principal", this);
+        this.intervaloMs = intervaloMs;
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "archivador-eliminados");
+            t.setDaemon(true);
+            return t;
+        });
+        programador.scheduleWithFixedDelay(this::archivarSinFallar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Tarea periódica: el resultado se acumula en el MBean y un error se cuenta; la próxima pasada sigue con el resto
+    private void archivarSinFallar() {
+        try {
+            ResultadoArchivado resultado = archivar(null);
+            pasadas.incrementAndGet();
+            mascotasArchivadas.addAndGet(resultado.getMascotas());
+            microchipsArchivados.addAndGet(resultado.getMicrochips());
+            duracionUltimaPasadaMs = resultado.getDuracionMs();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            errores.incrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+            intervaloMs = -1;
+        }
+    }
+
+    // Hace una pasada completa; avance (puede ser null) recibe el acumulado después de cada lote
+    // Si falla un lote, los anteriores ya quedaron archivados y la próxima pasada sigue con el resto
+    // Los candidatos de cada lote se leen con su propia conexión, que se devuelve antes de archivarlos
+    public ResultadoArchivado archivar(Consumer<ResultadoArchivado> avance) throws Exception {
+        try (Medicion medicion = METRICA_ARCHIVAR.iniciar()) {
+            long inicio = System.nanoTime();
+            long[] movidas = new long[2];
+            int lotes = 0;
+            long duracionLoteMs = 0;
+
+            for (int tabla = 0; tabla < 2; tabla++) {
+                boolean mascotas = tabla == 0;
+                long despuesDeId = 0;
+                List<Long> ids;
+                do {
+                    try (Connection conn = DatabaseConnection.getConnection()) {
+                        ids = mascotas
+                                ? archivoDao.leerMascotasArchivables(despuesDeId, retencionSegundos, tamanioLote, conn)
+                                : archivoDao.leerMicrochipsArchivables(despuesDeId, retencionSegundos, tamanioLote, conn);
+                    }
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+                    despuesDeId = ids.get(ids.size() - 1);
+
+                    long inicioLote = System.nanoTime();
+                    movidas[tabla] += archivarLote(mascotas, ids);
+                    duracionLoteMs = (System.nanoTime() - inicioLote) / 1_000_000;
+                    lotes++;
+                    if (avance != null) {
+                        avance.accept(new ResultadoArchivado(movidas[0], movidas[1], lotes,
+                                (System.nanoTime() - inicio) / 1_000_000, duracionLoteMs, false));
+                    }
+                    if (pausaMs > 0) {
+                        Thread.sleep(pausaMs);
+                    }
+                } while (ids.size() == tamanioLote);
+            }
+
+            ResultadoArchivado resultado = new ResultadoArchivado(movidas[0], movidas[1], lotes,
+                    (System.nanoTime() - inicio) / 1_000_000, duracionLoteMs, true);
+            if (avance != null) {
+                avance.accept(resultado);
+            }
+            medicion.exito(movidas[0] + movidas[1]);
+            return resultado;
+        }
+    }
+
+    // Devuelve la mascota al estado activo; si su microchip ya no está disponible, vuelve sin microchip
+    public Mascota restaurarMascota(Long id) throws Exception {
+        if (id == null) {
+            throw new IllegalArgumentException("ID de la mascota es requerido");
+        }
+
+        try {
+            return METRICA_RESTAURAR_MASCOTA.medir(() -> TX_RESTAURAR_MASCOTA.ejecutar(conn -> {
+                if (!archivoDao.restaurarMascota(id, conn)) {
+                    throw new IllegalArgumentException("Mascota archivada no encontrada con ID: " + id);
+                }
+                Mascota resultado = mascotaDao.leer(id, conn);
+                outboxDao.registrar(Eventos.de(Operacion.RESTAURAR, resultado), conn);
+                return resultado;
+            }), mascota -> 1);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Otra operación asignó el microchip entre la comprobación y el INSERT
+            throw new IllegalArgumentException("El microchip de la mascota fue asignado por otra operación; intente nuevamente");
+        } finally {
+            MascotaService.invalidar(id);
+        }
+    }
+
+    // Devuelve el microchip al estado activo, salvo que otro microchip ya use su código
+    public Microchip restaurarMicrochip(Long id) throws Exception {
+        if (id == null) {
+            throw new IllegalArgumentException("ID del microchip es requerido");
+        }
+
+        try {
+            return METRICA_RESTAURAR_MICROCHIP.medir(() -> TX_RESTAURAR_MICROCHIP.ejecutar(conn -> {
+                if (!archivoDao.restaurarMicrochip(id, conn)) {
+                    throw new IllegalArgumentException("Microchip archivado no encontrado con ID: " + id);
+                }
+                Microchip resultado = microchipDao.leer(id, conn);
+                MicrochipService.registrarCodigos(List.of(resultado.getCodigo()));
+                outboxDao.registrar(Eventos.de(Operacion.RESTAURAR, resultado), conn);
+                return resultado;
+            }), microchip -> 1);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new IllegalArgumentException("Ya existe otro microchip con el código del microchip archivado " + id);
+        } finally {
+            MicrochipService.invalidarCache(id);
+        }
+    }
+
+    // Archiva un lote en su propia transacción y devuelve cuántas filas movió
+    private int archivarLote(boolean mascotas, List<Long> ids) throws Exception {
+        return METRICA_LOTE.medir(() -> TX_LOTE.ejecutar(conn -> mascotas
+                ? archivoDao.archivarMascotas(ids, retencionSegundos, conn)
+                : archivoDao.archivarMicrochips(ids, retencionSegundos, conn)), Integer::longValue);
+    }
+
+    @Override
+    public boolean isActivo() { return intervaloMs >= 0; }
+
+    @Override
+    public long getPasadas() { return pasadas.get(); }
+
+    @Override
+    public long getErrores() { return errores.get(); }
+
+    @Override
+    public long getMascotasArchivadas() { return mascotasArchivadas.get(); }
+
+    @Override
+    public long getMicrochipsArchivados() { return microchipsArchivados.get(); }
+
+    @Override
+    public long getDuracionUltimaPasadaMs() { return duracionUltimaPasadaMs; }
+
+    @Override
+    public long getIntervaloMs() { return intervaloMs; }
+}
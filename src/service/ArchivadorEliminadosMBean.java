@@ -0,0 +1,24 @@
+package service;
+
+/*
+Interfaz de gestión (JMX) de ArchivadorEliminados: resultado de las pasadas programadas.
+ */
+
+public interface ArchivadorEliminadosMBean {
+
+    boolean isActivo();
+
+    long getPasadas();
+
+    long getErrores();
+
+    // Filas movidas a las tablas de archivo por todas las pasadas programadas
+    long getMascotasArchivadas();
+
+    long getMicrochipsArchivados();
+
+    // Duración de la última pasada terminada; -1 si todavía no terminó ninguna
+    long getDuracionUltimaPasadaMs();
+
+    long getIntervaloMs();
+}
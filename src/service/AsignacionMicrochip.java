@@ -0,0 +1,36 @@
+package service;
+
+/*
+Pedido de asignación de un microchip a una mascota para MascotaService.asignarMicrochipsLote.
+El microchip se indica por ID o por código (el código se usa solo si no hay ID).
+ */
+
+public class AsignacionMicrochip {
+    private final Long mascotaId;
+    private final Long microchipId;
+    private final String codigo;
+
+    private AsignacionMicrochip(Long mascotaId, Long microchipId, String codigo) {
+        this.mascotaId = mascotaId;
+        this.microchipId = microchipId;
+        this.codigo = codigo;
+    }
+
+    public static AsignacionMicrochip porId(Long mascotaId, Long microchipId) {
+        return new AsignacionMicrochip(mascotaId, microchipId, null);
+    }
+
+    public static AsignacionMicrochip porCodigo(Long mascotaId, String codigo) {
+        return new AsignacionMicrochip(mascotaId, null, codigo);
+    }
+
+    public Long getMascotaId() { return mascotaId; }
+    public Long getMicrochipId() { return microchipId; }
+    public String getCodigo() { return codigo; }
+
+    @Override
+    public String toString() {
+        return "AsignacionMicrochip{mascotaId=" + mascotaId
+                + (microchipId != null ? ", microchipId=" + microchipId : ", codigo='" + codigo + "'") + '}';
+    }
+}
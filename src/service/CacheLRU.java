@@ -0,0 +1,117 @@
+package service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/*
+Caché en memoria acotada por cantidad de entradas (desaloja la menos usada) y por tiempo de vida.
+Pensada para lecturas de tipo read-through desde los servicios: se consulta, y ante un fallo
+el servicio lee de la base y guarda el resultado.
+Lleva contadores de aciertos, fallos, desalojos y expiraciones para dimensionarla con tráfico real.
+
+@param <K> Tipo de la clave
+@param <V> Tipo del valor guardado
+ */
+
+public class CacheLRU<K, V> {
+
+    private final int maximo;
+    private final long vidaNanos;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+
+    // Se incrementa con cada invalidación; permite descartar lecturas que empezaron antes de una escritura
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+    private final AtomicLong expiraciones = new AtomicLong();
+
+    public CacheLRU(int maximo, long vidaMs) {
+        if (maximo <= 0 || vidaMs <= 0) {
+            throw new IllegalArgumentException("El tamaño y el tiempo de vida de la caché deben ser mayores a cero");
+        }
+        this.maximo = maximo;
+        this.vidaNanos = vidaMs * 1_000_000L;
+        // accessOrder = true: cada get mueve la entrada al final, la primera es siempre la menos usada
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                if (size() > CacheLRU.this.maximo) {
+                    desalojos.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Devuelve el valor guardado o null si no está o ya venció
+    public synchronized V obtener(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada == null) {
+            fallos.incrementAndGet();
+            return null;
+        }
+        if (System.nanoTime() - entrada.creadaEn > vidaNanos) {
+            entradas.remove(clave);
+            expiraciones.incrementAndGet();
+            fallos.incrementAndGet();
+            return null;
+        }
+        aciertos.incrementAndGet();
+        return entrada.valor;
+    }
+
+    // Marca a tomar antes de leer de la base, para pasarla luego a guardar()
+    public long marca() {
+        return invalidaciones.get();
+    }
+
+    // Guarda el valor solo si no hubo invalidaciones desde la marca, para no reinstalar un dato viejo
+    public synchronized void guardar(K clave, V valor, long marca) {
+        if (valor == null || invalidaciones.get() != marca) {
+            return;
+        }
+        entradas.put(clave, new Entrada<>(valor, System.nanoTime()));
+    }
+
+    public synchronized void invalidar(K clave) {
+        invalidaciones.incrementAndGet();
+        entradas.remove(clave);
+    }
+
+    // Invalida todas las entradas cuyo valor cumple la condición
+    public synchronized void invalidarSi(Predicate<V> condicion) {
+        invalidaciones.incrementAndGet();
+        Iterator<Entrada<V>> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            if (condicion.test(it.next().valor)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void limpiar() {
+        invalidaciones.incrementAndGet();
+        entradas.clear();
+    }
+
+    public synchronized EstadisticasCache getEstadisticas() {
+        return new EstadisticasCache(entradas.size(), maximo, aciertos.get(), fallos.get(),
+                desalojos.get(), expiraciones.get());
+    }
+
+    private static class Entrada<V> {
+        private final V valor;
+        private final long creadaEn;
+
+        Entrada(V valor, long creadaEn) {
+            this.valor = valor;
+            this.creadaEn = creadaEn;
+        }
+    }
+}
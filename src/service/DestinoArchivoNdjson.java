@@ -0,0 +1,67 @@
+package service;
+
+import models.EventoOutbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/*
+Destino del outbox que agrega cada evento como una línea JSON al final de un archivo:
+{"id":..,"entidad":..,"entidad_id":..,"operacion":..,"version":..,"creado_en":..,"datos":{..} o null}
+Cada lote se escribe de una vez y se fuerza a disco antes de volver, porque después se borra del outbox.
+El archivo se abre en el primer lote y queda abierto hasta close().
+ */
+
+public class DestinoArchivoNdjson implements DestinoOutbox {
+
+    private final Path archivo;
+    private FileChannel canal;
+
+    public DestinoArchivoNdjson(Path archivo) {
+        this.archivo = archivo;
+    }
+
+    @Override
+    public synchronized void publicar(List<EventoOutbox> eventos) throws IOException {
+        if (canal == null) {
+            canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        StringBuilder lineas = new StringBuilder(eventos.size() * 256);
+        for (EventoOutbox evento : eventos) {
+            escribir(evento, lineas);
+            lineas.append('\n');
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(lineas.toString());
+        while (bytes.hasRemaining()) {
+            canal.write(bytes);
+        }
+        canal.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    // Los datos ya están guardados como JSON en el outbox y se copian tal cual
+    private static void escribir(EventoOutbox evento, StringBuilder salida) throws IOException {
+        salida.append("{\"id\":").append(evento.getId());
+        salida.append(",\"entidad\":");
+        SerializadorJson.texto(salida, evento.getEntidad());
+        salida.append(",\"entidad_id\":").append(evento.getEntidadId());
+        salida.append(",\"operacion\":\"").append(evento.getOperacion().name()).append('"');
+        salida.append(",\"version\":").append(evento.getVersion());
+        salida.append(",\"creado_en\":");
+        SerializadorJson.texto(salida, evento.getCreadoEn() != null ? evento.getCreadoEn().toString() : null);
+        salida.append(",\"datos\":").append(evento.getDatos() != null ? evento.getDatos() : "null");
+        salida.append('}');
+    }
+}
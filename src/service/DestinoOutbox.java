@@ -0,0 +1,23 @@
+package service;
+
+import models.EventoOutbox;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+Destino al que RelayOutbox publica los eventos del outbox (un archivo, una cola de mensajes, un webhook...).
+Recibe cada lote en orden de id. Cuando publicar() vuelve sin error los eventos se borran del outbox,
+así que para entonces deben estar a salvo en el destino; si lanza, el mismo lote se vuelve a intentar más tarde.
+La entrega es "al menos una vez": después de una caída se puede repetir un lote, y los consumidores deben
+descartar los eventos cuyo id ya procesaron.
+ */
+
+public interface DestinoOutbox extends AutoCloseable {
+
+    void publicar(List<EventoOutbox> eventos) throws Exception;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,114 @@
+package service;
+
+import config.DatabaseConnection;
+import config.SesionLectura;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/*
+Ejecuta llamadas bloqueantes a los servicios en hilos virtuales y las devuelve como CompletableFuture.
+Cada llamada corre en su propio hilo virtual, pero solo "limite" llamadas usan la base a la vez: el resto
+espera un permiso sin ocupar una conexión ni un hilo de plataforma. Por defecto el límite es el tamaño
+máximo del pool de conexiones, así las llamadas no compiten por conexiones ni vencen la espera del pool.
+Cancelar el CompletableFuture devuelto interrumpe el hilo virtual: si todavía espera permiso se descarta,
+y si ya está ejecutando, la consulta en curso se corta y la transacción se deshace al devolver la conexión.
+Cada tarea corre con la SesionLectura de quien la lanzó, así sus escrituras abren la ventana de lectura propia
+de esa sesión y sus lecturas respetan la que ya estaba abierta.
+ */
+
+public final class EjecutorAsync {
+
+    private final int limite;
+    private final Semaphore permisos;
+    private final ExecutorService hilos = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("servicio-async-", 0).factory());
+
+    public EjecutorAsync(int limite) {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite de concurrencia debe ser mayor a cero");
+        }
+        this.limite = limite;
+        this.permisos = new Semaphore(limite, true);
+    }
+
+    // Ejecutor compartido por los servicios asíncronos, limitado a la capacidad del pool de conexiones
+    public static EjecutorAsync compartido() {
+        return Compartido.INSTANCIA;
+    }
+
+    // Ejecuta la tarea en un hilo virtual; el resultado o la excepción que lance completan el CompletableFuture
+    public <T> CompletableFuture<T> ejecutar(Callable<T> tarea) {
+        SesionLectura sesion = SesionLectura.actual();
+        FuturoCancelable<T> futuro = new FuturoCancelable<>();
+        // La sesión abarca también la compleción, así las etapas dependientes que corren en este hilo la heredan
+        Future<?> ejecucion = hilos.submit(() -> sesion.correr(() -> {
+            if (futuro.isDone()) {
+                return;
+            }
+            try {
+                permisos.acquire();
+            } catch (InterruptedException e) {
+                futuro.completeExceptionally(new CancellationException("Tarea cancelada antes de ejecutarse"));
+                return;
+            }
+            try {
+                futuro.complete(tarea.call());
+            } catch (Throwable e) {
+                futuro.completeExceptionally(e);
+            } finally {
+                permisos.release();
+            }
+        }));
+        futuro.ejecucion = ejecucion;
+        // Si se canceló antes de conocer la ejecución, cancelarla ahora
+        if (futuro.isCancelled()) {
+            ejecucion.cancel(true);
+        }
+        return futuro;
+    }
+
+    public int getLimite() {
+        return limite;
+    }
+
+    // Llamadas que están usando la base en este momento
+    public int getEnCurso() {
+        return limite - permisos.availablePermits();
+    }
+
+    // Llamadas esperando un permiso
+    public int getEsperando() {
+        return permisos.getQueueLength();
+    }
+
+    // Interrumpe las tareas pendientes y rechaza nuevas
+    public void cerrar() {
+        hilos.shutdownNow();
+    }
+
+    // CompletableFuture cuyo cancel() también interrumpe el hilo que ejecuta la tarea
+    private static final class FuturoCancelable<T> extends CompletableFuture<T> {
+        private volatile Future<?> ejecucion;
+
+        @Override
+        public boolean cancel(boolean interrumpir) {
+            boolean cancelado = super.cancel(interrumpir);
+            Future<?> actual = ejecucion;
+            if (cancelado && actual != null) {
+                actual.cancel(true);
+            }
+            return cancelado;
+        }
+    }
+
+    // Se crea recién al primer uso, cuando el pool ya está configurado
+    private static final class Compartido {
+        private static final EjecutorAsync INSTANCIA = new EjecutorAsync(DatabaseConnection.getTamanioMaximoPool());
+    }
+}
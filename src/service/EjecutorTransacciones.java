@@ -0,0 +1,179 @@
+package service;
+
+import config.DatabaseConnection;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Ejecuta un trabajo dentro de una transacción: toma una conexión, desactiva el autocommit, confirma si el trabajo
+termina bien y deshace si lanza una excepción, y al final devuelve la conexión con el autocommit y el nivel de
+aislamiento que tenía. Si la base aborta la transacción por un error transitorio (deadlock, espera de bloqueo vencida
+o falla de serialización) la repite desde cero en otra conexión, hasta "reintentos" veces, esperando entre intentos
+un tiempo al azar entre cero y una cota que se duplica en cada reintento (backoff exponencial con jitter completo).
+Al confirmar una transacción que no es de solo lectura abre la ventana de lectura propia de la sesión
+(ver DatabaseConnection.registrarEscritura).
+Como un intento puede repetirse, el trabajo no debe dejar estado a medias fuera de la transacción: lo que modifique
+en memoria tiene que poder recalcularse al inicio de cada intento.
+Cada ejecutor publica dos métricas con capa "transaccion": <nombre> mide cada intento (desde el inicio hasta el
+commit o el rollback, sin la espera de conexión) y <nombre>.reintento cada espera antes de repetir.
+Se configura con -Dtx.reintentos, -Dtx.esperaBaseMs y -Dtx.esperaMaximaMs.
+ */
+
+public final class EjecutorTransacciones {
+
+    public static final int REINTENTOS_DEFECTO = Integer.getInteger("tx.reintentos", 3);
+    private static final long ESPERA_BASE_MS = Long.getLong("tx.esperaBaseMs", 20L);
+    private static final long ESPERA_MAXIMA_MS = Long.getLong("tx.esperaMaximaMs", 1_000L);
+
+    // Deja el nivel de aislamiento que tenga la conexión (REPEATABLE READ por defecto en InnoDB)
+    public static final int AISLAMIENTO_DE_LA_CONEXION = -1;
+
+    // Códigos de error de MySQL que abortan la transacción y SQLState estándar de falla de serialización
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final String SQLSTATE_SERIALIZACION = "40001";
+
+    private final String nombre;
+    private final int aislamiento;
+    private final boolean soloLectura;
+    private final int reintentos;
+    private final MetricaOperacion metrica;
+    private final MetricaOperacion metricaReintento;
+
+    public EjecutorTransacciones(String nombre) {
+        this(nombre, AISLAMIENTO_DE_LA_CONEXION, false, REINTENTOS_DEFECTO);
+    }
+
+    private EjecutorTransacciones(String nombre, int aislamiento, boolean soloLectura, int reintentos) {
+        if (nombre == null || nombre.trim().isEmpty()) {
+            throw new IllegalArgumentException("El nombre de la transacción es requerido");
+        }
+        if (reintentos < 0) {
+            throw new IllegalArgumentException("La cantidad de reintentos no puede ser negativa");
+        }
+        this.nombre = nombre;
+        this.aislamiento = aislamiento;
+        this.soloLectura = soloLectura;
+        this.reintentos = reintentos;
+        this.metrica = Metricas.operacion("transaccion", nombre);
+        this.metricaReintento = Metricas.operacion("transaccion", nombre + ".reintento");
+    }
+
+    // Copia con otro nivel de aislamiento (una de las constantes Connection.TRANSACTION_*)
+    public EjecutorTransacciones conAislamiento(int aislamiento) {
+        if (aislamiento != AISLAMIENTO_DE_LA_CONEXION && aislamiento != Connection.TRANSACTION_READ_UNCOMMITTED
+                && aislamiento != Connection.TRANSACTION_READ_COMMITTED && aislamiento != Connection.TRANSACTION_REPEATABLE_READ
+                && aislamiento != Connection.TRANSACTION_SERIALIZABLE) {
+            throw new IllegalArgumentException("Nivel de aislamiento no válido: " + aislamiento);
+        }
+        return new EjecutorTransacciones(nombre, aislamiento, soloLectura, reintentos);
+    }
+
+    // Copia que ejecuta transacciones de solo lectura: la conexión puede venir de una réplica
+    // (ver DatabaseConnection.getConnectionLectura) y InnoDB no les asigna ID de transacción
+    public EjecutorTransacciones soloLectura() {
+        return new EjecutorTransacciones(nombre, aislamiento, true, reintentos);
+    }
+
+    public EjecutorTransacciones conReintentos(int reintentos) {
+        return new EjecutorTransacciones(nombre, aislamiento, soloLectura, reintentos);
+    }
+
+    // Ejecuta el trabajo en una transacción y devuelve su resultado; la excepción del último intento se propaga tal cual
+    public <T> T ejecutar(Trabajo<T> trabajo) throws Exception {
+        for (int intento = 0; ; intento++) {
+            try {
+                return intentar(trabajo);
+            } catch (SQLException e) {
+                if (intento >= reintentos || !esTransitoria(e)) {
+                    throw e;
+                }
+                esperar(intento, e);
+            }
+        }
+    }
+
+    private <T> T intentar(Trabajo<T> trabajo) throws Exception {
+        try (Connection conn = soloLectura ? DatabaseConnection.getConnectionLectura() : DatabaseConnection.getConnection();
+             Medicion medicion = metrica.iniciar()) {
+            int aislamientoAnterior = aislamiento != AISLAMIENTO_DE_LA_CONEXION ? conn.getTransactionIsolation() : aislamiento;
+            if (aislamientoAnterior != aislamiento) {
+                conn.setTransactionIsolation(aislamiento);
+            }
+            // El pool vuelve la conexión a lectura y escritura al recibirla de vuelta
+            if (soloLectura && !conn.isReadOnly()) {
+                conn.setReadOnly(true);
+            }
+            conn.setAutoCommit(false);
+            Exception error = null;
+            try {
+                T resultado = trabajo.ejecutar(conn);
+                conn.commit();
+                // Las lecturas siguientes de la sesión van al primario hasta que las réplicas alcancen esta escritura
+                if (!soloLectura) {
+                    DatabaseConnection.registrarEscritura();
+                }
+                medicion.exito(1);
+                return resultado;
+            } catch (Exception e) {
+                error = e;
+                try {
+                    conn.rollback();
+                } catch (SQLException errorRollback) {
+                    e.addSuppressed(errorRollback);
+                }
+                throw e;
+            } finally {
+                // Si el trabajo falló, un error al restaurar la conexión no debe reemplazar al original
+                try {
+                    conn.setAutoCommit(true);
+                    if (aislamientoAnterior != aislamiento) {
+                        conn.setTransactionIsolation(aislamientoAnterior);
+                    }
+                } catch (SQLException errorRestaurar) {
+                    if (error == null) {
+                        throw errorRestaurar;
+                    }
+                    error.addSuppressed(errorRestaurar);
+                }
+            }
+        }
+    }
+
+    // El error puede llegar envuelto (por ejemplo, en la BatchUpdateException de executeBatch)
+    static boolean esTransitoria(SQLException e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLException sql && (sql.getErrorCode() == ER_LOCK_DEADLOCK
+                    || sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT || SQLSTATE_SERIALIZACION.equals(sql.getSQLState()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Jitter completo: repartir las esperas al azar evita que las transacciones que chocaron vuelvan a chocar juntas
+    private void esperar(int intento, SQLException causa) throws SQLException {
+        long cota = Math.min(ESPERA_MAXIMA_MS, ESPERA_BASE_MS << Math.min(intento, 20));
+        try (Medicion medicion = metricaReintento.iniciar()) {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cota + 1));
+            medicion.exito(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw causa;
+        }
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    // Trabajo a ejecutar con la conexión de la transacción; no debe confirmar ni cambiar el autocommit
+    public interface Trabajo<T> {
+        T ejecutar(Connection conn) throws Exception;
+    }
+}
@@ -0,0 +1,50 @@
+package service;
+
+/*
+Fotografía de los contadores de una CacheLRU en un momento dado.
+Los contadores son acumulados desde que se creó la caché.
+ */
+
+public class EstadisticasCache {
+    private final int tamanio;
+    private final int maximo;
+    private final long aciertos;
+    private final long fallos;
+    private final long desalojos;
+    private final long expiraciones;
+
+    public EstadisticasCache(int tamanio, int maximo, long aciertos, long fallos, long desalojos, long expiraciones) {
+        this.tamanio = tamanio;
+        this.maximo = maximo;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.desalojos = desalojos;
+        this.expiraciones = expiraciones;
+    }
+
+    public int getTamanio() { return tamanio; }
+    public int getMaximo() { return maximo; }
+    public long getAciertos() { return aciertos; }
+    public long getFallos() { return fallos; }
+    public long getDesalojos() { return desalojos; }
+    public long getExpiraciones() { return expiraciones; }
+
+    // Proporción de lecturas resueltas sin ir a la base (0 si todavía no hubo lecturas)
+    public double getTasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : (double) aciertos / total;
+    }
+
+    @Override
+    public String toString() {
+        return "EstadisticasCache{" +
+                "tamanio=" + tamanio +
+                ", maximo=" + maximo +
+                ", aciertos=" + aciertos +
+                ", fallos=" + fallos +
+                ", desalojos=" + desalojos +
+                ", expiraciones=" + expiraciones +
+                ", tasaAciertos=" + String.format("%.3f", getTasaAciertos()) +
+                '}';
+    }
+}
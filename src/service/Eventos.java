@@ -0,0 +1,41 @@
+package service;
+
+import models.EventoOutbox;
+import models.EventoOutbox.Operacion;
+import models.Mascota;
+import models.Microchip;
+
+/*
+Arma los eventos que los servicios registran en el outbox (ver dao.OutboxDao).
+En inserciones y actualizaciones los datos son la entidad en el mismo JSON que usa SerializadorJson;
+en asignaciones solo el par {"mascota_id":..,"microchip_id":..} y en eliminaciones no hay datos.
+ */
+
+final class Eventos {
+
+    static final String MASCOTA = "mascota";
+    static final String MICROCHIP = "microchip";
+
+    private Eventos() {
+    }
+
+    static EventoOutbox de(Operacion operacion, Mascota mascota) {
+        return new EventoOutbox(MASCOTA, mascota.getId(), operacion, mascota.getVersion(), SerializadorJson.aJson(mascota));
+    }
+
+    static EventoOutbox de(Operacion operacion, Microchip microchip) {
+        return new EventoOutbox(MICROCHIP, microchip.getId(), operacion, microchip.getVersion(), SerializadorJson.aJson(microchip));
+    }
+
+    // La versión resultante no se conoce sin volver a leer la fila, por eso queda en null
+    static EventoOutbox eliminacion(String entidad, Long id) {
+        return new EventoOutbox(entidad, id, Operacion.ELIMINAR, null, null);
+    }
+
+    // microchipId null representa quitar el microchip
+    static EventoOutbox asignacion(Long mascotaId, Long microchipId) {
+        Operacion operacion = microchipId != null ? Operacion.ASIGNAR_MICROCHIP : Operacion.QUITAR_MICROCHIP;
+        String datos = "{\"mascota_id\":" + mascotaId + ",\"microchip_id\":" + microchipId + "}";
+        return new EventoOutbox(MASCOTA, mascotaId, operacion, null, datos);
+    }
+}
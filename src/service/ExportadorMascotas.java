@@ -0,0 +1,167 @@
+package service;
+
+import models.Mascota;
+import models.Microchip;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+Exporta todas las mascotas activas, con su microchip, a un archivo CSV o NDJSON (un objeto JSON por línea).
+Las filas se leen con el cursor del servidor de MascotaService.getAllStream() y se escriben a medida que llegan
+en un writer con buffer, opcionalmente comprimido con gzip: la memoria usada no depende de la cantidad de filas.
+Se escribe primero en "<destino>.tmp" y se renombra al terminar, así nunca queda a la vista un archivo incompleto.
+El CSV usa las mismas columnas que ImportadorCsv (más los IDs), por lo que un volcado se puede volver a importar.
+ */
+
+public class ExportadorMascotas {
+
+    public enum Formato { CSV, NDJSON }
+
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+    // Cada cuántas filas se mira el reloj para decidir si informar el avance
+    private static final int FILAS_ENTRE_CONTROLES = 10_000;
+    private static final String ENCABEZADO_CSV = "id,nombre,especie,raza,fecha_nacimiento,duenio,microchip_id,microchip_codigo,"
+            + "microchip_fecha_implantacion,microchip_veterinaria,microchip_observaciones";
+
+    private final MascotaService mascotaService = new MascotaService();
+    private final long intervaloAvanceMs;
+
+    public ExportadorMascotas() {
+        this(2_000);
+    }
+
+    public ExportadorMascotas(long intervaloAvanceMs) {
+        this.intervaloAvanceMs = intervaloAvanceMs;
+    }
+
+    // Exporta deduciendo el formato y la compresión del nombre: .ndjson o .jsonl para NDJSON, .gz para gzip
+    public ResultadoExportacion exportar(Path destino, Consumer<ResultadoExportacion> avance) throws Exception {
+        String nombre = destino.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean gzip = nombre.endsWith(".gz");
+        String sinGzip = gzip ? nombre.substring(0, nombre.length() - 3) : nombre;
+        Formato formato = sinGzip.endsWith(".ndjson") || sinGzip.endsWith(".jsonl") ? Formato.NDJSON : Formato.CSV;
+        return exportar(destino, formato, gzip, avance);
+    }
+
+    // Exporta en el formato indicado; avance (puede ser null) recibe el progreso cada intervaloAvanceMs
+    public ResultadoExportacion exportar(Path destino, Formato formato, boolean gzip,
+                                         Consumer<ResultadoExportacion> avance) throws Exception {
+        long inicio = System.nanoTime();
+        long ultimoAvance = inicio;
+        long filas = 0;
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+
+        try (Stream<Mascota> mascotas = mascotaService.getAllStream();
+             Writer salida = abrir(temporal, gzip)) {
+            if (formato == Formato.CSV) {
+                salida.write(ENCABEZADO_CSV);
+                salida.write('\n');
+            }
+
+            Iterator<Mascota> it = mascotas.iterator();
+            while (it.hasNext()) {
+                Mascota mascota = it.next();
+                if (formato == Formato.CSV) {
+                    escribirCsv(mascota, salida);
+                } else {
+                    SerializadorJson.escribir(mascota, salida);
+                    salida.write('\n');
+                }
+                filas++;
+
+                if (avance != null && filas % FILAS_ENTRE_CONTROLES == 0) {
+                    long ahora = System.nanoTime();
+                    if ((ahora - ultimoAvance) / 1_000_000 >= intervaloAvanceMs) {
+                        ultimoAvance = ahora;
+                        avance.accept(new ResultadoExportacion(filas, (ahora - inicio) / 1_000_000, false));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+
+        mover(temporal, destino);
+        ResultadoExportacion resultado = new ResultadoExportacion(filas, (System.nanoTime() - inicio) / 1_000_000, true);
+        if (avance != null) {
+            avance.accept(resultado);
+        }
+        return resultado;
+    }
+
+    private static Writer abrir(Path archivo, boolean gzip) throws IOException {
+        OutputStream salida = Files.newOutputStream(archivo);
+        if (gzip) {
+            salida = new GZIPOutputStream(salida, TAMANIO_BUFFER);
+        }
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+    }
+
+    private static void mover(Path origen, Path destino) throws IOException {
+        try {
+            Files.move(origen, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void escribirCsv(Mascota mascota, Writer salida) throws IOException {
+        Microchip microchip = mascota.getMicrochip();
+        salida.write(String.valueOf(mascota.getId()));
+        campoCsv(salida, mascota.getNombre());
+        campoCsv(salida, mascota.getEspecie());
+        campoCsv(salida, mascota.getRaza());
+        campoCsv(salida, mascota.getFechaNacimiento());
+        campoCsv(salida, mascota.getDuenio());
+        if (microchip != null) {
+            campoCsv(salida, String.valueOf(microchip.getId()));
+            campoCsv(salida, microchip.getCodigo());
+            campoCsv(salida, microchip.getFechaImplantacion());
+            campoCsv(salida, microchip.getVeterinaria());
+            campoCsv(salida, microchip.getObservaciones());
+        } else {
+            salida.write(",,,,,");
+        }
+        salida.write('\n');
+    }
+
+    private static void campoCsv(Writer salida, LocalDate valor) throws IOException {
+        campoCsv(salida, valor != null ? valor.toString() : null);
+    }
+
+    // Agrega ",valor"; solo se usan comillas si el valor contiene separador, comillas o saltos de línea
+    private static void campoCsv(Writer salida, String valor) throws IOException {
+        salida.write(',');
+        if (valor == null) {
+            return;
+        }
+        boolean comillas = false;
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (comillas) {
+            salida.write('"');
+            salida.write(valor.replace("\"", "\"\""));
+            salida.write('"');
+        } else {
+            salida.write(valor);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+Filtro de Bloom para cadenas: índice probabilístico de pertenencia.
+Si dice que un valor no está, seguro no está; si dice que está, puede ser un falso positivo.
+Se dimensiona para una cantidad esperada de elementos y una tasa de falsos positivos objetivo.
+Es seguro para usar desde varios hilos: los bits se encienden con operaciones atómicas.
+ */
+
+public class FiltroBloom {
+
+    private final AtomicLongArray bits;
+    private final long cantidadBits;
+    private final int cantidadHashes;
+    private final long capacidad;
+    private final AtomicLong agregados = new AtomicLong();
+
+    public FiltroBloom(long capacidad, double tasaFalsosPositivos) {
+        if (capacidad <= 0 || tasaFalsosPositivos <= 0 || tasaFalsosPositivos >= 1) {
+            throw new IllegalArgumentException("Capacidad o tasa de falsos positivos inválida");
+        }
+        // m = -n ln(p) / ln(2)^2  y  k = m/n ln(2)
+        long m = (long) Math.ceil(-capacidad * Math.log(tasaFalsosPositivos) / (Math.log(2) * Math.log(2)));
+        int palabras = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+        this.bits = new AtomicLongArray(palabras);
+        this.cantidadBits = (long) palabras * 64;
+        this.cantidadHashes = Math.max(1, (int) Math.round((double) cantidadBits / capacidad * Math.log(2)));
+        this.capacidad = capacidad;
+    }
+
+    public void agregar(String valor) {
+        long hash = hash64(valor);
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < cantidadHashes; i++) {
+            long bit = indice(h1 + i * h2);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << (bit & 63);
+            long actual;
+            do {
+                actual = bits.get(palabra);
+                if ((actual & mascara) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(palabra, actual, actual | mascara));
+        }
+        agregados.incrementAndGet();
+    }
+
+    // false = seguro no está; true = puede estar
+    public boolean puedeContener(String valor) {
+        long hash = hash64(valor);
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < cantidadHashes; i++) {
+            long bit = indice(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Tasa de falsos positivos esperada con la cantidad actual de elementos: (1 - e^(-k n / m))^k
+    public double getTasaFalsosPositivosEstimada() {
+        double exponente = -(double) cantidadHashes * agregados.get() / cantidadBits;
+        return Math.pow(1 - Math.exp(exponente), cantidadHashes);
+    }
+
+    public long getAgregados() { return agregados.get(); }
+    public long getCapacidad() { return capacidad; }
+    public long getCantidadBits() { return cantidadBits; }
+    public int getCantidadHashes() { return cantidadHashes; }
+
+    // Doble hashing (Kirsch-Mitzenmacher): la i-ésima posición es h1 + i * h2
+    private long indice(long combinado) {
+        return Math.floorMod(combinado, cantidadBits);
+    }
+
+    // FNV-1a de 64 bits sobre los bytes UTF-8, con una mezcla final para repartir mejor los bits altos
+    private static long hash64(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
@@ -4,7 +4,11 @@
  */
 package service;
 
+import dao.LecturaPorIds;
+import dao.Pagina;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /*
  Interfaz que define las operaciones CRUD básicas para los servicios del sistema.
@@ -14,9 +18,17 @@ import java.util.List;
  */
 
 public interface GenericService<T> {
+    // Tamaño máximo de página aceptado por las consultas paginadas
+    int TAMANIO_PAGINA_MAXIMO = 500;
+    
     T insertar(T entity) throws Exception;
+    List<T> insertarLote(List<T> entities) throws Exception;
     T actualizar(T entity) throws Exception;
     boolean eliminar(Long id) throws Exception;
     T getById(Long id) throws Exception;
+    // Varias entidades por ID en el orden recibido; las que no existen quedan en LecturaPorIds.getFaltantes()
+    LecturaPorIds<T> getByIds(Collection<Long> ids) throws Exception;
     List<T> getAll() throws Exception;
+    Stream<T> getAllStream() throws Exception;
+    Pagina<T> getPagina(String token, int tamanio) throws Exception;
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package service;
+
+import dao.LecturaPorIds;
+import dao.Pagina;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ Variante asíncrona de GenericService: cada operación se ejecuta en un hilo virtual (ver EjecutorAsync)
+ y devuelve un CompletableFuture que se completa con el resultado o con la excepción del servicio.
+ Cancelar el CompletableFuture interrumpe la operación.
+ No incluye getAllStream(): un Stream con cursor retiene su conexión y debe consumirse en el hilo que lo abre.
+
+ @param <T> Tipo de entidad que manejará el servicio
+ */
+
+public interface GenericServiceAsync<T> {
+    
+    CompletableFuture<T> insertarAsync(T entity);
+    CompletableFuture<List<T>> insertarLoteAsync(List<T> entities);
+    CompletableFuture<T> actualizarAsync(T entity);
+    CompletableFuture<Boolean> eliminarAsync(Long id);
+    CompletableFuture<T> getByIdAsync(Long id);
+    CompletableFuture<LecturaPorIds<T>> getByIdsAsync(Collection<Long> ids);
+    CompletableFuture<List<T>> getAllAsync();
+    CompletableFuture<Pagina<T>> getPaginaAsync(String token, int tamanio);
+}
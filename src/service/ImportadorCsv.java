@@ -0,0 +1,545 @@
+package service;
+
+import dao.MascotaDao;
+import dao.MicrochipDao;
+import dao.OutboxDao;
+import models.EventoOutbox;
+import models.EventoOutbox.Operacion;
+import models.Mascota;
+import models.Microchip;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+Importación masiva de mascotas (con microchip opcional) desde un archivo CSV.
+El trabajo se reparte en etapas conectadas por colas acotadas, de modo que una etapa lenta frena a las
+anteriores en lugar de acumular filas en memoria:
+  1. lectura: un hilo lee el archivo y separa los campos, en bloques de TAMANIO_BLOQUE filas
+  2. validación: varios hilos arman las entidades y aplican validarMascota / validarMicrochip
+  3. escritura: el hilo que llama resuelve los códigos de microchip (busca los existentes y crea los nuevos),
+     descarta los microchips ya asignados e inserta las mascotas con JDBC batch, una transacción por lote
+Las filas inválidas no detienen la importación: se escriben en el archivo de rechazos con su número de línea y el motivo.
+Si la base rechaza un lote por los datos de alguna fila, el lote se divide y reintenta para rechazar solo esas filas.
+
+Formato: la primera línea es el encabezado y las columnas se reconocen por nombre, en cualquier orden.
+Obligatorias: nombre, especie, duenio. Opcionales: raza, fecha_nacimiento, microchip_codigo,
+microchip_fecha_implantacion, microchip_veterinaria, microchip_observaciones. El separador es "," (o ";"
+si el encabezado no tiene comas) y los valores pueden ir entre comillas dobles, que pueden contener saltos de línea
+(como los que escribe ExportadorMascotas): la fila sigue en las líneas siguientes hasta cerrar las comillas.
+ */
+
+public class ImportadorCsv {
+
+    // Filas por bloque entre etapas y capacidad de las colas (en bloques)
+    private static final int TAMANIO_BLOQUE = 500;
+    private static final int BLOQUES_EN_COLA = 16;
+    private static final List<String> COLUMNAS_OBLIGATORIAS = List.of("nombre", "especie", "duenio");
+
+    // Marca de fin de datos que cada etapa pasa a la siguiente (se compara por identidad)
+    private static final List<FilaCsv> FIN_CRUDAS = new ArrayList<>();
+    private static final List<FilaValida> FIN_VALIDAS = new ArrayList<>();
+
+    // Cada lote es una transacción que se repite si la base la aborta por un deadlock
+    private static final EjecutorTransacciones TX_LOTE = new EjecutorTransacciones("ImportadorCsv.lote");
+
+    private final MascotaService mascotaService = new MascotaService();
+    private final MicrochipService microchipService = new MicrochipService();
+    private final MascotaDao mascotaDao = new MascotaDao();
+    private final MicrochipDao microchipDao = new MicrochipDao();
+    private final OutboxDao outboxDao = new OutboxDao();
+    private final int validadores;
+    private final int tamanioLote;
+
+    public ImportadorCsv() {
+        this(Runtime.getRuntime().availableProcessors(), MascotaDao.TAMANIO_LOTE_DEFECTO);
+    }
+
+    public ImportadorCsv(int validadores, int tamanioLote) {
+        if (validadores <= 0) {
+            throw new IllegalArgumentException("La cantidad de validadores debe ser mayor a cero");
+        }
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero");
+        }
+        this.validadores = validadores;
+        this.tamanioLote = tamanioLote;
+    }
+
+    // Importa el archivo csv y deja las filas rechazadas en el archivo rechazos (se sobrescribe si existe)
+    // Las filas de un lote ya confirmado quedan importadas aunque luego falle otro lote
+    public ResultadoImportacion importar(Path csv, Path rechazos) throws Exception {
+        long inicio = System.nanoTime();
+        BlockingQueue<List<FilaCsv>> crudas = new ArrayBlockingQueue<>(BLOQUES_EN_COLA);
+        BlockingQueue<List<FilaValida>> validas = new ArrayBlockingQueue<>(BLOQUES_EN_COLA);
+        AtomicLong leidas = new AtomicLong();
+        AtomicReference<Exception> error = new AtomicReference<>();
+
+        ExecutorService hilos = Executors.newFixedThreadPool(validadores + 1, r -> {
+            Thread t = new Thread(r, "importador-csv");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (BufferedReader lector = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+             Rechazos rechazadas = new Rechazos(rechazos)) {
+            String encabezado = lector.readLine();
+            if (encabezado == null) {
+                throw new IllegalArgumentException("El archivo está vacío: " + csv);
+            }
+            char separador = encabezado.indexOf(',') < 0 && encabezado.indexOf(';') >= 0 ? ';' : ',';
+            Map<String, Integer> columnas = leerEncabezado(encabezado, separador);
+
+            hilos.execute(() -> leer(lector, separador, crudas, rechazadas, leidas, error));
+            for (int i = 0; i < validadores; i++) {
+                hilos.execute(() -> validar(columnas, crudas, validas, rechazadas, error));
+            }
+            Escritura escritura = escribir(validas, rechazadas);
+
+            // Un error de lectura o validación corta la entrada: lo ya escrito queda, pero la importación falla
+            if (error.get() != null) {
+                throw error.get();
+            }
+            long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+            return new ResultadoImportacion(leidas.get(), escritura.importadas, rechazadas.getCantidad(),
+                    escritura.microchipsCreados, duracionMs);
+        } finally {
+            // Si la escritura falló, las otras etapas pueden estar bloqueadas en una cola llena
+            hilos.shutdownNow();
+        }
+    }
+
+    // Etapa 1: lee el archivo y separa los campos. Al terminar (o fallar) avisa el fin a cada validador
+    private void leer(BufferedReader lector, char separador, BlockingQueue<List<FilaCsv>> crudas,
+                      Rechazos rechazadas, AtomicLong leidas, AtomicReference<Exception> error) {
+        try {
+            List<FilaCsv> bloque = new ArrayList<>(TAMANIO_BLOQUE);
+            long numero = 1;
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                numero++;
+                if (linea.isBlank()) {
+                    continue;
+                }
+                // Un valor entre comillas puede seguir en las líneas siguientes; la fila conserva el número de la primera
+                long numeroFila = numero;
+                boolean abiertas = comillasAbiertas(linea);
+                String siguiente;
+                while (abiertas && (siguiente = lector.readLine()) != null) {
+                    numero++;
+                    linea = linea + "\n" + siguiente;
+                    abiertas ^= comillasAbiertas(siguiente);
+                }
+                leidas.incrementAndGet();
+                try {
+                    bloque.add(new FilaCsv(numeroFila, linea, separarCampos(linea, separador)));
+                } catch (IllegalArgumentException e) {
+                    rechazadas.agregar(numeroFila, linea, e.getMessage());
+                }
+                if (bloque.size() == TAMANIO_BLOQUE) {
+                    crudas.put(bloque);
+                    bloque = new ArrayList<>(TAMANIO_BLOQUE);
+                }
+            }
+            if (!bloque.isEmpty()) {
+                crudas.put(bloque);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException | RuntimeException e) {
+            error.compareAndSet(null, e);
+        }
+        try {
+            for (int i = 0; i < validadores; i++) {
+                crudas.put(FIN_CRUDAS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Etapa 2: arma y valida las entidades de cada fila con las reglas de los servicios
+    private void validar(Map<String, Integer> columnas, BlockingQueue<List<FilaCsv>> crudas,
+                         BlockingQueue<List<FilaValida>> validas, Rechazos rechazadas, AtomicReference<Exception> error) {
+        try {
+            try {
+                List<FilaCsv> bloque;
+                while ((bloque = crudas.take()) != FIN_CRUDAS) {
+                    List<FilaValida> aceptadas = new ArrayList<>(bloque.size());
+                    for (FilaCsv fila : bloque) {
+                        try {
+                            aceptadas.add(convertir(fila, columnas));
+                        } catch (IllegalArgumentException e) {
+                            rechazadas.agregar(fila.numero, fila.linea, e.getMessage());
+                        }
+                    }
+                    if (!aceptadas.isEmpty()) {
+                        validas.put(aceptadas);
+                    }
+                }
+            } catch (RuntimeException e) {
+                error.compareAndSet(null, e);
+            }
+            // La escritura termina cuando recibe el fin de todos los validadores, incluso de los que fallaron
+            validas.put(FIN_VALIDAS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private FilaValida convertir(FilaCsv fila, Map<String, Integer> columnas) {
+        Mascota mascota = new Mascota();
+        mascota.setNombre(campo(fila, columnas, "nombre"));
+        String especie = campo(fila, columnas, "especie");
+        mascota.setEspecie(especie != null ? especie.toUpperCase(Locale.ROOT) : null);
+        mascota.setRaza(campo(fila, columnas, "raza"));
+        mascota.setFechaNacimiento(fecha(campo(fila, columnas, "fecha_nacimiento"), "Fecha de nacimiento"));
+        mascota.setDuenio(campo(fila, columnas, "duenio"));
+        mascotaService.validarMascota(mascota);
+
+        Microchip microchip = null;
+        String codigo = campo(fila, columnas, "microchip_codigo");
+        if (codigo != null) {
+            microchip = new Microchip();
+            microchip.setCodigo(codigo);
+            microchip.setFechaImplantacion(fecha(campo(fila, columnas, "microchip_fecha_implantacion"), "Fecha de implantación"));
+            microchip.setVeterinaria(campo(fila, columnas, "microchip_veterinaria"));
+            microchip.setObservaciones(campo(fila, columnas, "microchip_observaciones"));
+            microchipService.validarMicrochip(microchip);
+        }
+        return new FilaValida(fila.numero, fila.linea, mascota, microchip);
+    }
+
+    // Etapa 3: junta las filas válidas en lotes de tamanioLote y escribe cada uno en su propia transacción
+    private Escritura escribir(BlockingQueue<List<FilaValida>> validas, Rechazos rechazadas) throws Exception {
+        Escritura escritura = new Escritura();
+        List<FilaValida> lote = new ArrayList<>(tamanioLote);
+        int finalizados = 0;
+
+        while (finalizados < validadores) {
+            List<FilaValida> bloque = validas.take();
+            if (bloque == FIN_VALIDAS) {
+                finalizados++;
+                continue;
+            }
+            lote.addAll(bloque);
+            if (lote.size() >= tamanioLote) {
+                escribirLote(lote, rechazadas, escritura);
+                lote = new ArrayList<>(tamanioLote);
+            }
+        }
+        if (!lote.isEmpty()) {
+            escribirLote(lote, rechazadas, escritura);
+        }
+        return escritura;
+    }
+
+    // Inserta un lote en una transacción. Si la base rechaza el lote por los datos de alguna fila (SQLState de clase 22
+    // o 23, por ejemplo un código que otro proceso creó mientras tanto), lo divide en mitades y reintenta cada una hasta
+    // aislar las filas que fallan solas: solo esas van a rechazos. Ante otros errores se rechaza el lote entero
+    // La división queda fuera de la transacción: cada mitad es un lote nuevo, con sus propios reintentos
+    private void escribirLote(List<FilaValida> lote, Rechazos rechazadas, Escritura escritura) throws Exception {
+        List<String[]> rechazosDelLote = new ArrayList<>();
+        try {
+            Escritura delLote = TX_LOTE.ejecutar(conn -> intentarLote(lote, conn, rechazosDelLote));
+            ModeloLectura.registrarEscritura();
+            escritura.importadas += delLote.importadas;
+            escritura.microchipsCreados += delLote.microchipsCreados;
+        } catch (SQLException e) {
+            rechazosDelLote.clear();
+            if (lote.size() > 1 && esErrorDeDatos(e)) {
+                int mitad = lote.size() / 2;
+                escribirLote(lote.subList(0, mitad), rechazadas, escritura);
+                escribirLote(lote.subList(mitad, lote.size()), rechazadas, escritura);
+                return;
+            }
+            String motivo = lote.size() > 1 ? "Error de base de datos en el lote: " + e.getMessage() : motivoDeFila(e);
+            for (FilaValida fila : lote) {
+                rechazosDelLote.add(new String[]{String.valueOf(fila.numero), fila.linea, motivo});
+            }
+        }
+
+        for (String[] rechazo : rechazosDelLote) {
+            rechazadas.agregar(Long.parseLong(rechazo[0]), rechazo[1], rechazo[2]);
+        }
+    }
+
+    // Trabajo de la transacción del lote (ver TX_LOTE); devuelve lo que escribió. Si la transacción se repite, los
+    // rechazos del intento anterior se descartan. Los códigos se comparan por su clave (ver MicrochipDao.claveCodigo)
+    // porque la colación de codigo ignora mayúsculas y acentos
+    private Escritura intentarLote(List<FilaValida> lote, Connection conn, List<String[]> rechazosDelLote) throws SQLException {
+        rechazosDelLote.clear();
+
+        // Resolver los códigos: los existentes por ID, los eliminados se rechazan y los nuevos se crean
+        Map<String, String> codigos = new HashMap<>();
+        for (FilaValida fila : lote) {
+            if (fila.microchip != null) {
+                codigos.putIfAbsent(MicrochipDao.claveCodigo(fila.microchip.getCodigo()), fila.microchip.getCodigo());
+            }
+        }
+        Map<String, Long> ids = new HashMap<>();
+        if (!codigos.isEmpty()) {
+            microchipDao.leerIdsPorCodigos(codigos.values(), conn)
+                    .forEach((codigo, id) -> ids.put(MicrochipDao.claveCodigo(codigo), id));
+        }
+        List<String> faltantes = new ArrayList<>();
+        codigos.forEach((clave, codigo) -> {
+            if (!ids.containsKey(clave)) {
+                faltantes.add(codigo);
+            }
+        });
+        Set<String> eliminados = new HashSet<>();
+        if (!faltantes.isEmpty()) {
+            for (String codigo : microchipDao.leerCodigosEliminados(faltantes, conn)) {
+                eliminados.add(MicrochipDao.claveCodigo(codigo));
+            }
+        }
+        Set<Long> existentes = new HashSet<>(ids.values());
+
+        Map<String, Microchip> nuevosPorCodigo = new LinkedHashMap<>();
+        for (FilaValida fila : lote) {
+            if (fila.microchip != null) {
+                String clave = MicrochipDao.claveCodigo(fila.microchip.getCodigo());
+                if (!ids.containsKey(clave) && !eliminados.contains(clave)) {
+                    nuevosPorCodigo.putIfAbsent(clave, fila.microchip);
+                }
+            }
+        }
+        if (!nuevosPorCodigo.isEmpty()) {
+            List<Microchip> nuevos = new ArrayList<>(nuevosPorCodigo.values());
+            MicrochipService.registrarCodigos(nuevos.stream().map(Microchip::getCodigo).toList());
+            for (Microchip creado : microchipDao.crearLote(nuevos, tamanioLote, conn)) {
+                ids.put(MicrochipDao.claveCodigo(creado.getCodigo()), creado.getId());
+            }
+        }
+
+        // Un microchip solo puede quedar asignado a una mascota, contando las de este mismo lote
+        Set<Long> asignados = existentes.isEmpty() ? new HashSet<>() : mascotaDao.leerMicrochipsAsignados(existentes, conn);
+        List<Mascota> aInsertar = new ArrayList<>(lote.size());
+        for (FilaValida fila : lote) {
+            if (fila.microchip != null) {
+                String codigo = fila.microchip.getCodigo();
+                String clave = MicrochipDao.claveCodigo(codigo);
+                if (eliminados.contains(clave)) {
+                    rechazosDelLote.add(new String[]{String.valueOf(fila.numero), fila.linea,
+                            "El código de microchip pertenece a un microchip eliminado: " + codigo});
+                    continue;
+                }
+                Long microchipId = ids.get(clave);
+                if (!asignados.add(microchipId)) {
+                    rechazosDelLote.add(new String[]{String.valueOf(fila.numero), fila.linea,
+                            "El microchip ya está asignado a otra mascota: " + codigo});
+                    continue;
+                }
+                Microchip asignado = new Microchip();
+                asignado.setId(microchipId);
+                fila.mascota.setMicrochip(asignado);
+            }
+            aInsertar.add(fila.mascota);
+        }
+
+        mascotaDao.crearLote(aInsertar, tamanioLote, conn);
+
+        // Los mismos eventos que registrarían MicrochipService y MascotaService, en la transacción del lote
+        List<EventoOutbox> eventos = new ArrayList<>(nuevosPorCodigo.size() + aInsertar.size());
+        for (Microchip creado : nuevosPorCodigo.values()) {
+            eventos.add(Eventos.de(Operacion.INSERTAR, creado));
+        }
+        for (Mascota mascota : aInsertar) {
+            eventos.add(Eventos.de(Operacion.INSERTAR, mascota));
+        }
+        outboxDao.registrarLote(eventos, conn);
+
+        Escritura delLote = new Escritura();
+        delLote.importadas = aInsertar.size();
+        delLote.microchipsCreados = nuevosPorCodigo.size();
+        return delLote;
+    }
+
+    // Clase 22: dato inválido (por ejemplo, demasiado largo); clase 23: violación de una restricción (UNIQUE, FK)
+    private static boolean esErrorDeDatos(SQLException e) {
+        String estado = e.getSQLState();
+        return estado != null && (estado.startsWith("22") || estado.startsWith("23"));
+    }
+
+    // Motivo para una fila que la base rechazó sola; el código repetido se informa igual que en MicrochipService
+    private static String motivoDeFila(SQLException e) {
+        if (e instanceof SQLIntegrityConstraintViolationException violacion && String.valueOf(e.getMessage()).contains("codigo")) {
+            return MicrochipService.violacionCodigo(violacion, null).getMessage();
+        }
+        return "Error de base de datos: " + e.getMessage();
+    }
+
+    private Map<String, Integer> leerEncabezado(String encabezado, char separador) {
+        String[] nombres = separarCampos(encabezado.replace("\uFEFF", ""), separador);
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < nombres.length; i++) {
+            columnas.put(nombres[i].trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String obligatoria : COLUMNAS_OBLIGATORIAS) {
+            if (!columnas.containsKey(obligatoria)) {
+                throw new IllegalArgumentException("Falta la columna obligatoria '" + obligatoria + "' en el encabezado");
+            }
+        }
+        return columnas;
+    }
+
+    // Valor recortado de la columna, o null si la columna no existe o está vacía
+    private static String campo(FilaCsv fila, Map<String, Integer> columnas, String nombre) {
+        Integer indice = columnas.get(nombre);
+        if (indice == null || indice >= fila.campos.length) {
+            return null;
+        }
+        String valor = fila.campos[indice].trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private static LocalDate fecha(String valor, String descripcion) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(descripcion + " inválida (se espera yyyy-mm-dd): " + valor);
+        }
+    }
+
+    // true si la línea deja abiertas unas comillas: cada comilla abre o cierra, y "" dentro de comillas suma dos
+    static boolean comillasAbiertas(String linea) {
+        boolean abiertas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            if (linea.charAt(i) == '"') {
+                abiertas = !abiertas;
+            }
+        }
+        return abiertas;
+    }
+
+    // Separa una línea CSV respetando los valores entre comillas dobles ("" dentro de comillas es una comilla)
+    static String[] separarCampos(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        actual.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        campos.add(actual.toString());
+        return campos.toArray(new String[0]);
+    }
+
+    private static final class FilaCsv {
+        private final long numero;
+        private final String linea;
+        private final String[] campos;
+
+        FilaCsv(long numero, String linea, String[] campos) {
+            this.numero = numero;
+            this.linea = linea;
+            this.campos = campos;
+        }
+    }
+
+    private static final class FilaValida {
+        private final long numero;
+        private final String linea;
+        private final Mascota mascota;
+        private final Microchip microchip;
+
+        FilaValida(long numero, String linea, Mascota mascota, Microchip microchip) {
+            this.numero = numero;
+            this.linea = linea;
+            this.mascota = mascota;
+            this.microchip = microchip;
+        }
+    }
+
+    // Totales de la etapa de escritura (solo la usa el hilo que escribe)
+    private static final class Escritura {
+        private long importadas = 0;
+        private long microchipsCreados = 0;
+    }
+
+    // Archivo de rechazos en formato CSV (linea,motivo,registro); lo comparten todas las etapas
+    private static final class Rechazos implements AutoCloseable {
+        private final BufferedWriter salida;
+        private long cantidad = 0;
+
+        Rechazos(Path archivo) throws IOException {
+            this.salida = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8);
+            salida.write("linea,motivo,registro");
+            salida.newLine();
+        }
+
+        synchronized void agregar(long numero, String linea, String motivo) {
+            try {
+                salida.write(numero + "," + escapar(motivo) + "," + escapar(linea));
+                salida.newLine();
+                cantidad++;
+            } catch (IOException e) {
+                throw new RuntimeException("No se pudo escribir el archivo de rechazos: " + e.getMessage(), e);
+            }
+        }
+
+        synchronized long getCantidad() {
+            return cantidad;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            salida.close();
+        }
+
+        private static String escapar(String valor) {
+            String texto = valor == null ? "" : valor;
+            return "\"" + texto.replace("\"", "\"\"") + "\"";
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package service;
+
+import dao.MicrochipDao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+Índice en memoria de todos los códigos de microchip, basado en un FiltroBloom.
+Permite que MicrochipService se salte el SELECT de unicidad cuando el código seguro no existe;
+si el filtro dice que puede existir, se consulta la base como antes. La restricción UNIQUE
+de la tabla sigue siendo la garantía final (por ejemplo, ante inserciones de otro proceso).
+Los códigos se agregan antes de escribir y nunca se quitan: un código borrado o de una
+transacción revertida solo puede producir un falso positivo, nunca un falso negativo.
+Se guarda la clave de cada código (MicrochipDao.claveCodigo), no el código tal cual: la colación de la
+columna ignora mayúsculas y acentos, y "ABC" debe encontrar el "abc" ya cargado.
+ */
+
+public class IndiceCodigos {
+
+    private static final double TASA_OBJETIVO = 0.01;
+    private static final long CAPACIDAD_MINIMA = 10_000;
+
+    private final MicrochipDao microchipDao = new MicrochipDao();
+
+    // null hasta la primera construcción: mientras tanto se consulta siempre la base
+    private volatile FiltroBloom filtro;
+    // Filtro que se está cargando; recibe también los códigos agregados durante la carga
+    private volatile FiltroBloom enConstruccion;
+    // Protege el par filtro/enConstruccion: un código agregado mientras se cambia de filtro llega al que queda
+    private final Object cambioDeFiltro = new Object();
+
+    private final AtomicLong consultasEvitadas = new AtomicLong();
+    private final AtomicLong consultasRealizadas = new AtomicLong();
+    private final AtomicLong falsosPositivos = new AtomicLong();
+    private volatile long ultimaReconstruccionMs = -1;
+    private volatile long reconstrucciones = 0;
+
+    // false solo si el código seguro no existe y puede omitirse la consulta
+    boolean puedeExistir(String codigo) {
+        FiltroBloom actual = filtro;
+        if (actual != null && !actual.puedeContener(MicrochipDao.claveCodigo(codigo))) {
+            consultasEvitadas.incrementAndGet();
+            return false;
+        }
+        consultasRealizadas.incrementAndGet();
+        return true;
+    }
+
+    // Registra lo que devolvió la consulta hecha tras un "puede existir", para medir los falsos positivos reales
+    void registrarConsulta(boolean existia) {
+        if (!existia && filtro != null) {
+            falsosPositivos.incrementAndGet();
+        }
+    }
+
+    void agregar(String codigo) {
+        String clave = MicrochipDao.claveCodigo(codigo);
+        synchronized (cambioDeFiltro) {
+            if (filtro != null) {
+                filtro.agregar(clave);
+            }
+            if (enConstruccion != null) {
+                enConstruccion.agregar(clave);
+            }
+        }
+    }
+
+    // Hay que reconstruir si nunca se cargó o si superó la capacidad para la que se dimensionó
+    boolean necesitaReconstruir() {
+        FiltroBloom actual = filtro;
+        return actual == null || actual.getAgregados() > actual.getCapacidad();
+    }
+
+    // Carga todos los códigos existentes (incluidos los eliminados, que también ocupan el UNIQUE)
+    synchronized void reconstruir(Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        long cantidad = microchipDao.contarTodos(conn);
+        FiltroBloom nuevo = new FiltroBloom(Math.max(CAPACIDAD_MINIMA, cantidad * 2), TASA_OBJETIVO);
+        synchronized (cambioDeFiltro) {
+            enConstruccion = nuevo;
+        }
+        try (Stream<String> codigos = microchipDao.leerCodigosStream(conn)) {
+            codigos.forEach(codigo -> nuevo.agregar(MicrochipDao.claveCodigo(codigo)));
+        } catch (SQLException | RuntimeException e) {
+            synchronized (cambioDeFiltro) {
+                enConstruccion = null;
+            }
+            throw e;
+        }
+        // El nuevo filtro se publica en el mismo paso en que deja de recibir agregados: así ningún código queda solo en el viejo
+        synchronized (cambioDeFiltro) {
+            filtro = nuevo;
+            enConstruccion = null;
+        }
+        reconstrucciones++;
+        ultimaReconstruccionMs = (System.nanoTime() - inicio) / 1_000_000;
+    }
+
+    public boolean isConstruido() { return filtro != null; }
+    public long getConsultasEvitadas() { return consultasEvitadas.get(); }
+    public long getConsultasRealizadas() { return consultasRealizadas.get(); }
+    public long getFalsosPositivos() { return falsosPositivos.get(); }
+    public long getReconstrucciones() { return reconstrucciones; }
+    public long getUltimaReconstruccionMs() { return ultimaReconstruccionMs; }
+
+    public double getTasaFalsosPositivosEstimada() {
+        FiltroBloom actual = filtro;
+        return actual == null ? 0 : actual.getTasaFalsosPositivosEstimada();
+    }
+
+    // Falsos positivos observados sobre las consultas que el filtro no pudo evitar
+    public double getTasaFalsosPositivosObservada() {
+        long realizadas = consultasRealizadas.get();
+        return realizadas == 0 ? 0 : (double) falsosPositivos.get() / realizadas;
+    }
+
+    @Override
+    public String toString() {
+        FiltroBloom actual = filtro;
+        return "IndiceCodigos{" +
+                "construido=" + (actual != null) +
+                ", codigos=" + (actual != null ? actual.getAgregados() : 0) +
+                ", capacidad=" + (actual != null ? actual.getCapacidad() : 0) +
+                ", consultasEvitadas=" + consultasEvitadas.get() +
+                ", consultasRealizadas=" + consultasRealizadas.get() +
+                ", falsosPositivos=" + falsosPositivos.get() +
+                ", fpEstimada=" + String.format("%.4f", getTasaFalsosPositivosEstimada()) +
+                ", fpObservada=" + String.format("%.4f", getTasaFalsosPositivosObservada()) +
+                ", reconstrucciones=" + reconstrucciones +
+                ", ultimaReconstruccionMs=" + ultimaReconstruccionMs +
+                '}';
+    }
+}
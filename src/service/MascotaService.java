@@ -4,15 +4,39 @@
  */
 package service;
 
+import dao.ConflictoVersionException;
 import dao.MascotaDao;
 import dao.MicrochipDao;
+import dao.OutboxDao;
+import models.EventoOutbox;
+import models.EventoOutbox.Operacion;
 import models.Mascota;
 import models.Microchip;
 import config.DatabaseConnection;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import dao.CursorStream;
+import dao.LecturaPorIds;
+import dao.Pagina;
+import dao.PlanCarga;
+import dao.RankingDuenio;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /*
  Servicio que maneja la lógica de negocio para las operaciones con mascotas.
@@ -22,32 +46,119 @@ import java.util.List;
 
 public class MascotaService implements GenericService<Mascota> {
     
+    // Caché compartida por todas las instancias del servicio; se configura con -Dcache.maximo y -Dcache.ttlMs
+    // Las mascotas devueltas desde la caché son compartidas: no deben modificarse fuera de actualizar()
+    private static final CacheLRU<Long, Mascota> CACHE_POR_ID = new CacheLRU<>(
+            Integer.getInteger("cache.maximo", 10_000), Long.getLong("cache.ttlMs", 60_000L));
+    
+    // Rankings de la búsqueda paginada por dueño (ver rankingPorDuenio); cada uno guarda hasta LIMITE_RANKING_DUENIO
+    // resultados, y los que exceden ese límite solo se obtienen con buscarPorDuenio sin paginar
+    private static final int LIMITE_RANKING_DUENIO = Integer.getInteger("busqueda.duenio.limite", 10_000);
+    private static final CacheLRU<String, RankingDuenio> CACHE_RANKING_DUENIO = new CacheLRU<>(
+            Integer.getInteger("busqueda.duenio.cacheMaximo", 100), Long.getLong("busqueda.duenio.ttlMs", 30_000L));
+    
+    // Métricas por método (ver metrics.Metricas); incluyen la espera de conexión y la transacción, no la validación de los parámetros
+    private static final MetricaOperacion METRICA_INSERTAR = Metricas.operacion("servicio", "MascotaService.insertar");
+    private static final MetricaOperacion METRICA_INSERTAR_LOTE = Metricas.operacion("servicio", "MascotaService.insertarLote");
+    private static final MetricaOperacion METRICA_ACTUALIZAR = Metricas.operacion("servicio", "MascotaService.actualizar");
+    private static final MetricaOperacion METRICA_ELIMINAR = Metricas.operacion("servicio", "MascotaService.eliminar");
+    private static final MetricaOperacion METRICA_GET_BY_ID = Metricas.operacion("servicio", "MascotaService.getById");
+    private static final MetricaOperacion METRICA_GET_BY_IDS = Metricas.operacion("servicio", "MascotaService.getByIds");
+    private static final MetricaOperacion METRICA_GET_ALL = Metricas.operacion("servicio", "MascotaService.getAll");
+    private static final MetricaOperacion METRICA_GET_PAGINA = Metricas.operacion("servicio", "MascotaService.getPagina");
+    private static final MetricaOperacion METRICA_CARGAR_MICROCHIPS = Metricas.operacion("servicio", "MascotaService.cargarMicrochips");
+    private static final MetricaOperacion METRICA_GET_ALL_STREAM = Metricas.operacion("servicio", "MascotaService.getAllStream");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_DUENIO = Metricas.operacion("servicio", "MascotaService.buscarPorDuenio");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_DUENIO_PAGINA = Metricas.operacion("servicio", "MascotaService.buscarPorDuenioPagina");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_ESPECIE = Metricas.operacion("servicio", "MascotaService.buscarPorEspecie");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_ESPECIE_PAGINA = Metricas.operacion("servicio", "MascotaService.buscarPorEspeciePagina");
+    private static final MetricaOperacion METRICA_ASIGNAR_MICROCHIP = Metricas.operacion("servicio", "MascotaService.asignarMicrochip");
+    private static final MetricaOperacion METRICA_QUITAR_MICROCHIP = Metricas.operacion("servicio", "MascotaService.quitarMicrochip");
+    private static final MetricaOperacion METRICA_ASIGNAR_MICROCHIPS_LOTE = Metricas.operacion("servicio", "MascotaService.asignarMicrochipsLote");
+    
+    // Transacciones de escritura; se repiten ante deadlocks y esperas de bloqueo vencidas (ver EjecutorTransacciones)
+    private static final EjecutorTransacciones TX_INSERTAR = new EjecutorTransacciones("MascotaService.insertar");
+    private static final EjecutorTransacciones TX_INSERTAR_LOTE = new EjecutorTransacciones("MascotaService.insertarLote");
+    private static final EjecutorTransacciones TX_ACTUALIZAR = new EjecutorTransacciones("MascotaService.actualizar");
+    private static final EjecutorTransacciones TX_ELIMINAR = new EjecutorTransacciones("MascotaService.eliminar");
+    private static final EjecutorTransacciones TX_ASIGNAR_MICROCHIP = new EjecutorTransacciones("MascotaService.asignarMicrochip");
+    private static final EjecutorTransacciones TX_QUITAR_MICROCHIP = new EjecutorTransacciones("MascotaService.quitarMicrochip");
+    private static final EjecutorTransacciones TX_ASIGNAR_MICROCHIPS_LOTE = new EjecutorTransacciones("MascotaService.asignarMicrochipsLote");
+    // Lecturas que pueden hacer más de una sentencia (el ranking por dueño cuando no está guardado y su página, o los
+    // tramos de cargarMicrochips), en transacciones de solo lectura que pueden ir a una réplica. Las de una sola
+    // sentencia usan getConnectionLectura con autocommit, sin las idas extra de abrir y confirmar la transacción
+    private static final EjecutorTransacciones TX_CARGAR_MICROCHIPS = new EjecutorTransacciones("MascotaService.cargarMicrochips").soloLectura();
+    private static final EjecutorTransacciones TX_BUSCAR_POR_DUENIO_PAGINA = new EjecutorTransacciones("MascotaService.buscarPorDuenioPagina").soloLectura();
+    
+    // Código de error de MySQL para una clave UNIQUE duplicada
+    private static final int ER_DUP_ENTRY = 1062;
+    
     private final MascotaDao mascotaDao = new MascotaDao();
     private final MicrochipDao microchipDao = new MicrochipDao();
+    private final OutboxDao outboxDao = new OutboxDao();
     
     @Override
     public Mascota insertar(Mascota mascota) throws Exception {
         validarMascota(mascota);
+        Long microchipId = mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null;
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Si tiene microchip, verificar que existe y no está asignado a otra mascota
-                if (mascota.getMicrochip() != null && mascota.getMicrochip().getId() != null) {
-                    validarMicrochipParaAsignacion(mascota.getMicrochip().getId(), conn);
+        // Un único INSERT condicional: solo se inserta si el microchip (cuando hay) existe y está activo
+        // El evento del outbox va en la misma transacción
+        try {
+            METRICA_INSERTAR.medir(() -> TX_INSERTAR.ejecutar(conn -> {
+                if (!mascotaDao.crearCondicional(mascota, conn)) {
+                    throw rechazoEscritura(null, null, microchipId, conn);
                 }
-                
-                Mascota resultado = mascotaDao.crear(mascota, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
+                outboxDao.registrar(Eventos.de(Operacion.INSERTAR, mascota), conn);
+                return mascota;
+            }), creada -> 1);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw traducirViolacion(e);
+        }
+        ModeloLectura.registrarEscritura();
+        return mascota;
+    }
+    
+    @Override
+    public List<Mascota> insertarLote(List<Mascota> mascotas) throws Exception {
+        return insertarLote(mascotas, MascotaDao.TAMANIO_LOTE_DEFECTO);
+    }
+    
+    // Inserta todas las mascotas en una sola transacción, enviándolas en lotes de tamanioLote filas
+    // Todo el lote se valida antes de escribir el primer tramo: si una mascota es inválida no se inserta ninguna
+    public List<Mascota> insertarLote(List<Mascota> mascotas, int tamanioLote) throws Exception {
+        if (mascotas == null) {
+            throw new IllegalArgumentException("La lista de mascotas no puede ser nula");
+        }
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero");
+        }
+        
+        Set<Long> microchipsDelLote = new HashSet<>();
+        for (Mascota mascota : mascotas) {
+            validarMascota(mascota);
+            if (mascota.getMicrochip() != null && mascota.getMicrochip().getId() != null
+                    && !microchipsDelLote.add(mascota.getMicrochip().getId())) {
+                throw new IllegalArgumentException("El microchip " + mascota.getMicrochip().getId() + " está repetido en el lote");
             }
         }
+        if (mascotas.isEmpty()) {
+            return mascotas;
+        }
+        
+        List<Mascota> resultado = METRICA_INSERTAR_LOTE.medir(() -> TX_INSERTAR_LOTE.ejecutar(conn -> {
+            validarMicrochipsDelLote(microchipsDelLote, conn);
+            
+            List<Mascota> creadas = mascotaDao.crearLote(mascotas, tamanioLote, conn);
+            List<EventoOutbox> eventos = new ArrayList<>(creadas.size());
+            for (Mascota mascota : creadas) {
+                eventos.add(Eventos.de(Operacion.INSERTAR, mascota));
+            }
+            outboxDao.registrarLote(eventos, conn);
+            return creadas;
+        }), List::size);
+        ModeloLectura.registrarEscritura();
+        return resultado;
     }
     
     @Override
@@ -57,34 +168,32 @@ public class MascotaService implements GenericService<Mascota> {
         if (mascota.getId() == null) {
             throw new IllegalArgumentException("ID de la mascota es requerido para actualizar");
         }
+        if (mascota.getVersion() == null) {
+            throw new IllegalArgumentException("Versión de la mascota es requerida para actualizar");
+        }
+        Integer versionLeida = mascota.getVersion();
+        Long microchipId = mascota.getMicrochip() != null ? mascota.getMicrochip().getId() : null;
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Verificar que la mascota existe
-                Mascota existente = mascotaDao.leer(mascota.getId(), conn);
-                if (existente == null) {
-                    throw new IllegalArgumentException("Mascota no encontrada con ID: " + mascota.getId());
-                }
-                
-                // Si está cambiando el microchip, validar la nueva asignación
-                if (mascota.getMicrochip() != null && mascota.getMicrochip().getId() != null) {
-                    Long nuevoMicrochipId = mascota.getMicrochip().getId();
-                    if (existente.getMicrochip() == null || !nuevoMicrochipId.equals(existente.getMicrochip().getId())) {
-                        validarMicrochipParaAsignacion(nuevoMicrochipId, conn);
-                    }
+        // Un único UPDATE condicional que comprueba que la mascota siga activa y en la versión leída, y que el
+        // microchip nuevo exista; solo si no afecta filas se consulta el motivo para devolver el error correspondiente
+        // Cada intento parte de la versión leída: un intento deshecho pudo haberla incrementado
+        try {
+            return METRICA_ACTUALIZAR.medir(() -> TX_ACTUALIZAR.ejecutar(conn -> {
+                mascota.setVersion(versionLeida);
+                if (!mascotaDao.actualizarCondicional(mascota, conn)) {
+                    throw rechazoEscritura(mascota.getId(), versionLeida, microchipId, conn);
                 }
-                
-                Mascota resultado = mascotaDao.actualizar(mascota, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (IllegalArgumentException | SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-            }
+                outboxDao.registrar(Eventos.de(Operacion.ACTUALIZAR, mascota), conn);
+                return mascota;
+            }), actualizada -> 1);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            mascota.setVersion(versionLeida);
+            throw traducirViolacion(e);
+        } catch (Exception e) {
+            mascota.setVersion(versionLeida);
+            throw e;
+        } finally {
+            invalidar(mascota.getId());
         }
     }
     
@@ -94,25 +203,17 @@ public class MascotaService implements GenericService<Mascota> {
             throw new IllegalArgumentException("ID de la mascota es requerido");
         }
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Verificar que la mascota existe
-                Mascota existente = mascotaDao.leer(id, conn);
-                if (existente == null) {
+        // El UPDATE solo afecta a mascotas activas: si no afecta filas, la mascota no existe o ya estaba eliminada
+        try {
+            return METRICA_ELIMINAR.medir(() -> TX_ELIMINAR.ejecutar(conn -> {
+                if (!mascotaDao.eliminar(id, conn)) {
                     throw new IllegalArgumentException("Mascota no encontrada con ID: " + id);
                 }
-                
-                boolean resultado = mascotaDao.eliminar(id, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (IllegalArgumentException | SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-            }
+                outboxDao.registrar(Eventos.eliminacion(Eventos.MASCOTA, id), conn);
+                return true;
+            }), eliminada -> 1);
+        } finally {
+            invalidar(id);
         }
     }
     
@@ -121,30 +222,200 @@ public class MascotaService implements GenericService<Mascota> {
         if (id == null) {
             throw new IllegalArgumentException("ID de la mascota es requerido");
         }
+        return METRICA_GET_BY_ID.medir(() -> leerPorId(id), mascota -> mascota != null ? 1 : 0);
+    }
+    
+    private Mascota leerPorId(Long id) throws SQLException {
+        ModeloLectura modelo = ModeloLectura.paraLeer();
+        if (modelo != null) {
+            return modelo.mascota(id);
+        }
+        
+        Mascota enCache = CACHE_POR_ID.obtener(id);
+        if (enCache != null) {
+            return enCache;
+        }
         
+        long marca = CACHE_POR_ID.marca();
         try (Connection conn = DatabaseConnection.getConnection()) {
-            return mascotaDao.leer(id, conn);
+            Mascota mascota = mascotaDao.leer(id, conn);
+            CACHE_POR_ID.guardar(id, mascota, marca);
+            return mascota;
+        }
+    }
+    
+    // Primero busca cada ID en el modelo de lectura o en la caché; los que faltan se leen juntos con una sola conexión
+    @Override
+    public LecturaPorIds<Mascota> getByIds(Collection<Long> ids) throws Exception {
+        LecturaPorIds.validarIds(ids);
+        return METRICA_GET_BY_IDS.medir(() -> leerPorIds(ids), resultado -> resultado.getElementos().size());
+    }
+    
+    private LecturaPorIds<Mascota> leerPorIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Mascota> encontrados = new HashMap<>();
+        
+        ModeloLectura modelo = ModeloLectura.paraLeer();
+        List<Long> pendientes = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Mascota encontrado = modelo != null ? modelo.mascota(id) : CACHE_POR_ID.obtener(id);
+            if (encontrado != null) {
+                encontrados.put(id, encontrado);
+            } else if (modelo == null) {
+                pendientes.add(id);
+            }
         }
+        
+        if (!pendientes.isEmpty()) {
+            long marca = CACHE_POR_ID.marca();
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                for (Mascota leido : mascotaDao.leerPorIds(pendientes, conn).getElementos()) {
+                    encontrados.put(leido.getId(), leido);
+                    CACHE_POR_ID.guardar(leido.getId(), leido, marca);
+                }
+            }
+        }
+        return LecturaPorIds.ordenar(ids, encontrados);
     }
     
     @Override
     public List<Mascota> getAll() throws Exception {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            return mascotaDao.leerTodos(conn);
+        return getAll(PlanCarga.JOIN);
+    }
+    
+    // Las lecturas de listas con PlanCarga traen el microchip según el plan (ver dao.PlanCarga); sin plan usan JOIN
+    public List<Mascota> getAll(PlanCarga plan) throws Exception {
+        validarPlan(plan);
+        return METRICA_GET_ALL.medir(() -> {
+            try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+                return mascotaDao.leerTodos(plan, conn);
+            }
+        }, List::size);
+    }
+    
+    // Completa los microchips de una lista leída con PlanCarga.SIN_MICROCHIP cuando hacen falta, con una consulta
+    // IN (...) para toda la lista; si el microchip está eliminado queda null, igual que con el JOIN
+    // Devuelve la misma lista
+    public List<Mascota> cargarMicrochips(List<Mascota> mascotas) throws Exception {
+        if (mascotas == null) {
+            throw new IllegalArgumentException("La lista de mascotas es requerida");
         }
+        return METRICA_CARGAR_MICROCHIPS.medir(() -> TX_CARGAR_MICROCHIPS.ejecutar(conn -> {
+            mascotaDao.completarMicrochips(mascotas, conn);
+            return mascotas;
+        }), List::size);
+    }
+    
+    // Devuelve la página que sigue al token recibido (null para la primera página)
+    @Override
+    public Pagina<Mascota> getPagina(String token, int tamanio) throws Exception {
+        return getPagina(token, tamanio, PlanCarga.JOIN);
+    }
+    
+    public Pagina<Mascota> getPagina(String token, int tamanio, PlanCarga plan) throws Exception {
+        validarTamanioPagina(tamanio);
+        validarPlan(plan);
+        Long despuesDeId = Pagina.idDesdeToken(token);
+        
+        return METRICA_GET_PAGINA.medir(() -> {
+            try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+                return mascotaDao.leerPagina(despuesDeId, tamanio, plan, conn);
+            }
+        }, pagina -> pagina.getElementos().size());
+    }
+    
+    // Devuelve un Stream que lee con cursor del servidor; la conexión queda tomada hasta cerrar el Stream, por eso no
+    // usa EjecutorTransacciones, que devuelve la conexión al terminar el trabajo. Acá solo se mide la apertura; las filas y el tiempo de lectura los registra el DAO al cerrar el Stream
+    @Override
+    public Stream<Mascota> getAllStream() throws Exception {
+        return METRICA_GET_ALL_STREAM.medir(() -> {
+            Connection conn = DatabaseConnection.getConnectionLectura();
+            try {
+                return CursorStream.cerrandoAlFinal(mascotaDao.leerTodosStream(conn), conn);
+            } catch (SQLException | RuntimeException e) {
+                conn.close();
+                throw e;
+            }
+        }, stream -> 0);
     }
     
     public List<Mascota> buscarPorDuenio(String duenio) throws Exception {
+        return buscarPorDuenio(duenio, PlanCarga.JOIN);
+    }
+    
+    public List<Mascota> buscarPorDuenio(String duenio, PlanCarga plan) throws Exception {
         if (duenio == null || duenio.trim().isEmpty()) {
             throw new IllegalArgumentException("Nombre del dueño es requerido para la búsqueda");
         }
+        validarPlan(plan);
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            return mascotaDao.buscarPorDuenio(duenio, conn);
+        return METRICA_BUSCAR_POR_DUENIO.medir(() -> {
+            try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+                return mascotaDao.buscarPorDuenio(duenio, plan, conn);
+            }
+        }, List::size);
+    }
+    
+    // Búsqueda por dueño paginada: primero nombre exacto, luego prefijo, luego palabra que empieza con el texto y por último subcadena
+    // Ignora mayúsculas y acentos; el token de continuación tiene la forma "rango:id"
+    public Pagina<Mascota> buscarPorDuenio(String duenio, String token, int tamanio) throws Exception {
+        return buscarPorDuenio(duenio, token, tamanio, PlanCarga.JOIN);
+    }
+    
+    public Pagina<Mascota> buscarPorDuenio(String duenio, String token, int tamanio, PlanCarga plan) throws Exception {
+        if (duenio == null || duenio.trim().isEmpty()) {
+            throw new IllegalArgumentException("Nombre del dueño es requerido para la búsqueda");
+        }
+        validarTamanioPagina(tamanio);
+        validarPlan(plan);
+        
+        int despuesDeRango = -1;
+        Long despuesDeId = 0L;
+        if (token != null && !token.isBlank()) {
+            String[] partes = token.trim().split(":");
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("Token de continuación inválido: " + token);
+            }
+            try {
+                despuesDeRango = Integer.parseInt(partes[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Token de continuación inválido: " + token);
+            }
+            despuesDeId = Pagina.idDesdeToken(partes[1]);
+        }
+        int rangoToken = despuesDeRango;
+        long idToken = despuesDeId;
+        
+        return METRICA_BUSCAR_POR_DUENIO_PAGINA.medir(() -> TX_BUSCAR_POR_DUENIO_PAGINA.ejecutar(conn -> {
+            RankingDuenio ranking = rankingPorDuenio(duenio, conn);
+            int desde = ranking.posicionDespuesDe(rangoToken, idToken);
+            int hasta = Math.min(desde + tamanio, ranking.getCantidad());
+            List<Mascota> elementos = desde < hasta
+                    ? mascotaDao.leerPorIds(ranking.getIds(desde, hasta), plan, conn).getElementos() : new ArrayList<>();
+            String siguiente = hasta < ranking.getCantidad() ? ranking.getRango(hasta - 1) + ":" + ranking.getId(hasta - 1) : null;
+            return new Pagina<>(elementos, siguiente);
+        }), pagina -> pagina.getElementos().size());
+    }
+    
+    // El ranking de una búsqueda se ordena una sola vez y se guarda unos segundos: las páginas siguientes solo leen
+    // por ID. Una mascota eliminada después de armarlo falta en su página, y las altas o cambios de dueño aparecen al
+    // vencer el ranking guardado. La caché es por texto sin mayúsculas, igual que la collation de duenio
+    private RankingDuenio rankingPorDuenio(String duenio, Connection conn) throws SQLException {
+        String clave = duenio.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        RankingDuenio ranking = CACHE_RANKING_DUENIO.obtener(clave);
+        if (ranking == null) {
+            long marca = CACHE_RANKING_DUENIO.marca();
+            ranking = mascotaDao.leerRankingPorDuenio(duenio, LIMITE_RANKING_DUENIO, conn);
+            CACHE_RANKING_DUENIO.guardar(clave, ranking, marca);
         }
+        return ranking;
     }
     
     public List<Mascota> buscarPorEspecie(String especie) throws Exception {
+        return buscarPorEspecie(especie, PlanCarga.JOIN);
+    }
+    
+    // Con el modelo de lectura activo las mascotas ya vienen completas de memoria y el plan no se usa
+    public List<Mascota> buscarPorEspecie(String especie, PlanCarga plan) throws Exception {
         if (especie == null || especie.trim().isEmpty()) {
             throw new IllegalArgumentException("Especie es requerida para la búsqueda");
         }
@@ -152,10 +423,42 @@ public class MascotaService implements GenericService<Mascota> {
         if (!especieValida(especie)) {
             throw new IllegalArgumentException("Especie no válida. Valores permitidos: PERRO, GATO, AVE, PEZ, REPTIL, OTRO");
         }
+        validarPlan(plan);
+        return METRICA_BUSCAR_POR_ESPECIE.medir(() -> leerPorEspecie(especie, plan), List::size);
+    }
+    
+    private List<Mascota> leerPorEspecie(String especie, PlanCarga plan) throws Exception {
+        ModeloLectura modelo = ModeloLectura.paraLeer();
+        if (modelo != null) {
+            return modelo.mascotasPorEspecie(especie);
+        }
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            return mascotaDao.buscarPorEspecie(especie, conn);
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return mascotaDao.buscarPorEspecie(especie, plan, conn);
+        }
+    }
+    
+    public Pagina<Mascota> buscarPorEspecie(String especie, String token, int tamanio) throws Exception {
+        return buscarPorEspecie(especie, token, tamanio, PlanCarga.JOIN);
+    }
+    
+    public Pagina<Mascota> buscarPorEspecie(String especie, String token, int tamanio, PlanCarga plan) throws Exception {
+        if (especie == null || especie.trim().isEmpty()) {
+            throw new IllegalArgumentException("Especie es requerida para la búsqueda");
         }
+        
+        if (!especieValida(especie)) {
+            throw new IllegalArgumentException("Especie no válida. Valores permitidos: PERRO, GATO, AVE, PEZ, REPTIL, OTRO");
+        }
+        validarTamanioPagina(tamanio);
+        validarPlan(plan);
+        Long despuesDeId = Pagina.idDesdeToken(token);
+        
+        return METRICA_BUSCAR_POR_ESPECIE_PAGINA.medir(() -> {
+            try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+                return mascotaDao.buscarPorEspeciePagina(especie, despuesDeId, tamanio, plan, conn);
+            }
+        }, pagina -> pagina.getElementos().size());
     }
     
     public Mascota asignarMicrochip(Long mascotaId, Long microchipId) throws Exception {
@@ -163,32 +466,19 @@ public class MascotaService implements GenericService<Mascota> {
             throw new IllegalArgumentException("ID de mascota y microchip son requeridos");
         }
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Verificar que la mascota existe
-                Mascota mascota = mascotaDao.leer(mascotaId, conn);
-                if (mascota == null) {
-                    throw new IllegalArgumentException("Mascota no encontrada con ID: " + mascotaId);
+        // La mascota actualizada se lee dentro de la misma transacción, sin pedir otra conexión después del commit
+        try {
+            return METRICA_ASIGNAR_MICROCHIP.medir(() -> TX_ASIGNAR_MICROCHIP.ejecutar(conn -> {
+                if (!mascotaDao.actualizarMicrochip(mascotaId, microchipId, conn)) {
+                    throw rechazoEscritura(mascotaId, null, microchipId, conn);
                 }
-                
-                // Verificar que el microchip existe y está disponible
-                validarMicrochipParaAsignacion(microchipId, conn);
-                
-                // Asignar microchip
-                mascota.setMicrochip(new Microchip());
-                mascota.getMicrochip().setId(microchipId);
-                
-                Mascota resultado = mascotaDao.actualizar(mascota, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (IllegalArgumentException | SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-            }
+                outboxDao.registrar(Eventos.asignacion(mascotaId, microchipId), conn);
+                return mascotaDao.leer(mascotaId, conn);
+            }), mascota -> 1);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw traducirViolacion(e);
+        } finally {
+            invalidar(mascotaId);
         }
     }
     
@@ -197,31 +487,71 @@ public class MascotaService implements GenericService<Mascota> {
             throw new IllegalArgumentException("ID de la mascota es requerido");
         }
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Verificar que la mascota existe
-                Mascota mascota = mascotaDao.leer(mascotaId, conn);
-                if (mascota == null) {
+        try {
+            return METRICA_QUITAR_MICROCHIP.medir(() -> TX_QUITAR_MICROCHIP.ejecutar(conn -> {
+                if (!mascotaDao.actualizarMicrochip(mascotaId, null, conn)) {
                     throw new IllegalArgumentException("Mascota no encontrada con ID: " + mascotaId);
                 }
-                
-                // Quitar microchip
-                mascota.setMicrochip(null);
-                Mascota resultado = mascotaDao.actualizar(mascota, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (IllegalArgumentException | SQLException e) {
-                conn.rollback();
-                throw e;
+                outboxDao.registrar(Eventos.asignacion(mascotaId, null), conn);
+                return mascotaDao.leer(mascotaId, conn);
+            }), mascota -> 1);
+        } finally {
+            invalidar(mascotaId);
+        }
+    }
+    
+    public List<ResultadoAsignacion> asignarMicrochipsLote(List<AsignacionMicrochip> asignaciones) throws Exception {
+        return asignarMicrochipsLote(asignaciones, MascotaDao.TAMANIO_LOTE_DEFECTO);
+    }
+    
+    // Asigna muchos microchips de una vez (por ejemplo, en una jornada de microchipeo) y devuelve un resultado por pedido,
+    // en el mismo orden. Se procesan de a tamanioLote pedidos, cada tramo en su propia transacción: las validaciones son
+    // consultas por conjunto (IN) y las asignaciones válidas se aplican con un único executeBatch por tramo.
+    // Un pedido rechazado no impide aplicar los demás; si falla la base, los tramos anteriores ya quedaron confirmados
+    public List<ResultadoAsignacion> asignarMicrochipsLote(List<AsignacionMicrochip> asignaciones, int tamanioLote) throws Exception {
+        if (asignaciones == null) {
+            throw new IllegalArgumentException("La lista de asignaciones no puede ser nula");
+        }
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero");
+        }
+        
+        ResultadoAsignacion[] resultados = new ResultadoAsignacion[asignaciones.size()];
+        List<Integer> pendientes = new ArrayList<>();
+        Set<Long> mascotasDelLote = new HashSet<>();
+        for (int i = 0; i < asignaciones.size(); i++) {
+            AsignacionMicrochip asignacion = asignaciones.get(i);
+            if (asignacion == null || asignacion.getMascotaId() == null || (asignacion.getMicrochipId() == null
+                    && (asignacion.getCodigo() == null || asignacion.getCodigo().trim().isEmpty()))) {
+                resultados[i] = new ResultadoAsignacion(asignacion, null, "ID de mascota y microchip son requeridos");
+            } else if (!mascotasDelLote.add(asignacion.getMascotaId())) {
+                resultados[i] = new ResultadoAsignacion(asignacion, null, "La mascota está repetida en el lote");
+            } else {
+                pendientes.add(i);
+            }
+        }
+        
+        if (!pendientes.isEmpty()) {
+            Set<Long> microchipsDelLote = new HashSet<>();
+            try (Medicion medicion = METRICA_ASIGNAR_MICROCHIPS_LOTE.iniciar()) {
+                int asignadas = 0;
+                for (int inicio = 0; inicio < pendientes.size(); inicio += tamanioLote) {
+                    List<Integer> tramo = pendientes.subList(inicio, Math.min(inicio + tamanioLote, pendientes.size()));
+                    asignadas += TX_ASIGNAR_MICROCHIPS_LOTE.ejecutar(
+                            conn -> asignarTramo(asignaciones, tramo, resultados, microchipsDelLote, conn));
+                }
+                medicion.exito(asignadas);
             } finally {
-                conn.setAutoCommit(true);
+                for (Long mascotaId : mascotasDelLote) {
+                    invalidar(mascotaId);
+                }
             }
         }
+        return Arrays.asList(resultados);
     }
     
-    private void validarMascota(Mascota mascota) {
+    // También la usa ImportadorCsv para validar cada fila con las mismas reglas
+    void validarMascota(Mascota mascota) {
         if (mascota == null) {
             throw new IllegalArgumentException("Mascota no puede ser nula");
         }
@@ -253,23 +583,172 @@ public class MascotaService implements GenericService<Mascota> {
                especie.matches("(?i)PERRO|GATO|AVE|PEZ|REPTIL|OTRO");
     }
     
-    private void validarMicrochipParaAsignacion(Long microchipId, Connection conn) throws SQLException {
-        // Verificar que el microchip existe
-        Microchip microchip = microchipDao.leer(microchipId, conn);
-        if (microchip == null) {
-            throw new IllegalArgumentException("Microchip no encontrado con ID: " + microchipId);
+    // Comprueba con dos consultas por conjunto (IN) que todos los microchips del lote existan, estén activos y no estén
+    // asignados; incluye las mascotas eliminadas porque el UNIQUE de microchip_id también las abarca
+    private void validarMicrochipsDelLote(Set<Long> microchipIds, Connection conn) throws SQLException {
+        if (microchipIds.isEmpty()) {
+            return;
         }
+        Set<Long> activos = microchipDao.leerIdsActivos(microchipIds, conn);
+        for (Long microchipId : microchipIds) {
+            if (!activos.contains(microchipId)) {
+                throw new IllegalArgumentException("Microchip no encontrado con ID: " + microchipId);
+            }
+        }
+        Set<Long> asignados = mascotaDao.leerMicrochipsAsignados(microchipIds, conn);
+        if (!asignados.isEmpty()) {
+            throw new IllegalArgumentException("El microchip " + asignados.iterator().next() + " ya está asignado a otra mascota");
+        }
+    }
+    
+    // Se llama solo cuando una escritura condicional no afectó filas: averigua el motivo en una consulta
+    // y devuelve el mismo mensaje que daban las validaciones previas, o ConflictoVersionException si la
+    // mascota cambió de versión (versionEsperada es null en las escrituras que no controlan la versión)
+    private Exception rechazoEscritura(Long mascotaId, Integer versionEsperada, Long microchipId, Connection conn) throws SQLException {
+        Integer[] versiones = mascotaDao.leerVersionesActivas(mascotaId, microchipId, conn);
+        if (mascotaId != null && versiones[0] == null) {
+            return new IllegalArgumentException("Mascota no encontrada con ID: " + mascotaId);
+        }
+        if (versionEsperada != null && !versionEsperada.equals(versiones[0])) {
+            return new ConflictoVersionException("mascota", mascotaId, versionEsperada, versiones[0]);
+        }
+        if (microchipId != null && versiones[1] == null) {
+            return new IllegalArgumentException("Microchip no encontrado con ID: " + microchipId);
+        }
+        // Otra operación cambió la mascota o el microchip entre la escritura y el sondeo
+        return new IllegalArgumentException("La mascota o el microchip fueron modificados por otra operación; intente nuevamente");
+    }
+    
+    // Valida y aplica un tramo de asignarMicrochipsLote; devuelve cuántas asignaciones se aplicaron
+    // Si una asignación concurrente hace fallar el lote por el UNIQUE de microchip_id, deshace el tramo y lo repite
+    // una vez: la segunda validación ya ve esa asignación y rechaza el pedido en lugar de fallar
+    private int asignarTramo(List<AsignacionMicrochip> asignaciones, List<Integer> tramo, ResultadoAsignacion[] resultados,
+                             Set<Long> microchipsDelLote, Connection conn) throws SQLException {
+        try {
+            return intentarTramo(asignaciones, tramo, resultados, microchipsDelLote, conn);
+        } catch (SQLException e) {
+            if (!esClaveDuplicada(e)) {
+                throw e;
+            }
+            conn.rollback();
+            return intentarTramo(asignaciones, tramo, resultados, microchipsDelLote, conn);
+        }
+    }
+    
+    // Cuatro consultas por conjunto (microchips por código, microchips por ID, mascotas activas y dueños actuales
+    // de los microchips) y un executeBatch, sin importar cuántos pedidos tenga el tramo
+    private int intentarTramo(List<AsignacionMicrochip> asignaciones, List<Integer> tramo, ResultadoAsignacion[] resultados,
+                              Set<Long> microchipsDelLote, Connection conn) throws SQLException {
+        Set<String> codigos = new HashSet<>();
+        Set<Long> microchipIds = new HashSet<>();
+        Set<Long> mascotaIds = new HashSet<>();
+        for (int i : tramo) {
+            AsignacionMicrochip asignacion = asignaciones.get(i);
+            mascotaIds.add(asignacion.getMascotaId());
+            if (asignacion.getMicrochipId() != null) {
+                microchipIds.add(asignacion.getMicrochipId());
+            } else {
+                codigos.add(asignacion.getCodigo().trim());
+            }
+        }
+        Map<String, Long> idsPorCodigo = codigos.isEmpty() ? Map.of() : microchipDao.leerIdsPorCodigos(codigos, conn);
+        Set<Long> microchipsActivos = new HashSet<>(microchipIds.isEmpty() ? Set.of() : microchipDao.leerIdsActivos(microchipIds, conn));
+        microchipsActivos.addAll(idsPorCodigo.values());
+        Set<Long> mascotasActivas = mascotaDao.leerIdsActivos(mascotaIds, conn);
+        Map<Long, Long> mascotaPorMicrochip = mascotaDao.leerMascotasPorMicrochip(microchipsActivos, conn);
         
-        // Verificar que el microchip no esté asignado a otra mascota
-        // (esto se garantiza con la FK UNIQUE, pero validamos para mejor mensaje de error)
-        String sql = "SELECT COUNT(*) FROM mascota WHERE microchip_id = ? AND eliminado = false";
-        try (var stmt = conn.prepareStatement(sql)) {
-            stmt.setLong(1, microchipId);
-            try (var rs = stmt.executeQuery()) {
-                if (rs.next() && rs.getInt(1) > 0) {
-                    throw new IllegalArgumentException("El microchip ya está asignado a otra mascota");
-                }
+        // Mascota -> microchip de los pedidos que pasan las validaciones, en el orden del lote
+        Map<Long, Long> aplicar = new LinkedHashMap<>();
+        Set<Long> microchipsDelTramo = new HashSet<>();
+        for (int i : tramo) {
+            AsignacionMicrochip asignacion = asignaciones.get(i);
+            Long mascotaId = asignacion.getMascotaId();
+            Long microchipId = asignacion.getMicrochipId() != null
+                    ? asignacion.getMicrochipId() : idsPorCodigo.get(asignacion.getCodigo().trim());
+            Long asignadoA = microchipId != null ? mascotaPorMicrochip.get(microchipId) : null;
+            String motivo = null;
+            
+            if (!mascotasActivas.contains(mascotaId)) {
+                motivo = "Mascota no encontrada con ID: " + mascotaId;
+            } else if (microchipId == null) {
+                motivo = "Microchip no encontrado con código: " + asignacion.getCodigo();
+            } else if (!microchipsActivos.contains(microchipId)) {
+                motivo = "Microchip no encontrado con ID: " + microchipId;
+            } else if (microchipsDelLote.contains(microchipId) || !microchipsDelTramo.add(microchipId)) {
+                motivo = "El microchip está repetido en el lote";
+            } else if (asignadoA != null && !asignadoA.equals(mascotaId)) {
+                motivo = "El microchip ya está asignado a otra mascota";
+            } else {
+                aplicar.put(mascotaId, microchipId);
             }
+            resultados[i] = new ResultadoAsignacion(asignacion, microchipId, motivo);
+        }
+        
+        Set<Long> noAplicadas = aplicar.isEmpty() ? Set.of() : mascotaDao.actualizarMicrochipLote(aplicar, conn);
+        List<EventoOutbox> eventos = new ArrayList<>(aplicar.size());
+        for (Map.Entry<Long, Long> par : aplicar.entrySet()) {
+            if (!noAplicadas.contains(par.getKey())) {
+                eventos.add(Eventos.asignacion(par.getKey(), par.getValue()));
+            }
+        }
+        if (!eventos.isEmpty()) {
+            outboxDao.registrarLote(eventos, conn);
         }
+        for (int i : tramo) {
+            Long mascotaId = asignaciones.get(i).getMascotaId();
+            if (noAplicadas.contains(mascotaId)) {
+                // Otra operación eliminó la mascota o el microchip entre la validación y el UPDATE
+                resultados[i] = new ResultadoAsignacion(resultados[i].getAsignacion(), resultados[i].getMicrochipId(),
+                        "La mascota o el microchip fueron modificados por otra operación; intente nuevamente");
+            }
+        }
+        microchipsDelLote.addAll(microchipsDelTramo);
+        return aplicar.size() - noAplicadas.size();
+    }
+    
+    // El error puede llegar envuelto (por ejemplo, en la BatchUpdateException de executeBatch)
+    private static boolean esClaveDuplicada(SQLException e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLException sql && sql.getErrorCode() == ER_DUP_ENTRY) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // El UNIQUE de microchip_id es el que garantiza que un microchip no quede asignado a dos mascotas
+    private static Exception traducirViolacion(SQLIntegrityConstraintViolationException e) {
+        if (e.getErrorCode() == ER_DUP_ENTRY) {
+            return new IllegalArgumentException("El microchip ya está asignado a otra mascota");
+        }
+        return e;
+    }
+    
+    private void validarTamanioPagina(int tamanio) {
+        if (tamanio <= 0 || tamanio > TAMANIO_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + TAMANIO_PAGINA_MAXIMO);
+        }
+    }
+    
+    private void validarPlan(PlanCarga plan) {
+        if (plan == null) {
+            throw new IllegalArgumentException("El plan de carga del microchip es requerido");
+        }
+    }
+    
+    public static EstadisticasCache getEstadisticasCache() {
+        return CACHE_POR_ID.getEstadisticas();
+    }
+    
+    // Descarta la mascota de la caché y avisa la escritura al modelo de lectura; se llama al terminar cada escritura
+    // (también desde ArchivadorEliminados al restaurar)
+    static void invalidar(Long id) {
+        CACHE_POR_ID.invalidar(id);
+        ModeloLectura.registrarEscritura();
+    }
+    
+    // Descarta las mascotas en caché que tienen embebido el microchip indicado (lo usa MicrochipService al modificarlo)
+    static void invalidarCachePorMicrochip(Long microchipId) {
+        CACHE_POR_ID.invalidarSi(m -> m.getMicrochip() != null && microchipId.equals(m.getMicrochip().getId()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package service;
+
+import dao.LecturaPorIds;
+import dao.Pagina;
+import models.Mascota;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ Fachada asíncrona de MascotaService para clientes que lanzan muchas consultas concurrentes.
+ Delega en una instancia de MascotaService (que es segura para usar desde varios hilos) y ejecuta
+ cada llamada con el EjecutorAsync recibido, que limita cuántas usan la base a la vez.
+*/
+
+public class MascotaServiceAsync implements GenericServiceAsync<Mascota> {
+    
+    private final MascotaService mascotaService;
+    private final EjecutorAsync ejecutor;
+    
+    public MascotaServiceAsync() {
+        this(new MascotaService(), EjecutorAsync.compartido());
+    }
+    
+    public MascotaServiceAsync(MascotaService mascotaService, EjecutorAsync ejecutor) {
+        this.mascotaService = mascotaService;
+        this.ejecutor = ejecutor;
+    }
+    
+    @Override
+    public CompletableFuture<Mascota> insertarAsync(Mascota mascota) {
+        return ejecutor.ejecutar(() -> mascotaService.insertar(mascota));
+    }
+    
+    @Override
+    public CompletableFuture<List<Mascota>> insertarLoteAsync(List<Mascota> mascotas) {
+        return ejecutor.ejecutar(() -> mascotaService.insertarLote(mascotas));
+    }
+    
+    @Override
+    public CompletableFuture<Mascota> actualizarAsync(Mascota mascota) {
+        return ejecutor.ejecutar(() -> mascotaService.actualizar(mascota));
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> eliminarAsync(Long id) {
+        return ejecutor.ejecutar(() -> mascotaService.eliminar(id));
+    }
+    
+    @Override
+    public CompletableFuture<Mascota> getByIdAsync(Long id) {
+        return ejecutor.ejecutar(() -> mascotaService.getById(id));
+    }
+    
+    @Override
+    public CompletableFuture<LecturaPorIds<Mascota>> getByIdsAsync(Collection<Long> ids) {
+        return ejecutor.ejecutar(() -> mascotaService.getByIds(ids));
+    }
+    
+    @Override
+    public CompletableFuture<List<Mascota>> getAllAsync() {
+        return ejecutor.ejecutar(mascotaService::getAll);
+    }
+    
+    @Override
+    public CompletableFuture<Pagina<Mascota>> getPaginaAsync(String token, int tamanio) {
+        return ejecutor.ejecutar(() -> mascotaService.getPagina(token, tamanio));
+    }
+    
+    public CompletableFuture<List<Mascota>> buscarPorDuenioAsync(String duenio) {
+        return ejecutor.ejecutar(() -> mascotaService.buscarPorDuenio(duenio));
+    }
+    
+    public CompletableFuture<Pagina<Mascota>> buscarPorDuenioAsync(String duenio, String token, int tamanio) {
+        return ejecutor.ejecutar(() -> mascotaService.buscarPorDuenio(duenio, token, tamanio));
+    }
+    
+    public CompletableFuture<List<Mascota>> buscarPorEspecieAsync(String especie) {
+        return ejecutor.ejecutar(() -> mascotaService.buscarPorEspecie(especie));
+    }
+    
+    public CompletableFuture<Pagina<Mascota>> buscarPorEspecieAsync(String especie, String token, int tamanio) {
+        return ejecutor.ejecutar(() -> mascotaService.buscarPorEspecie(especie, token, tamanio));
+    }
+    
+    // Busca varias especies en paralelo y devuelve las mascotas agrupadas por especie, en el orden recibido
+    // Si una búsqueda falla o se cancela el resultado, se cancelan las búsquedas que sigan pendientes
+    public CompletableFuture<Map<String, List<Mascota>>> buscarPorEspeciesAsync(Collection<String> especies) {
+        Map<String, CompletableFuture<List<Mascota>>> busquedas = new LinkedHashMap<>();
+        for (String especie : especies) {
+            busquedas.computeIfAbsent(especie, this::buscarPorEspecieAsync);
+        }
+        
+        CompletableFuture<Map<String, List<Mascota>>> resultado = CompletableFuture
+                .allOf(busquedas.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    Map<String, List<Mascota>> porEspecie = new LinkedHashMap<>();
+                    busquedas.forEach((especie, busqueda) -> porEspecie.put(especie, busqueda.join()));
+                    return porEspecie;
+                });
+        resultado.whenComplete((porEspecie, error) -> {
+            if (error != null) {
+                busquedas.values().forEach(busqueda -> busqueda.cancel(true));
+            }
+        });
+        return resultado;
+    }
+    
+    public CompletableFuture<Mascota> asignarMicrochipAsync(Long mascotaId, Long microchipId) {
+        return ejecutor.ejecutar(() -> mascotaService.asignarMicrochip(mascotaId, microchipId));
+    }
+    
+    public CompletableFuture<Mascota> quitarMicrochipAsync(Long mascotaId) {
+        return ejecutor.ejecutar(() -> mascotaService.quitarMicrochip(mascotaId));
+    }
+    
+    public CompletableFuture<List<ResultadoAsignacion>> asignarMicrochipsLoteAsync(List<AsignacionMicrochip> asignaciones) {
+        return ejecutor.ejecutar(() -> mascotaService.asignarMicrochipsLote(asignaciones));
+    }
+}
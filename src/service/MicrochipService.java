@@ -4,13 +4,34 @@
  */
 package service;
 
+import dao.ConflictoVersionException;
 import dao.MicrochipDao;
+import dao.OutboxDao;
+import models.EventoOutbox;
+import models.EventoOutbox.Operacion;
 import models.Microchip;
 import config.DatabaseConnection;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import dao.CursorStream;
+import dao.LecturaPorIds;
+import dao.Pagina;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /*
 Servicio que maneja la lógica de negocio para las operaciones con microchips.
@@ -20,32 +41,141 @@ Se comunica con el MicrochipDao para las operaciones de persistencia.
 
 public class MicrochipService implements GenericService<Microchip> {
     
+    // Cachés compartidas por todas las instancias; se configuran con -Dcache.maximo y -Dcache.ttlMs
+    // Por código solo se guarda el ID, y la entidad se resuelve en la caché por ID: invalidar por ID alcanza para ambas
+    // Los microchips devueltos desde la caché son compartidos: no deben modificarse fuera de actualizar()
+    private static final CacheLRU<Long, Microchip> CACHE_POR_ID = new CacheLRU<>(
+            Integer.getInteger("cache.maximo", 10_000), Long.getLong("cache.ttlMs", 60_000L));
+    private static final CacheLRU<String, Long> CACHE_ID_POR_CODIGO = new CacheLRU<>(
+            Integer.getInteger("cache.maximo", 10_000), Long.getLong("cache.ttlMs", 60_000L));
+    
+    // Filtro de Bloom con todos los códigos: evita el SELECT de unicidad cuando el código seguro es nuevo
+    private static final IndiceCodigos INDICE_CODIGOS = new IndiceCodigos();
+    
+    // Métricas por método (ver metrics.Metricas); incluyen la espera de conexión y la transacción, no la validación de los parámetros
+    private static final MetricaOperacion METRICA_INSERTAR = Metricas.operacion("servicio", "MicrochipService.insertar");
+    private static final MetricaOperacion METRICA_INSERTAR_LOTE = Metricas.operacion("servicio", "MicrochipService.insertarLote");
+    private static final MetricaOperacion METRICA_ACTUALIZAR = Metricas.operacion("servicio", "MicrochipService.actualizar");
+    private static final MetricaOperacion METRICA_ELIMINAR = Metricas.operacion("servicio", "MicrochipService.eliminar");
+    private static final MetricaOperacion METRICA_GET_BY_ID = Metricas.operacion("servicio", "MicrochipService.getById");
+    private static final MetricaOperacion METRICA_GET_BY_IDS = Metricas.operacion("servicio", "MicrochipService.getByIds");
+    private static final MetricaOperacion METRICA_GET_ALL = Metricas.operacion("servicio", "MicrochipService.getAll");
+    private static final MetricaOperacion METRICA_GET_PAGINA = Metricas.operacion("servicio", "MicrochipService.getPagina");
+    private static final MetricaOperacion METRICA_GET_ALL_STREAM = Metricas.operacion("servicio", "MicrochipService.getAllStream");
+    private static final MetricaOperacion METRICA_GET_BY_CODIGO = Metricas.operacion("servicio", "MicrochipService.getByCodigo");
+    private static final MetricaOperacion METRICA_RECONSTRUIR_INDICE_CODIGOS = Metricas.operacion("servicio", "MicrochipService.reconstruirIndiceCodigos");
+    
+    // Transacciones de escritura; se repiten ante deadlocks y esperas de bloqueo vencidas (ver EjecutorTransacciones)
+    private static final EjecutorTransacciones TX_INSERTAR = new EjecutorTransacciones("MicrochipService.insertar");
+    private static final EjecutorTransacciones TX_INSERTAR_LOTE = new EjecutorTransacciones("MicrochipService.insertarLote");
+    private static final EjecutorTransacciones TX_ACTUALIZAR = new EjecutorTransacciones("MicrochipService.actualizar");
+    private static final EjecutorTransacciones TX_ELIMINAR = new EjecutorTransacciones("MicrochipService.eliminar");
+    
+    // Código de error de MySQL para una clave UNIQUE duplicada
+    private static final int ER_DUP_ENTRY = 1062;
+    private static final Pattern ENTRADA_DUPLICADA = Pattern.compile("Duplicate entry '(.*)' for key");
+    
     private final MicrochipDao microchipDao = new MicrochipDao();
+    private final OutboxDao outboxDao = new OutboxDao();
     
     @Override
     public Microchip insertar(Microchip microchip) throws Exception {
         validarMicrochip(microchip);
+        asegurarIndiceCodigos();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Verificar si ya existe un microchip con el mismo código
-                Microchip existente = microchipDao.leerPorCodigo(microchip.getCodigo(), conn);
-                if (existente != null) {
-                    throw new IllegalArgumentException("Ya existe un microchip con el código: " + microchip.getCodigo());
+        try {
+            Microchip resultado = METRICA_INSERTAR.medir(() -> TX_INSERTAR.ejecutar(conn -> {
+                // Verificar si ya existe un microchip con el mismo código (solo si el índice no descarta que exista)
+                if (INDICE_CODIGOS.puedeExistir(microchip.getCodigo())) {
+                    Microchip existente = microchipDao.leerPorCodigo(microchip.getCodigo(), conn);
+                    INDICE_CODIGOS.registrarConsulta(existente != null);
+                    if (existente != null) {
+                        throw new IllegalArgumentException("Ya existe un microchip con el código: " + microchip.getCodigo());
+                    }
                 }
                 
-                Microchip resultado = microchipDao.crear(microchip, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (IllegalArgumentException | SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
+                INDICE_CODIGOS.agregar(microchip.getCodigo());
+                Microchip creado = microchipDao.crear(microchip, conn);
+                outboxDao.registrar(Eventos.de(Operacion.INSERTAR, creado), conn);
+                return creado;
+            }), creado -> 1);
+            ModeloLectura.registrarEscritura();
+            return resultado;
+            
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw violacionCodigo(e, microchip.getCodigo());
+        }
+    }
+    
+    @Override
+    public List<Microchip> insertarLote(List<Microchip> microchips) throws Exception {
+        return insertarLote(microchips, MicrochipDao.TAMANIO_LOTE_DEFECTO);
+    }
+    
+    // Inserta todos los microchips en una sola transacción, enviándolos en lotes de tamanioLote filas
+    // Todo el lote se valida antes de escribir el primer tramo: si un microchip es inválido no se inserta ninguno
+    public List<Microchip> insertarLote(List<Microchip> microchips, int tamanioLote) throws Exception {
+        if (microchips == null) {
+            throw new IllegalArgumentException("La lista de microchips no puede ser nula");
+        }
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero");
+        }
+        
+        // Por clave (ver MicrochipDao.claveCodigo): dos códigos que solo difieren en mayúsculas o acentos chocan en el UNIQUE
+        Map<String, String> codigosDelLote = new HashMap<>();
+        for (Microchip microchip : microchips) {
+            validarMicrochip(microchip);
+            if (codigosDelLote.putIfAbsent(MicrochipDao.claveCodigo(microchip.getCodigo()), microchip.getCodigo()) != null) {
+                throw new IllegalArgumentException("El código " + microchip.getCodigo() + " está repetido en el lote");
+            }
+        }
+        if (microchips.isEmpty()) {
+            return microchips;
+        }
+        asegurarIndiceCodigos();
+        
+        // Solo hace falta consultar los códigos que el índice no puede descartar
+        Set<String> aConsultar = new HashSet<>();
+        for (String codigo : codigosDelLote.values()) {
+            if (INDICE_CODIGOS.puedeExistir(codigo)) {
+                aConsultar.add(codigo);
             }
         }
+        
+        List<Microchip> resultado;
+        try {
+            resultado = METRICA_INSERTAR_LOTE.medir(() -> TX_INSERTAR_LOTE.ejecutar(conn -> {
+                // Verificar en una sola consulta por tramo que ningún código exista ya
+                // La base devuelve los códigos como están guardados, que pueden diferir de los pedidos en mayúsculas o acentos
+                Set<String> existentes = new HashSet<>();
+                if (!aConsultar.isEmpty()) {
+                    for (String codigo : microchipDao.leerCodigosExistentes(aConsultar, conn)) {
+                        existentes.add(MicrochipDao.claveCodigo(codigo));
+                    }
+                }
+                for (String codigo : aConsultar) {
+                    INDICE_CODIGOS.registrarConsulta(existentes.contains(MicrochipDao.claveCodigo(codigo)));
+                }
+                if (!existentes.isEmpty()) {
+                    throw new IllegalArgumentException("Ya existe un microchip con el código: "
+                            + codigosDelLote.get(existentes.iterator().next()));
+                }
+                
+                codigosDelLote.values().forEach(INDICE_CODIGOS::agregar);
+                List<Microchip> creados = microchipDao.crearLote(microchips, tamanioLote, conn);
+                List<EventoOutbox> eventos = new ArrayList<>(creados.size());
+                for (Microchip microchip : creados) {
+                    eventos.add(Eventos.de(Operacion.INSERTAR, microchip));
+                }
+                outboxDao.registrarLote(eventos, conn);
+                return creados;
+            }), List::size);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw violacionCodigo(e, null);
+        }
+        ModeloLectura.registrarEscritura();
+        return resultado;
     }
     
     @Override
@@ -55,32 +185,37 @@ public class MicrochipService implements GenericService<Microchip> {
         if (microchip.getId() == null) {
             throw new IllegalArgumentException("ID del microchip es requerido para actualizar");
         }
+        if (microchip.getVersion() == null) {
+            throw new IllegalArgumentException("Versión del microchip es requerida para actualizar");
+        }
+        Integer versionLeida = microchip.getVersion();
+        asegurarIndiceCodigos();
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Verificar que el microchip existe
-                Microchip existente = microchipDao.leer(microchip.getId(), conn);
-                if (existente == null) {
-                    throw new IllegalArgumentException("Microchip no encontrado con ID: " + microchip.getId());
+        // Un único UPDATE con control de versión, sin leer antes el microchip: la unicidad del código la garantiza
+        // el UNIQUE y solo si no afecta filas se consulta la versión actual para distinguir inexistente de conflicto
+        // El evento del outbox va en la misma transacción; cada intento parte de la versión leída
+        INDICE_CODIGOS.agregar(microchip.getCodigo());
+        try {
+            return METRICA_ACTUALIZAR.medir(() -> TX_ACTUALIZAR.ejecutar(conn -> {
+                microchip.setVersion(versionLeida);
+                if (!microchipDao.actualizarCondicional(microchip, conn)) {
+                    Integer actual = microchipDao.leerVersion(microchip.getId(), conn);
+                    if (actual == null) {
+                        throw new IllegalArgumentException("Microchip no encontrado con ID: " + microchip.getId());
+                    }
+                    throw new ConflictoVersionException("microchip", microchip.getId(), versionLeida, actual);
                 }
-                
-                // Verificar unicidad del código (excluyendo el actual)
-                Microchip conMismoCodigo = microchipDao.leerPorCodigo(microchip.getCodigo(), conn);
-                if (conMismoCodigo != null && !conMismoCodigo.getId().equals(microchip.getId())) {
-                    throw new IllegalArgumentException("Ya existe otro microchip con el código: " + microchip.getCodigo());
-                }
-                
-                Microchip resultado = microchipDao.actualizar(microchip, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (IllegalArgumentException | SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-            }
+                outboxDao.registrar(Eventos.de(Operacion.ACTUALIZAR, microchip), conn);
+                return microchip;
+            }), actualizado -> 1);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            microchip.setVersion(versionLeida);
+            throw violacionCodigo(e, microchip.getCodigo());
+        } catch (Exception e) {
+            microchip.setVersion(versionLeida);
+            throw e;
+        } finally {
+            invalidarCache(microchip.getId());
         }
     }
     
@@ -90,25 +225,17 @@ public class MicrochipService implements GenericService<Microchip> {
             throw new IllegalArgumentException("ID del microchip es requerido");
         }
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
-            try {
-                // Verificar que el microchip existe
-                Microchip existente = microchipDao.leer(id, conn);
-                if (existente == null) {
+        // El UPDATE solo afecta microchips activos: si no afecta filas, no existe o ya estaba eliminado
+        try {
+            return METRICA_ELIMINAR.medir(() -> TX_ELIMINAR.ejecutar(conn -> {
+                if (!microchipDao.eliminar(id, conn)) {
                     throw new IllegalArgumentException("Microchip no encontrado con ID: " + id);
                 }
-                
-                boolean resultado = microchipDao.eliminar(id, conn);
-                conn.commit();
-                return resultado;
-                
-            } catch (IllegalArgumentException | SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
-            }
+                outboxDao.registrar(Eventos.eliminacion(Eventos.MICROCHIP, id), conn);
+                return true;
+            }), eliminado -> 1);
+        } finally {
+            invalidarCache(id);
         }
     }
     
@@ -117,30 +244,150 @@ public class MicrochipService implements GenericService<Microchip> {
         if (id == null) {
             throw new IllegalArgumentException("ID del microchip es requerido");
         }
+        return METRICA_GET_BY_ID.medir(() -> leerPorId(id), microchip -> microchip != null ? 1 : 0);
+    }
+    
+    private Microchip leerPorId(Long id) throws SQLException {
+        ModeloLectura modelo = ModeloLectura.paraLeer();
+        if (modelo != null) {
+            return modelo.microchip(id);
+        }
+        
+        Microchip enCache = CACHE_POR_ID.obtener(id);
+        if (enCache != null) {
+            return enCache;
+        }
         
+        long marca = CACHE_POR_ID.marca();
         try (Connection conn = DatabaseConnection.getConnection()) {
-            return microchipDao.leer(id, conn);
+            Microchip microchip = microchipDao.leer(id, conn);
+            CACHE_POR_ID.guardar(id, microchip, marca);
+            return microchip;
         }
     }
     
+    // Primero busca cada ID en el modelo de lectura o en la caché; los que faltan se leen juntos con una sola conexión
     @Override
-    public List<Microchip> getAll() throws Exception {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            return microchipDao.leerTodos(conn);
+    public LecturaPorIds<Microchip> getByIds(Collection<Long> ids) throws Exception {
+        LecturaPorIds.validarIds(ids);
+        return METRICA_GET_BY_IDS.medir(() -> leerPorIds(ids), resultado -> resultado.getElementos().size());
+    }
+    
+    private LecturaPorIds<Microchip> leerPorIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Microchip> encontrados = new HashMap<>();
+        
+        ModeloLectura modelo = ModeloLectura.paraLeer();
+        List<Long> pendientes = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Microchip encontrado = modelo != null ? modelo.microchip(id) : CACHE_POR_ID.obtener(id);
+            if (encontrado != null) {
+                encontrados.put(id, encontrado);
+            } else if (modelo == null) {
+                pendientes.add(id);
+            }
         }
+        
+        if (!pendientes.isEmpty()) {
+            long marca = CACHE_POR_ID.marca();
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                for (Microchip leido : microchipDao.leerPorIds(pendientes, conn).getElementos()) {
+                    encontrados.put(leido.getId(), leido);
+                    CACHE_POR_ID.guardar(leido.getId(), leido, marca);
+                }
+            }
+        }
+        return LecturaPorIds.ordenar(ids, encontrados);
+    }
+    
+    @Override
+    public List<Microchip> getAll() throws Exception {
+        return METRICA_GET_ALL.medir(() -> {
+            try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+                return microchipDao.leerTodos(conn);
+            }
+        }, List::size);
+    }
+    
+    // Devuelve la página que sigue al token recibido (null para la primera página)
+    @Override
+    public Pagina<Microchip> getPagina(String token, int tamanio) throws Exception {
+        validarTamanioPagina(tamanio);
+        Long despuesDeId = Pagina.idDesdeToken(token);
+        
+        return METRICA_GET_PAGINA.medir(() -> {
+            try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+                return microchipDao.leerPagina(despuesDeId, tamanio, conn);
+            }
+        }, pagina -> pagina.getElementos().size());
+    }
+    
+    // Devuelve un Stream que lee con cursor del servidor; la conexión queda tomada hasta cerrar el Stream, por eso no
+    // usa EjecutorTransacciones, que devuelve la conexión al terminar el trabajo. Acá solo se mide la apertura; las filas y el tiempo de lectura los registra el DAO al cerrar el Stream
+    @Override
+    public Stream<Microchip> getAllStream() throws Exception {
+        return METRICA_GET_ALL_STREAM.medir(() -> {
+            Connection conn = DatabaseConnection.getConnectionLectura();
+            try {
+                return CursorStream.cerrandoAlFinal(microchipDao.leerTodosStream(conn), conn);
+            } catch (SQLException | RuntimeException e) {
+                conn.close();
+                throw e;
+            }
+        }, stream -> 0);
     }
     
     public Microchip getByCodigo(String codigo) throws Exception {
         if (codigo == null || codigo.trim().isEmpty()) {
             throw new IllegalArgumentException("Código del microchip es requerido");
         }
+        return METRICA_GET_BY_CODIGO.medir(() -> leerPorCodigo(codigo), microchip -> microchip != null ? 1 : 0);
+    }
+    
+    private Microchip leerPorCodigo(String codigo) throws Exception {
+        ModeloLectura modelo = ModeloLectura.paraLeer();
+        if (modelo != null) {
+            return modelo.microchipPorCodigo(codigo);
+        }
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            return microchipDao.leerPorCodigo(codigo, conn);
+        Long idEnCache = CACHE_ID_POR_CODIGO.obtener(codigo);
+        if (idEnCache != null) {
+            Microchip enCache = CACHE_POR_ID.obtener(idEnCache);
+            // El código pudo haber cambiado desde que se guardó el ID; en ese caso se vuelve a leer
+            if (enCache != null && codigo.equals(enCache.getCodigo())) {
+                return enCache;
+            }
+        }
+        
+        long marcaId = CACHE_POR_ID.marca();
+        long marcaCodigo = CACHE_ID_POR_CODIGO.marca();
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            Microchip microchip = microchipDao.leerPorCodigo(codigo, conn);
+            // Lo leído de una réplica puede estar atrasado respecto de una invalidación ya hecha
+            if (microchip != null && !DatabaseConnection.esReplica(conn)) {
+                CACHE_POR_ID.guardar(microchip.getId(), microchip, marcaId);
+                CACHE_ID_POR_CODIGO.guardar(codigo, microchip.getId(), marcaCodigo);
+            }
+            return microchip;
         }
     }
     
-    private void validarMicrochip(Microchip microchip) {
+    // Traduce el choque con el UNIQUE de codigo, que detecta lo que el índice y las consultas previas no ven (un
+    // microchip eliminado, que sigue ocupando su código, o uno insertado por otro proceso). Si no se sabe qué código
+    // chocó se toma del mensaje de MySQL ("Duplicate entry '<código>' for key ..."). También la usa ImportadorCsv
+    static Exception violacionCodigo(SQLIntegrityConstraintViolationException e, String codigo) {
+        if (e.getErrorCode() != ER_DUP_ENTRY) {
+            return e;
+        }
+        if (codigo == null) {
+            Matcher entrada = ENTRADA_DUPLICADA.matcher(String.valueOf(e.getMessage()));
+            codigo = entrada.find() ? entrada.group(1) : null;
+        }
+        return new IllegalArgumentException(codigo != null ? "Ya existe un microchip con el código: " + codigo
+                : "Ya existe un microchip con uno de los códigos indicados");
+    }
+    
+    // También la usa ImportadorCsv para validar cada fila con las mismas reglas
+    void validarMicrochip(Microchip microchip) {
         if (microchip == null) {
             throw new IllegalArgumentException("Microchip no puede ser nulo");
         }
@@ -157,4 +404,59 @@ public class MicrochipService implements GenericService<Microchip> {
             throw new IllegalArgumentException("Observaciones no pueden tener más de 255 caracteres");
         }
     }
+    
+    private void validarTamanioPagina(int tamanio) {
+        if (tamanio <= 0 || tamanio > TAMANIO_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + TAMANIO_PAGINA_MAXIMO);
+        }
+    }
+    
+    // Vuelve a cargar el índice de códigos desde la base; conviene llamarlo al iniciar la aplicación
+    public static void reconstruirIndiceCodigos() throws SQLException {
+        try (Medicion medicion = METRICA_RECONSTRUIR_INDICE_CODIGOS.iniciar();
+             Connection conn = DatabaseConnection.getConnection()) {
+            INDICE_CODIGOS.reconstruir(conn);
+            medicion.exito(0);
+        }
+    }
+    
+    // Agrega al índice códigos que otro componente del servicio está por insertar (por ejemplo, ImportadorCsv)
+    static void registrarCodigos(Collection<String> codigos) {
+        codigos.forEach(INDICE_CODIGOS::agregar);
+    }
+    
+    public static IndiceCodigos getIndiceCodigos() {
+        return INDICE_CODIGOS;
+    }
+    
+    // Construye el índice si todavía no existe o si se llenó; si falla, se sigue consultando la base
+    private void asegurarIndiceCodigos() {
+        if (INDICE_CODIGOS.necesitaReconstruir()) {
+            synchronized (INDICE_CODIGOS) {
+                if (!INDICE_CODIGOS.necesitaReconstruir()) {
+                    return;
+                }
+                try {
+                    reconstruirIndiceCodigos();
+                } catch (SQLException e) {
+                    System.err.println("No se pudo construir el índice de códigos: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    public static EstadisticasCache getEstadisticasCachePorId() {
+        return CACHE_POR_ID.getEstadisticas();
+    }
+    
+    public static EstadisticasCache getEstadisticasCachePorCodigo() {
+        return CACHE_ID_POR_CODIGO.getEstadisticas();
+    }
+    
+    // Un cambio en el microchip también deja vieja la copia embebida en las mascotas que lo tienen asignado
+    static void invalidarCache(Long id) {
+        CACHE_POR_ID.invalidar(id);
+        MascotaService.invalidarCachePorMicrochip(id);
+        ModeloLectura.registrarEscritura();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package service;
+
+import dao.LecturaPorIds;
+import dao.Pagina;
+import models.Microchip;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ Fachada asíncrona de MicrochipService para clientes que lanzan muchas consultas concurrentes.
+ Delega en una instancia de MicrochipService y ejecuta cada llamada con el EjecutorAsync recibido.
+*/
+
+public class MicrochipServiceAsync implements GenericServiceAsync<Microchip> {
+    
+    private final MicrochipService microchipService;
+    private final EjecutorAsync ejecutor;
+    
+    public MicrochipServiceAsync() {
+        this(new MicrochipService(), EjecutorAsync.compartido());
+    }
+    
+    public MicrochipServiceAsync(MicrochipService microchipService, EjecutorAsync ejecutor) {
+        this.microchipService = microchipService;
+        this.ejecutor = ejecutor;
+    }
+    
+    @Override
+    public CompletableFuture<Microchip> insertarAsync(Microchip microchip) {
+        return ejecutor.ejecutar(() -> microchipService.insertar(microchip));
+    }
+    
+    @Override
+    public CompletableFuture<List<Microchip>> insertarLoteAsync(List<Microchip> microchips) {
+        return ejecutor.ejecutar(() -> microchipService.insertarLote(microchips));
+    }
+    
+    @Override
+    public CompletableFuture<Microchip> actualizarAsync(Microchip microchip) {
+        return ejecutor.ejecutar(() -> microchipService.actualizar(microchip));
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> eliminarAsync(Long id) {
+        return ejecutor.ejecutar(() -> microchipService.eliminar(id));
+    }
+    
+    @Override
+    public CompletableFuture<Microchip> getByIdAsync(Long id) {
+        return ejecutor.ejecutar(() -> microchipService.getById(id));
+    }
+    
+    @Override
+    public CompletableFuture<LecturaPorIds<Microchip>> getByIdsAsync(Collection<Long> ids) {
+        return ejecutor.ejecutar(() -> microchipService.getByIds(ids));
+    }
+    
+    @Override
+    public CompletableFuture<List<Microchip>> getAllAsync() {
+        return ejecutor.ejecutar(microchipService::getAll);
+    }
+    
+    @Override
+    public CompletableFuture<Pagina<Microchip>> getPaginaAsync(String token, int tamanio) {
+        return ejecutor.ejecutar(() -> microchipService.getPagina(token, tamanio));
+    }
+    
+    public CompletableFuture<Microchip> getByCodigoAsync(String codigo) {
+        return ejecutor.ejecutar(() -> microchipService.getByCodigo(codigo));
+    }
+}
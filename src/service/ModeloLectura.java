@@ -0,0 +1,411 @@
+package service;
+
+import config.DatabaseConnection;
+import dao.MascotaDao;
+import dao.MicrochipDao;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import models.Mascota;
+import models.Microchip;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+Copia en memoria de las mascotas y microchips activos, indexada por ID, código, especie y dueño, para responder
+las lecturas más frecuentes sin ir a la base. Es opcional: se activa con -Dlectura.modelo=true.
+Un hilo la refresca cada -Dlectura.intervaloMs (1000 por defecto) trayendo solo las filas cuya columna
+actualizado_en es posterior al refresco anterior, menos una ventana de -Dlectura.ventanaMs (5000 por defecto)
+que cubre las transacciones confirmadas después de escribir la fila. Releer una fila es inofensivo porque solo se
+aplica si su versión es más nueva. Una transacción más larga que la ventana puede confirmar filas que ningún refresco
+incremental trae; por eso cada -Dlectura.verificarCada refrescos (60 por defecto) se compara la cantidad de filas
+activas y la suma de sus versiones con las de la base, en la misma instantánea que leyó los cambios, y si difieren el
+refresco siguiente vuelve a cargar todo y descarta lo que ya no está activo (ver getResincronizaciones).
+Para que quien escribe lea lo que escribió, los servicios avisan cada escritura con registrarEscritura() y el
+modelo deja de responder (paraLeer() devuelve null) hasta que un refresco empezado después la cubre.
+Las borradas físicamente (no por eliminación lógica) no se detectan. Los microchips devueltos son compartidos
+y no deben modificarse; las mascotas se arman en cada lectura.
+ */
+
+public final class ModeloLectura implements ModeloLecturaMBean {
+
+    private static final boolean ACTIVO = Boolean.getBoolean("lectura.modelo");
+    private static final long INTERVALO_MS = Long.getLong("lectura.intervaloMs", 1_000L);
+    private static final long VENTANA_MS = Long.getLong("lectura.ventanaMs", 5_000L);
+    private static final int VERIFICAR_CADA = Integer.getInteger("lectura.verificarCada", 60);
+
+    private static final MetricaOperacion METRICA_REFRESCAR = Metricas.operacion("lectura", "ModeloLectura.refrescar");
+
+    // Escrituras hechas por este proceso desde que arrancó
+    private static final AtomicLong ESCRITURAS = new AtomicLong();
+
+    private final MascotaDao mascotaDao = new MascotaDao();
+    private final MicrochipDao microchipDao = new MicrochipDao();
+
+    // Las mascotas se guardan con un microchip que solo tiene el ID; al leerlas se completa con el de 'microchips'
+    private final Map<Long, Mascota> mascotas = new ConcurrentHashMap<>();
+    private final Map<Long, Microchip> microchips = new ConcurrentHashMap<>();
+    private final Map<String, Long> microchipPorCodigo = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> mascotasPorEspecie = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> mascotasPorDuenio = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService refresco;
+
+    // Solo los usa el hilo de refresco; desde null pide una carga completa
+    private LocalDateTime desde = null;
+    private long refrescosSinVerificar = 0;
+
+    private volatile boolean listo = false;
+    private volatile long escriturasCubiertas = -1;
+    private volatile long inicioUltimoRefresco;
+    private volatile long duracionUltimoRefrescoMs;
+    private final AtomicLong refrescos = new AtomicLong();
+    private final AtomicLong erroresRefresco = new AtomicLong();
+    private final AtomicLong filasAplicadas = new AtomicLong();
+    private final AtomicLong resincronizaciones = new AtomicLong();
+
+    private ModeloLectura() {
+        this.refresco = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "modelo-lectura");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Se crea la primera vez que se usa, y solo si el modo está activo
+    private static class Instancia {
+        static final ModeloLectura MODELO = crear();
+
+        private static ModeloLectura crear() {
+            ModeloLectura modelo = new ModeloLectura();
+            Metricas.registrar("ModeloLectura,nombre=principal", modelo);
+            modelo.refresco.scheduleWithFixedDelay(modelo::refrescar, 0, INTERVALO_MS, TimeUnit.MILLISECONDS);
+            return modelo;
+        }
+    }
+
+    // Devuelve el modelo si está activo, ya cargado y al día con las escrituras de este proceso; si no, null
+    // (y la lectura debe ir a la base)
+    public static ModeloLectura paraLeer() {
+        if (!ACTIVO) {
+            return null;
+        }
+        ModeloLectura modelo = Instancia.MODELO;
+        return modelo.listo && modelo.escriturasCubiertas >= ESCRITURAS.get() ? modelo : null;
+    }
+
+    // Los servicios la llaman después de confirmar cualquier escritura sobre mascotas o microchips. Solo lleva la cuenta
+    // del modelo; la ventana de lectura propia de DatabaseConnection la abre EjecutorTransacciones al confirmar
+    public static void registrarEscritura() {
+        if (ACTIVO) {
+            ESCRITURAS.incrementAndGet();
+        }
+    }
+
+    public Mascota mascota(Long id) {
+        Mascota fila = mascotas.get(id);
+        return fila != null ? componer(fila) : null;
+    }
+
+    // Mascotas de la especie, ordenadas por ID
+    public List<Mascota> mascotasPorEspecie(String especie) {
+        return componer(mascotasPorEspecie.get(clave(especie)));
+    }
+
+    // Mascotas cuyo dueño coincide exactamente, sin distinguir mayúsculas ni acentos
+    public List<Mascota> mascotasPorDuenio(String duenio) {
+        return componer(mascotasPorDuenio.get(clave(duenio)));
+    }
+
+    public Microchip microchip(Long id) {
+        return microchips.get(id);
+    }
+
+    public Microchip microchipPorCodigo(String codigo) {
+        Long id = microchipPorCodigo.get(clave(codigo));
+        return id != null ? microchips.get(id) : null;
+    }
+
+    // Tarea periódica: aplica las filas escritas desde el refresco anterior (todas las activas en una carga completa)
+    // Todo se lee en una transacción REPEATABLE READ, así los cambios y el resumen salen de la misma instantánea
+    private void refrescar() {
+        long escrituras = ESCRITURAS.get();
+        long inicio = System.currentTimeMillis();
+        try (Medicion medicion = METRICA_REFRESCAR.iniciar();
+             Connection conn = DatabaseConnection.getConnection()) {
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            long filas;
+            boolean completo = desde == null;
+            boolean coincide = true;
+            try {
+                LocalDateTime ahora = ahoraEnBase(conn);
+                filas = completo ? cargarTodo(conn) : aplicarCambios(conn);
+                if (completo || ++refrescosSinVerificar >= VERIFICAR_CADA) {
+                    refrescosSinVerificar = 0;
+                    coincide = coincideConBase(conn);
+                }
+                conn.commit();
+                // Si no coincide, el refresco siguiente carga todo de nuevo
+                desde = coincide ? ahora.minusNanos(VENTANA_MS * 1_000_000) : null;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            if (!coincide) {
+                resincronizaciones.incrementAndGet();
+            }
+            escriturasCubiertas = escrituras;
+            inicioUltimoRefresco = inicio;
+            duracionUltimoRefrescoMs = System.currentTimeMillis() - inicio;
+            listo = true;
+            refrescos.incrementAndGet();
+            filasAplicadas.addAndGet(filas);
+            medicion.exito(filas);
+        } catch (SQLException | RuntimeException e) {
+            // Si la tarea lanzara la excepción el ejecutor dejaría de programarla; el error queda en getErroresRefresco
+            erroresRefresco.incrementAndGet();
+        }
+    }
+
+    // Primero los microchips, así las mascotas ya encuentran el suyo
+    private long aplicarCambios(Connection conn) throws SQLException {
+        long filas = 0;
+        try (Stream<Microchip> cambios = microchipDao.leerCambiosStream(desde, conn)) {
+            Iterator<Microchip> it = cambios.iterator();
+            while (it.hasNext()) {
+                filas += aplicar(it.next()) ? 1 : 0;
+            }
+        }
+        try (Stream<Mascota> cambios = mascotaDao.leerCambiosStream(desde, conn)) {
+            Iterator<Mascota> it = cambios.iterator();
+            while (it.hasNext()) {
+                filas += aplicar(it.next()) ? 1 : 0;
+            }
+        }
+        return filas;
+    }
+
+    // Aplica todas las filas activas y quita las que el modelo tenía pero ya no lo están (eliminadas o borradas)
+    // Las lecturas siguen respondiendo durante la carga: nunca ven el modelo vacío
+    private long cargarTodo(Connection conn) throws SQLException {
+        long filas = 0;
+        Set<Long> microchipsActivos = new HashSet<>();
+        try (Stream<Microchip> activos = microchipDao.leerCambiosStream(null, conn)) {
+            Iterator<Microchip> it = activos.iterator();
+            while (it.hasNext()) {
+                Microchip microchip = it.next();
+                microchipsActivos.add(microchip.getId());
+                filas += aplicar(microchip) ? 1 : 0;
+            }
+        }
+        Set<Long> mascotasActivas = new HashSet<>();
+        try (Stream<Mascota> activas = mascotaDao.leerCambiosStream(null, conn)) {
+            Iterator<Mascota> it = activas.iterator();
+            while (it.hasNext()) {
+                Mascota mascota = it.next();
+                mascotasActivas.add(mascota.getId());
+                filas += aplicar(mascota) ? 1 : 0;
+            }
+        }
+        for (Microchip microchip : List.copyOf(microchips.values())) {
+            if (!microchipsActivos.contains(microchip.getId())) {
+                quitar(microchip);
+                filas++;
+            }
+        }
+        for (Mascota mascota : List.copyOf(mascotas.values())) {
+            if (!mascotasActivas.contains(mascota.getId())) {
+                quitar(mascota);
+                filas++;
+            }
+        }
+        return filas;
+    }
+
+    // Compara cantidad y suma de versiones de las filas activas; a una fila que falta o quedó vieja le cambia alguna
+    private boolean coincideConBase(Connection conn) throws SQLException {
+        long[] enBase = microchipDao.leerResumenActivos(conn);
+        long versiones = 0;
+        for (Microchip microchip : microchips.values()) {
+            versiones += microchip.getVersion();
+        }
+        if (enBase[0] != microchips.size() || enBase[1] != versiones) {
+            return false;
+        }
+        enBase = mascotaDao.leerResumenActivos(conn);
+        versiones = 0;
+        for (Mascota mascota : mascotas.values()) {
+            versiones += mascota.getVersion();
+        }
+        return enBase[0] == mascotas.size() && enBase[1] == versiones;
+    }
+
+    // Se usa el reloj de la base, que es el mismo que completa actualizado_en
+    private static LocalDateTime ahoraEnBase(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT CURRENT_TIMESTAMP(3)");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getObject(1, LocalDateTime.class);
+        }
+    }
+
+    // Devuelve false si la fila ya estaba aplicada (misma versión o anterior)
+    private boolean aplicar(Microchip cambio) {
+        Microchip actual = microchips.get(cambio.getId());
+        if (actual != null && actual.getVersion() >= cambio.getVersion()) {
+            return false;
+        }
+        if (cambio.getEliminado()) {
+            return actual != null && quitar(actual);
+        }
+        if (actual != null) {
+            microchipPorCodigo.remove(clave(actual.getCodigo()), actual.getId());
+        }
+        microchips.put(cambio.getId(), cambio);
+        microchipPorCodigo.put(clave(cambio.getCodigo()), cambio.getId());
+        return true;
+    }
+
+    private boolean aplicar(Mascota cambio) {
+        Mascota actual = mascotas.get(cambio.getId());
+        if (actual != null && actual.getVersion() >= cambio.getVersion()) {
+            return false;
+        }
+        if (cambio.getEliminado()) {
+            return actual != null && quitar(actual);
+        }
+        if (actual != null) {
+            quitarDeIndice(mascotasPorEspecie, actual.getEspecie(), actual.getId());
+            quitarDeIndice(mascotasPorDuenio, actual.getDuenio(), actual.getId());
+        }
+        mascotas.put(cambio.getId(), cambio);
+        mascotasPorEspecie.computeIfAbsent(clave(cambio.getEspecie()), k -> new ConcurrentSkipListSet<>()).add(cambio.getId());
+        mascotasPorDuenio.computeIfAbsent(clave(cambio.getDuenio()), k -> new ConcurrentSkipListSet<>()).add(cambio.getId());
+        return true;
+    }
+
+    private boolean quitar(Microchip actual) {
+        microchipPorCodigo.remove(clave(actual.getCodigo()), actual.getId());
+        return microchips.remove(actual.getId()) != null;
+    }
+
+    private boolean quitar(Mascota actual) {
+        quitarDeIndice(mascotasPorEspecie, actual.getEspecie(), actual.getId());
+        quitarDeIndice(mascotasPorDuenio, actual.getDuenio(), actual.getId());
+        return mascotas.remove(actual.getId()) != null;
+    }
+
+    private static void quitarDeIndice(Map<String, Set<Long>> indice, String valor, Long id) {
+        Set<Long> ids = indice.get(clave(valor));
+        if (ids != null) {
+            ids.remove(id);
+        }
+    }
+
+    // Copia de la mascota con su microchip actual; como en el JOIN de MascotaDao, un microchip eliminado no aparece
+    private Mascota componer(Mascota fila) {
+        Mascota mascota = new Mascota();
+        mascota.setId(fila.getId());
+        mascota.setNombre(fila.getNombre());
+        mascota.setEspecie(fila.getEspecie());
+        mascota.setRaza(fila.getRaza());
+        mascota.setFechaNacimiento(fila.getFechaNacimiento());
+        mascota.setDuenio(fila.getDuenio());
+        mascota.setVersion(fila.getVersion());
+        mascota.setEliminado(false);
+        mascota.setMicrochip(fila.getMicrochip() != null ? microchips.get(fila.getMicrochip().getId()) : null);
+        return mascota;
+    }
+
+    private List<Mascota> componer(Set<Long> ids) {
+        List<Mascota> resultado = new ArrayList<>();
+        if (ids != null) {
+            for (Long id : ids) {
+                Mascota fila = mascotas.get(id);
+                if (fila != null) {
+                    resultado.add(componer(fila));
+                }
+            }
+        }
+        return resultado;
+    }
+
+    // Misma comparación que la collation utf8mb4_0900_ai_ci de codigo, especie y duenio (ver MicrochipDao.claveCodigo):
+    // sin mayúsculas ni acentos, y sin recortar espacios porque es NO PAD, así el modelo responde lo mismo que la base
+    private static String clave(String texto) {
+        return MicrochipDao.claveCodigo(texto);
+    }
+
+    @Override
+    public boolean isListo() {
+        return listo;
+    }
+
+    @Override
+    public int getMascotas() {
+        return mascotas.size();
+    }
+
+    @Override
+    public int getMicrochips() {
+        return microchips.size();
+    }
+
+    @Override
+    public long getAntiguedadMs() {
+        return listo ? System.currentTimeMillis() - inicioUltimoRefresco : -1;
+    }
+
+    @Override
+    public long getDuracionUltimoRefrescoMs() {
+        return duracionUltimoRefrescoMs;
+    }
+
+    @Override
+    public long getRefrescos() {
+        return refrescos.get();
+    }
+
+    @Override
+    public long getErroresRefresco() {
+        return erroresRefresco.get();
+    }
+
+    @Override
+    public long getFilasAplicadas() {
+        return filasAplicadas.get();
+    }
+
+    @Override
+    public long getResincronizaciones() {
+        return resincronizaciones.get();
+    }
+
+    @Override
+    public long getEscriturasPendientes() {
+        return Math.max(0, ESCRITURAS.get() - escriturasCubiertas);
+    }
+
+    @Override
+    public long getIntervaloMs() {
+        return INTERVALO_MS;
+    }
+}
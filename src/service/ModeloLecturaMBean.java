@@ -0,0 +1,34 @@
+package service;
+
+/*
+Interfaz de gestión (JMX) de ModeloLectura: tamaño de la copia en memoria y qué tan atrasada está.
+ */
+
+public interface ModeloLecturaMBean {
+
+    boolean isListo();
+
+    int getMascotas();
+
+    int getMicrochips();
+
+    // Milisegundos desde el inicio del último refresco exitoso: el modelo incluye todo lo confirmado hasta entonces
+    long getAntiguedadMs();
+
+    long getDuracionUltimoRefrescoMs();
+
+    long getRefrescos();
+
+    long getErroresRefresco();
+
+    long getFilasAplicadas();
+
+    // Veces que la verificación encontró el modelo distinto de la base (un cambio que la ventana no alcanzó a traer)
+    // y se volvió a cargar todo
+    long getResincronizaciones();
+
+    // Escrituras de este proceso que todavía no cubrió un refresco; mientras haya, las lecturas van a la base
+    long getEscriturasPendientes();
+
+    long getIntervaloMs();
+}
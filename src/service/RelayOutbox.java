@@ -0,0 +1,196 @@
+package service;
+
+import config.DatabaseConnection;
+import dao.OutboxDao;
+import metrics.Medicion;
+import metrics.MetricaOperacion;
+import metrics.Metricas;
+import models.EventoOutbox;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Publica los eventos del outbox (ver dao.OutboxDao) en un DestinoOutbox y los borra una vez publicados.
+Cada recorrido toma los pendientes en lotes de tamanioLote ordenados por id hasta vaciar la tabla; un hilo
+lo repite cada intervaloMs. Los consumidores procesan así los cambios de a poco, sin recorrer las tablas.
+Orden: los eventos de una misma entidad siempre salen en el orden en que se confirmaron (la segunda escritura
+espera el lock de la fila, por lo que su evento recibe un id mayor). Entre entidades distintas, una transacción
+que confirma tarde puede publicar un id menor que otro ya publicado.
+Solo publica una instancia a la vez: el recorrido toma un lock con nombre de MySQL y, si otro proceso lo tiene, no hace nada.
+La entrega es "al menos una vez" (ver DestinoOutbox).
+Con -Doutbox.archivo=<ruta> Main arranca un relay hacia un archivo NDJSON; -Doutbox.intervaloMs (1000)
+y -Doutbox.lote (500) ajustan la frecuencia y el tamaño de cada lote.
+ */
+
+public class RelayOutbox implements RelayOutboxMBean, AutoCloseable {
+
+    private static final MetricaOperacion METRICA_DRENAR = Metricas.operacion("outbox", "RelayOutbox.drenar");
+    private static final MetricaOperacion METRICA_PUBLICAR = Metricas.operacion("outbox", "RelayOutbox.publicar");
+
+    private final OutboxDao outboxDao = new OutboxDao();
+    private final DestinoOutbox destino;
+    private final int tamanioLote;
+    private final long intervaloMs;
+    private final ScheduledExecutorService programador;
+
+    private volatile boolean activo = false;
+    private volatile long ultimoIdPublicado = 0;
+    private volatile long pendientes = -1;
+    private final AtomicLong publicados = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    public RelayOutbox(DestinoOutbox destino, int tamanioLote, long intervaloMs) {
+        if (destino == null) {
+            throw new IllegalArgumentException("El destino del outbox es requerido");
+        }
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero");
+        }
+        if (intervaloMs <= 0) {
+            throw new IllegalArgumentException("El intervalo debe ser mayor a cero");
+        }
+        this.destino = destino;
+        this.tamanioLote = tamanioLote;
+        this.intervaloMs = intervaloMs;
+        this.programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "relay-outbox");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Crea y arranca el relay configurado con -Doutbox.archivo; devuelve null si no se configuró
+    public static RelayOutbox desdePropiedades() {
+        String archivo = System.getProperty("outbox.archivo");
+        if (archivo == null || archivo.isBlank()) {
+            return null;
+        }
+        RelayOutbox relay = new RelayOutbox(new DestinoArchivoNdjson(Path.of(archivo)),
+                Integer.getInteger("outbox.lote", 500), Long.getLong("outbox.intervaloMs", 1_000L));
+        relay.iniciar();
+        return relay;
+    }
+
+    // Publica el relay por JMX y programa los recorridos periódicos
+    public void iniciar() {
+        Metricas.registrar("RelayOutbox,nombre=principal", this);
+        activo = true;
+        programador.scheduleWithFixedDelay(this::drenarSinFallar, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Publica todos los eventos pendientes y devuelve cuántos publicó
+    // Si falla el destino o la base, los eventos del lote en curso quedan en el outbox para el próximo recorrido
+    public synchronized int drenar() throws Exception {
+        try (Medicion medicion = METRICA_DRENAR.iniciar()) {
+            int total = 0;
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                if (!outboxDao.tomarTurnoRelay(conn)) {
+                    medicion.exito(0);
+                    return 0;
+                }
+                try {
+                    List<EventoOutbox> eventos;
+                    do {
+                        eventos = outboxDao.leerPendientes(tamanioLote, conn);
+                        if (!eventos.isEmpty()) {
+                            publicar(eventos);
+                            outboxDao.eliminar(ids(eventos), conn);
+                            total += eventos.size();
+                        }
+                    } while (eventos.size() == tamanioLote);
+                    pendientes = 0;
+                } finally {
+                    outboxDao.liberarTurnoRelay(conn);
+                }
+            }
+            medicion.exito(total);
+            return total;
+        }
+    }
+
+    @Override
+    public void close() {
+        activo = false;
+        programador.shutdown();
+        try {
+            programador.awaitTermination(intervaloMs + 5_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            destino.close();
+        } catch (Exception e) {
+            System.err.println("No se pudo cerrar el destino del outbox: " + e.getMessage());
+        }
+    }
+
+    private void publicar(List<EventoOutbox> eventos) throws Exception {
+        try (Medicion medicion = METRICA_PUBLICAR.iniciar()) {
+            destino.publicar(eventos);
+            medicion.exito(eventos.size());
+        }
+        publicados.addAndGet(eventos.size());
+        lotes.incrementAndGet();
+        ultimoIdPublicado = eventos.get(eventos.size() - 1).getId();
+    }
+
+    // Tarea periódica: un error se cuenta y se informa, y el próximo recorrido reintenta
+    private void drenarSinFallar() {
+        try {
+            drenar();
+        } catch (Exception e) {
+            errores.incrementAndGet();
+            actualizarPendientes();
+            System.err.println("No se pudo publicar el outbox: " + e.getMessage());
+        }
+    }
+
+    private void actualizarPendientes() {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            pendientes = outboxDao.contarPendientes(conn);
+        } catch (SQLException e) {
+            pendientes = -1;
+        }
+    }
+
+    private static List<Long> ids(List<EventoOutbox> eventos) {
+        List<Long> ids = new ArrayList<>(eventos.size());
+        for (EventoOutbox evento : eventos) {
+            ids.add(evento.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean isActivo() { return activo; }
+
+    @Override
+    public long getPublicados() { return publicados.get(); }
+
+    @Override
+    public long getLotes() { return lotes.get(); }
+
+    @Override
+    public long getErrores() { return errores.get(); }
+
+    @Override
+    public long getUltimoIdPublicado() { return ultimoIdPublicado; }
+
+    @Override
+    public long getPendientes() { return pendientes; }
+
+    @Override
+    public long getIntervaloMs() { return intervaloMs; }
+
+    @Override
+    public int getTamanioLote() { return tamanioLote; }
+}
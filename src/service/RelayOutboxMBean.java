@@ -0,0 +1,26 @@
+package service;
+
+/*
+Interfaz de gestión (JMX) de RelayOutbox: cuánto publicó y si está al día.
+ */
+
+public interface RelayOutboxMBean {
+
+    boolean isActivo();
+
+    long getPublicados();
+
+    long getLotes();
+
+    long getErrores();
+
+    // Id del último evento publicado (0 si todavía no publicó ninguno)
+    long getUltimoIdPublicado();
+
+    // Eventos sin publicar según el último recorrido; -1 si todavía no se consultó
+    long getPendientes();
+
+    long getIntervaloMs();
+
+    int getTamanioLote();
+}
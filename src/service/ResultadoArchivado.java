@@ -0,0 +1,36 @@
+package service;
+
+/*
+Avance o resultado final de una pasada de ArchivadorEliminados.
+ */
+
+public class ResultadoArchivado {
+    private final long mascotas;
+    private final long microchips;
+    private final int lotes;
+    private final long duracionMs;
+    private final long duracionUltimoLoteMs;
+    private final boolean terminado;
+
+    public ResultadoArchivado(long mascotas, long microchips, int lotes, long duracionMs, long duracionUltimoLoteMs, boolean terminado) {
+        this.mascotas = mascotas;
+        this.microchips = microchips;
+        this.lotes = lotes;
+        this.duracionMs = duracionMs;
+        this.duracionUltimoLoteMs = duracionUltimoLoteMs;
+        this.terminado = terminado;
+    }
+
+    public long getMascotas() { return mascotas; }
+    public long getMicrochips() { return microchips; }
+    public int getLotes() { return lotes; }
+    public long getDuracionMs() { return duracionMs; }
+    public long getDuracionUltimoLoteMs() { return duracionUltimoLoteMs; }
+    public boolean isTerminado() { return terminado; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d mascotas y %d microchips en %d lotes, %d ms (último lote: %d ms)",
+                terminado ? "Archivado terminado" : "Archivando", mascotas, microchips, lotes, duracionMs, duracionUltimoLoteMs);
+    }
+}
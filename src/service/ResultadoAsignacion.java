@@ -0,0 +1,33 @@
+package service;
+
+/*
+Resultado de una asignación pedida a MascotaService.asignarMicrochipsLote.
+microchipId es el ID resuelto (null si el código no corresponde a ningún microchip activo);
+motivo explica el rechazo y es null cuando la asignación se aplicó.
+ */
+
+public class ResultadoAsignacion {
+    private final AsignacionMicrochip asignacion;
+    private final Long microchipId;
+    private final String motivo;
+
+    public ResultadoAsignacion(AsignacionMicrochip asignacion, Long microchipId, String motivo) {
+        this.asignacion = asignacion;
+        this.microchipId = microchipId;
+        this.motivo = motivo;
+    }
+
+    public AsignacionMicrochip getAsignacion() { return asignacion; }
+    public Long getMicrochipId() { return microchipId; }
+    public String getMotivo() { return motivo; }
+
+    public boolean isAsignada() {
+        return motivo == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoAsignacion{" + asignacion + ", microchipId=" + microchipId
+                + (isAsignada() ? ", asignada" : ", rechazada: " + motivo) + '}';
+    }
+}
@@ -0,0 +1,31 @@
+package service;
+
+/*
+Avance o resultado final de una exportación hecha con ExportadorMascotas.
+ */
+
+public class ResultadoExportacion {
+    private final long filas;
+    private final long duracionMs;
+    private final boolean terminada;
+
+    public ResultadoExportacion(long filas, long duracionMs, boolean terminada) {
+        this.filas = filas;
+        this.duracionMs = duracionMs;
+        this.terminada = terminada;
+    }
+
+    public long getFilas() { return filas; }
+    public long getDuracionMs() { return duracionMs; }
+    public boolean isTerminada() { return terminada; }
+
+    public double getFilasPorSegundo() {
+        return duracionMs == 0 ? filas : filas * 1000.0 / duracionMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d filas en %d ms (%.0f filas/s)",
+                terminada ? "Exportación terminada" : "Exportando", filas, duracionMs, getFilasPorSegundo());
+    }
+}
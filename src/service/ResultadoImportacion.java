@@ -0,0 +1,37 @@
+package service;
+
+/*
+Resumen de una importación hecha con ImportadorCsv.
+ */
+
+public class ResultadoImportacion {
+    private final long leidas;
+    private final long importadas;
+    private final long rechazadas;
+    private final long microchipsCreados;
+    private final long duracionMs;
+
+    public ResultadoImportacion(long leidas, long importadas, long rechazadas, long microchipsCreados, long duracionMs) {
+        this.leidas = leidas;
+        this.importadas = importadas;
+        this.rechazadas = rechazadas;
+        this.microchipsCreados = microchipsCreados;
+        this.duracionMs = duracionMs;
+    }
+
+    public long getLeidas() { return leidas; }
+    public long getImportadas() { return importadas; }
+    public long getRechazadas() { return rechazadas; }
+    public long getMicrochipsCreados() { return microchipsCreados; }
+    public long getDuracionMs() { return duracionMs; }
+
+    public double getFilasPorSegundo() {
+        return duracionMs == 0 ? leidas : leidas * 1000.0 / duracionMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResultadoImportacion{leidas=%d, importadas=%d, rechazadas=%d, microchipsCreados=%d, duracion=%d ms, filas/s=%.0f}",
+                leidas, importadas, rechazadas, microchipsCreados, duracionMs, getFilasPorSegundo());
+    }
+}
@@ -0,0 +1,107 @@
+package service;
+
+import models.Mascota;
+import models.Microchip;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/*
+Serializa mascotas y microchips a JSON escribiendo directo sobre un Appendable (Writer, StringBuilder),
+sin armar objetos intermedios ni depender de una biblioteca externa.
+Los nombres de los campos son los de las columnas de la base; los nulos se escriben como null
+y las fechas en formato ISO (yyyy-mm-dd).
+ */
+
+public final class SerializadorJson {
+
+    private SerializadorJson() {
+    }
+
+    // {"id":..,"nombre":..,"especie":..,"raza":..,"fecha_nacimiento":..,"duenio":..,"microchip":{..} o null}
+    public static void escribir(Mascota mascota, Appendable salida) throws IOException {
+        salida.append("{\"id\":").append(numero(mascota.getId()));
+        campo(salida, "nombre", mascota.getNombre());
+        campo(salida, "especie", mascota.getEspecie());
+        campo(salida, "raza", mascota.getRaza());
+        campo(salida, "fecha_nacimiento", mascota.getFechaNacimiento());
+        campo(salida, "duenio", mascota.getDuenio());
+        salida.append(",\"microchip\":");
+        if (mascota.getMicrochip() == null) {
+            salida.append("null");
+        } else {
+            escribir(mascota.getMicrochip(), salida);
+        }
+        salida.append('}');
+    }
+
+    // {"id":..,"codigo":..,"fecha_implantacion":..,"veterinaria":..,"observaciones":..}
+    public static void escribir(Microchip microchip, Appendable salida) throws IOException {
+        salida.append("{\"id\":").append(numero(microchip.getId()));
+        campo(salida, "codigo", microchip.getCodigo());
+        campo(salida, "fecha_implantacion", microchip.getFechaImplantacion());
+        campo(salida, "veterinaria", microchip.getVeterinaria());
+        campo(salida, "observaciones", microchip.getObservaciones());
+        salida.append('}');
+    }
+
+    public static String aJson(Mascota mascota) {
+        StringBuilder json = new StringBuilder(256);
+        try {
+            escribir(mascota, json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder no lanza IOException
+        }
+        return json.toString();
+    }
+
+    public static String aJson(Microchip microchip) {
+        StringBuilder json = new StringBuilder(128);
+        try {
+            escribir(microchip, json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    private static void campo(Appendable salida, String nombre, LocalDate valor) throws IOException {
+        campo(salida, nombre, valor != null ? valor.toString() : null);
+    }
+
+    private static void campo(Appendable salida, String nombre, String valor) throws IOException {
+        salida.append(",\"").append(nombre).append("\":");
+        texto(salida, valor);
+    }
+
+    private static String numero(Long valor) {
+        return valor != null ? valor.toString() : "null";
+    }
+
+    // Escribe el texto entre comillas, escapando comillas, barras y caracteres de control
+    static void texto(Appendable salida, String valor) throws IOException {
+        if (valor == null) {
+            salida.append("null");
+            return;
+        }
+        salida.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> salida.append("\\\"");
+                case '\\' -> salida.append("\\\\");
+                case '\n' -> salida.append("\\n");
+                case '\r' -> salida.append("\\r");
+                case '\t' -> salida.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        salida.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        salida.append(c);
+                    }
+                }
+            }
+        }
+        salida.append('"');
+    }
+}